@@ -0,0 +1,145 @@
+package com.dreamydesk.app;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+
+/**
+ * Memory-bounded LRU of already downloaded, decoded AND resized wallpaper
+ * bitmaps, keyed by URL + target geometry (screen width/height + overscan).
+ *
+ * Applying the same image to home, then lock, then parallax would otherwise
+ * re-run download + decode + cover-crop from scratch each time; a hit here
+ * skips all three.
+ *
+ * Ownership: cached bitmaps never leave this class. Callers always get a
+ * private (mutable) copy, because every apply path hands its bitmap back to
+ * the BitmapPool when done. Evicted entries go to the pool as well.
+ * That is also why get-and-copy and put are serialized on this object —
+ * LruCache calls entryRemoved() (which pools the evicted bitmap for reuse)
+ * outside its own lock, so without it an eviction could hand a bitmap to
+ * the next decode while another thread is halfway through copying it.
+ */
+final class BitmapMemoryCache {
+
+    private static final String TAG = "BitmapMemoryCache";
+
+    /** Fraction of the per-app heap class the cache may use. */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    private final LruCache<String, Bitmap> cache;
+    private final int maxBytes;
+
+    BitmapMemoryCache(Context context, final BitmapPool pool) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am != null ? am.getMemoryClass() : 64;
+        this.maxBytes = memoryClassMb * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    pool.put(oldValue);
+                }
+            }
+        };
+
+        Log.d(TAG, "🧠 Bitmap cache budget: " + (maxBytes / 1024 / 1024) + "MB" +
+              " (memoryClass=" + memoryClassMb + "MB)");
+    }
+
+    /**
+     * file:// keys include the file's mtime and size: apps tend to rewrite
+     * the same local path, which must not keep serving the old decode.
+     */
+    static String keyFor(String url, int targetW, int targetH, float overscan) {
+        String version = "";
+        if (url.startsWith("file://")) {
+            File file = ImageFetcher.localFile(url);
+            version = "#" + file.lastModified() + ":" + file.length();
+        }
+        return url + version + "|" + targetW + "x" + targetH + "@" + overscan;
+    }
+
+    /** A private copy of the cached bitmap for {@code key}, or null on a miss. */
+    synchronized Bitmap getCopy(String key) {
+        Bitmap cached = cache.get(key);
+        if (cached == null || cached.isRecycled()) return null;
+
+        Bitmap copy = cached.copy(cached.getConfig(), true);
+        if (copy != null) {
+            Log.d(TAG, "🧠 Memory cache hit: " + key);
+        }
+        return copy;
+    }
+
+    /**
+     * Caches {@code bmp}, taking ownership of it. Returns false — and
+     * recycles {@code bmp} — if it can't fit the budget.
+     */
+    synchronized boolean put(String key, Bitmap bmp) {
+        if (bmp.getAllocationByteCount() > maxBytes) {
+            bmp.recycle();
+            return false;
+        }
+        cache.put(key, bmp);
+        return true;
+    }
+
+    /** Whether {@code key} is cached. Does not affect recency or hit/miss counts. */
+    synchronized boolean contains(String key) {
+        return cache.snapshot().containsKey(key);
+    }
+
+    /**
+     * onTrimMemory: the same thresholds as BitmapPool.trim. Everything goes
+     * once the app is a kill candidate or the device is critically low,
+     * half when the UI is hidden or memory is getting low. Evicted bitmaps
+     * land in the pool, so trim this before the pool.
+     */
+    synchronized void trim(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            cache.trimToSize(maxBytes / 2);
+        }
+        Log.d(TAG, "🧠 Trimmed (level=" + level + ") → " + (cache.size() / 1024) + "KB cached");
+    }
+
+    synchronized void clear() {
+        cache.evictAll();
+    }
+
+    synchronized int sizeBytes() {
+        return cache.size();
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+
+    synchronized int hitCount() {
+        return cache.hitCount();
+    }
+
+    synchronized int missCount() {
+        return cache.missCount();
+    }
+
+    synchronized int evictionCount() {
+        return cache.evictionCount();
+    }
+}
@@ -0,0 +1,35 @@
+package com.dreamydesk.app;
+
+import android.graphics.Bitmap;
+
+import com.dreamydesk.app.imagecore.PixelBuffer;
+
+/** A Bitmap seen as an imagecore PixelBuffer. Writes need a mutable bitmap. */
+final class BitmapPixels implements PixelBuffer {
+
+    private final Bitmap bitmap;
+
+    BitmapPixels(Bitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    @Override
+    public int width() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int height() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+        bitmap.getPixels(dst, offset, stride, x, y, w, h);
+    }
+
+    @Override
+    public void setPixels(int[] src, int offset, int stride, int x, int y, int w, int h) {
+        bitmap.setPixels(src, offset, stride, x, y, w, h);
+    }
+}
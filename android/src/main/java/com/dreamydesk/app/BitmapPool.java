@@ -0,0 +1,204 @@
+package com.dreamydesk.app;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+
+/**
+ * Recycled, mutable bitmaps kept for reuse by the next decode/resize.
+ *
+ * Trying wallpapers one after another used to allocate (and immediately
+ * recycle) several multi-megabyte bitmaps per tap: the sampled decode, the
+ * scaled intermediate, the crop. Instead, those buffers come back here and
+ * the next decode writes into one of them via BitmapFactory.Options.inBitmap
+ * / Bitmap.reconfigure(), so a session of swipes reuses a handful of
+ * buffers rather than churning the GC.
+ *
+ * Bitmaps are bucketed by allocation size rounded up to a power of two. A
+ * request is served from its own bucket or the next one up, which bounds
+ * the waste of a reused buffer; screen-sized bitmaps of one device all land
+ * in the same bucket anyway.
+ *
+ * Hard cap: the pool never holds more than {@link #maxBytes()}; the oldest
+ * bitmaps are recycled first. trim() is driven by onTrimMemory.
+ */
+final class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    /**
+     * Fraction of the per-app heap class the pool may hold. Large enough
+     * for at least one screen-sized ARGB_8888 buffer on current phones.
+     */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    private final int maxBytes;
+
+    // Guarded by this
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> lru = new LinkedHashSet<>();
+    private long currentBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    BitmapPool(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am != null ? am.getMemoryClass() : 64;
+        this.maxBytes = memoryClassMb * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+
+        Log.d(TAG, "♻️ Bitmap pool cap: " + (maxBytes / 1024 / 1024) + "MB");
+    }
+
+    /**
+     * A pooled bitmap reconfigured to {@code width x height}, or null if
+     * nothing suitable is pooled (the caller allocates as usual). Pixel
+     * contents are undefined — decoders overwrite them, Canvas callers
+     * must draw every pixel or erase first.
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = byteCount(width, height, config);
+        if (needed <= 0) return null;
+
+        int bucket = bucketFor(needed);
+        Bitmap bmp = take(bucket, needed);
+        if (bmp == null) bmp = take(bucket * 2, needed);
+
+        if (bmp == null) {
+            misses++;
+            return null;
+        }
+
+        try {
+            bmp.reconfigure(width, height, config);
+        } catch (IllegalArgumentException e) {
+            // Shouldn't happen — size was checked — but never hand out a bad buffer
+            bmp.recycle();
+            misses++;
+            return null;
+        }
+        hits++;
+        return bmp;
+    }
+
+    /**
+     * Returns {@code bmp} to the pool, taking ownership. Immutable,
+     * hardware or already recycled bitmaps are simply recycled.
+     */
+    synchronized void put(Bitmap bmp) {
+        if (bmp == null || bmp.isRecycled()) return;
+
+        int size = bmp.getAllocationByteCount();
+        if (!bmp.isMutable() || bmp.getConfig() == null || size > maxBytes) {
+            bmp.recycle();
+            return;
+        }
+        if (lru.contains(bmp)) return;
+
+        ArrayDeque<Bitmap> deque = buckets.get(bucketFor(size));
+        if (deque == null) {
+            deque = new ArrayDeque<>();
+            buckets.put(bucketFor(size), deque);
+        }
+        deque.push(bmp);
+        lru.add(bmp);
+        currentBytes += size;
+
+        evictTo(maxBytes);
+    }
+
+    /** ComponentCallbacks2 levels → how much of the pool to keep. */
+    synchronized void trim(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictTo(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            evictTo(maxBytes / 2);
+        }
+        Log.d(TAG, "♻️ Trimmed (level=" + level + ") → " + (currentBytes / 1024) + "KB pooled");
+    }
+
+    synchronized void clear() {
+        evictTo(0);
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+
+    synchronized long sizeBytes() {
+        return currentBytes;
+    }
+
+    synchronized long hitCount() {
+        return hits;
+    }
+
+    synchronized long missCount() {
+        return misses;
+    }
+
+    synchronized long evictionCount() {
+        return evictions;
+    }
+
+    private Bitmap take(int bucket, int needed) {
+        ArrayDeque<Bitmap> deque = buckets.get(bucket);
+        if (deque == null) return null;
+
+        for (Iterator<Bitmap> it = deque.iterator(); it.hasNext(); ) {
+            Bitmap candidate = it.next();
+            if (candidate.getAllocationByteCount() >= needed) {
+                it.remove();
+                if (deque.isEmpty()) buckets.remove(bucket);
+                lru.remove(candidate);
+                currentBytes -= candidate.getAllocationByteCount();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void evictTo(long targetBytes) {
+        Iterator<Bitmap> it = lru.iterator();
+        while (currentBytes > targetBytes && it.hasNext()) {
+            Bitmap oldest = it.next();
+            it.remove();
+
+            int size = oldest.getAllocationByteCount();
+            int bucket = bucketFor(size);
+            ArrayDeque<Bitmap> deque = buckets.get(bucket);
+            if (deque != null) {
+                deque.remove(oldest);
+                if (deque.isEmpty()) buckets.remove(bucket);
+            }
+            currentBytes -= size;
+            evictions++;
+            oldest.recycle();
+        }
+    }
+
+    private static int bucketFor(int bytes) {
+        int highest = Integer.highestOneBit(bytes);
+        return highest == bytes ? bytes : highest << 1;
+    }
+
+    static int byteCount(int width, int height, Bitmap.Config config) {
+        return width * height * bytesPerPixel(config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        return 4;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dreamydesk.app;
+
+/**
+ * Which canvas ParallaxWallpaperService draws on each frame: the hardware
+ * one (API 26+) for as long as the surface supports it, the software one
+ * after that.
+ *
+ * Only a real "not supported" gives up on hardware for good —
+ * lockHardwareCanvas() throwing UnsupportedOperationException or
+ * IllegalArgumentException. A null lock means what it means for
+ * lockCanvas(): drawing isn't allowed right now (surface not ready yet,
+ * mid-resize). An IllegalStateException means the surface was released
+ * under us. Both skip the frame and try hardware again on the next one.
+ *
+ * No Android types, so the selection can be unit tested against a fake
+ * surface; the engine adapts its SurfaceHolder.
+ */
+final class CanvasPath<C> {
+
+    interface Surface<C> {
+        /** SurfaceHolder.lockHardwareCanvas(); only called while on the hardware path. */
+        C lockHardware();
+
+        /** SurfaceHolder.lockCanvas(). */
+        C lockSoftware();
+    }
+
+    interface Fallback {
+        /**
+         * Called once, when the hardware path is abandoned. Returns false if
+         * nothing can be drawn on the software canvas this frame (e.g. the
+         * image has to be reloaded first).
+         */
+        boolean onSoftware(RuntimeException cause);
+    }
+
+    private final Surface<C> surface;
+    private final Fallback fallback;
+    private boolean hardware;
+
+    CanvasPath(Surface<C> surface, boolean hardware, Fallback fallback) {
+        this.surface = surface;
+        this.hardware = hardware;
+        this.fallback = fallback;
+    }
+
+    boolean isHardware() {
+        return hardware;
+    }
+
+    /** A locked canvas for this frame, or null to skip the frame. */
+    C lock() {
+        if (!hardware) {
+            return surface.lockSoftware();
+        }
+        try {
+            return surface.lockHardware();
+        } catch (IllegalStateException e) {
+            // Released surface: transient, like a null lock
+            return null;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            hardware = false;
+            if (!fallback.onSoftware(e)) return null;
+            return surface.lockSoftware();
+        }
+    }
+}
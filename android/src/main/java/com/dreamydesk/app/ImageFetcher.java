@@ -0,0 +1,267 @@
+package com.dreamydesk.app;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Gets an image URL's body with at most one request per call, so the
+ * two-pass decode never goes back to the network:
+ *   - file:// and content:// are read in place, no request at all
+ *   - with the disk cache enabled (or offline), a GET or a conditional
+ *     GET into the cache, then the cached file
+ *   - otherwise one GET streamed into an ImageSource spool
+ *
+ * One instance per fetch, like RangeDownloader: the transport is whatever
+ * WallpaperPlugin.setTransport last installed when the fetch started.
+ */
+final class ImageFetcher {
+
+    private static final String TAG = "ImageFetcher";
+
+    private final WallpaperTransport transport;
+    private final WallpaperDiskCache diskCache;
+    private final ContentResolver resolver;
+    private final File spoolDir;
+
+    ImageFetcher(WallpaperTransport transport, WallpaperDiskCache diskCache,
+                 ContentResolver resolver, File spoolDir) {
+        this.transport = transport;
+        this.diskCache = diskCache;
+        this.resolver = resolver;
+        this.spoolDir = spoolDir;
+    }
+
+    /**
+     * Returns the body of {@code url} in a form that can be read more than
+     * once. With the disk cache enabled (the default) this is the cached
+     * file, revalidated or freshly downloaded by fetchToCache(); with the
+     * cache disabled the response is streamed into an ImageSource spool.
+     */
+    ImageSource fetch(String url, ProgressReporter progress) throws IOException {
+        ImageSource local = openLocalSource(url);
+        if (local != null) {
+            return local;
+        }
+
+        if (diskCache.isEnabled() || diskCache.isOffline()) {
+            // fetchToCache() reports STAGE_CONNECT itself
+            try {
+                return ImageSource.fromFile(fetchToCache(url, progress));
+            } catch (FileNotFoundException e) {
+                // Evicted or cleared between the fetch and the open. Once
+                // open, the source no longer depends on the cache entry.
+                Log.w(TAG, "⚠️ Cache entry removed before it was opened, fetching again: " + url);
+                return ImageSource.fromFile(fetchToCache(url, progress));
+            }
+        }
+
+        progress.stage(ProgressReporter.STAGE_CONNECT);
+        HttpURLConnection connection = null;
+        InputStream inputStream = null;
+        boolean reusable = false;
+        try {
+            connection = transport.open(url);
+            progress.job().track(connection);
+
+            int responseCode = transport.execute(connection);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                reusable = true;
+                throw new IOException("HTTP error: " + responseCode);
+            }
+
+            progress.setTotal(connection.getContentLength());
+            progress.stage(ProgressReporter.STAGE_DOWNLOAD);
+            inputStream = progress.wrap(connection.getInputStream());
+            ImageSource source = ImageSource.spool(inputStream, spoolDir);
+            reusable = true;
+            diskCache.recordMiss();
+
+            Log.d(TAG, "⬇️ Image received: " + source.length() + " bytes" +
+                  (source.isSpilledToDisk() ? " (spooled to disk)" : " (in memory)"));
+            return source;
+        } finally {
+            try { if (inputStream != null) inputStream.close(); } catch (IOException ignored) {}
+            if (connection != null) {
+                progress.job().untrack(connection);
+                transport.release(connection, reusable);
+            }
+        }
+    }
+
+    static boolean isLocalSource(String url) {
+        return url.startsWith("file://") || url.startsWith("content://");
+    }
+
+    /**
+     * The file a file:// URL names, as Uri.parse(url).getPath() would give
+     * it: authority, query and fragment dropped, %XX escapes decoded as
+     * UTF-8. Plain Java so the cache key and the no-network path can be
+     * unit tested.
+     */
+    static File localFile(String fileUrl) {
+        String path = fileUrl.substring("file://".length());
+        int slash = path.indexOf('/');
+        path = slash >= 0 ? path.substring(slash) : "";
+        for (char end : new char[] {'?', '#'}) {
+            int at = path.indexOf(end);
+            if (at >= 0) path = path.substring(0, at);
+        }
+        if (path.indexOf('%') < 0) return new File(path);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(path.length());
+        int literalStart = 0;
+        int i = 0;
+        while (i < path.length()) {
+            int hi = path.charAt(i) == '%' && i + 2 < path.length() ? Character.digit(path.charAt(i + 1), 16) : -1;
+            int lo = hi >= 0 ? Character.digit(path.charAt(i + 2), 16) : -1;
+            if (lo >= 0) {
+                writeUtf8(decoded, path.substring(literalStart, i));
+                decoded.write(hi << 4 | lo);
+                i += 3;
+                literalStart = i;
+            } else {
+                i++;
+            }
+        }
+        writeUtf8(decoded, path.substring(literalStart));
+        return new File(new String(decoded.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static void writeUtf8(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * file:// and content:// images are read where they are — no
+     * HttpURLConnection, no disk-cache copy, no spool. Decoders get the file
+     * path or the provider's file descriptor directly (see ImageSource).
+     * Returns null for anything else.
+     */
+    private ImageSource openLocalSource(String url) throws IOException {
+        if (!isLocalSource(url)) return null;
+
+        ImageSource source;
+        if (url.startsWith("file://")) {
+            File file = localFile(url);
+            if (!file.canRead()) {
+                throw new IOException("Local file not readable: " + file);
+            }
+            source = ImageSource.fromFile(file);
+        } else {
+            source = ImageSource.fromContentUri(resolver, Uri.parse(url));
+        }
+
+        Log.d(TAG, "📁 Local image, no download: " + url + " (" + source.length() + " bytes)");
+        return source;
+    }
+
+    /**
+     * Returns a local file holding the body of {@code url}, going through
+     * the disk cache:
+     *   - offline mode: cached copy or IOException, never the network
+     *   - cached: conditional GET (If-None-Match / If-Modified-Since); a
+     *     304 serves the cached file, a 200 replaces it
+     *   - not cached: plain GET, streamed straight into the cache
+     * If revalidation fails at the network level, the stale cached copy is
+     * served rather than failing the whole wallpaper set.
+     */
+    File fetchToCache(String url, ProgressReporter progress) throws IOException {
+        progress.stage(ProgressReporter.STAGE_CONNECT);
+        WallpaperDiskCache.Entry cached = diskCache.lookup(url);
+
+        if (diskCache.isOffline()) {
+            if (cached == null) {
+                diskCache.recordMiss();
+                throw new IOException("Not in cache (offline cache-only mode): " + url);
+            }
+            Log.d(TAG, "💾 Cache hit (offline): " + url);
+            return diskCache.recordHit(url);
+        }
+
+        HttpURLConnection connection = null;
+        InputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        File temp = null;
+        int responseCode = -1;
+        boolean reusable = false;
+
+        try {
+            connection = transport.open(url);
+            progress.job().track(connection);
+            if (cached != null) {
+                if (cached.etag != null) connection.setRequestProperty("If-None-Match", cached.etag);
+                if (cached.lastModified != null) connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+            }
+
+            responseCode = transport.execute(connection);
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                // No body — the socket is immediately free for the next request
+                reusable = true;
+                Log.d(TAG, "💾 Cache hit (revalidated, 304): " + url);
+                return diskCache.recordHit(url);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                reusable = true;
+                throw new IOException("HTTP error: " + responseCode);
+            }
+
+            temp = diskCache.newTempFile(url);
+            inputStream = connection.getInputStream();
+            outputStream = new FileOutputStream(temp);
+
+            progress.setTotal(connection.getContentLength());
+            progress.stage(ProgressReporter.STAGE_DOWNLOAD);
+
+            byte[] buffer = new byte[16 * 1024];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+                progress.addReceived(bytesRead);
+            }
+            outputStream.close();
+            outputStream = null;
+            reusable = true;
+
+            File data = diskCache.commit(url, temp,
+                    connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            temp = null;
+
+            Log.d(TAG, "💾 Cache miss, stored " + data.length() + " bytes: " + url);
+            return data;
+
+        } catch (IOException e) {
+            // A cancelled job's disconnect looks like a network failure; don't mask it with stale data
+            progress.job().throwIfCancelled();
+            // Network-level failure (no status, or body cut off) — an explicit
+            // HTTP error status means the server rejected the URL, so don't mask it.
+            boolean networkFailure = responseCode == -1 || responseCode == HttpURLConnection.HTTP_OK;
+            if (cached != null && networkFailure && cached.file.exists()) {
+                Log.w(TAG, "⚠️ Revalidation failed (" + e.getMessage() + "), serving stale cached copy");
+                return diskCache.recordHit(url);
+            }
+            throw e;
+        } finally {
+            try { if (outputStream != null) outputStream.close(); } catch (IOException ignored) {}
+            try { if (inputStream != null) inputStream.close(); } catch (IOException ignored) {}
+            if (connection != null) {
+                progress.job().untrack(connection);
+                transport.release(connection, reusable);
+            }
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.dreamydesk.app;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A downloaded image body that can be read more than once.
+ *
+ * The two-pass decode in WallpaperPlugin (bounds first, then a sampled
+ * decode) needs the same bytes twice. Instead of opening the URL a second
+ * time, the response is streamed ONCE into this spool:
+ *   - bodies up to MEMORY_THRESHOLD stay in a byte array (typical phone
+ *     wallpapers, 200 KB - 3 MB JPEGs, never touch disk), and
+ *   - anything bigger spills to a temp file in the app cache dir, so an
+ *     8K PNG can't blow up the heap just by being downloaded.
+ *
+ * Bodies already on disk (e.g. a WallpaperDiskCache entry, or a file://
+ * URL) are wrapped with fromFile() instead, which reads in place and never
+ * deletes. The file is opened once, up front, and every pass reads through
+ * that descriptor: a cache eviction or clearCache() that deletes the file
+ * mid-decode, or a rewrite at the same path, can't change what the
+ * remaining passes see. content:// URIs are wrapped with fromContentUri(): every pass
+ * reopens the URI, decoders get its file descriptor, nothing is copied.
+ *
+ * Every openStream() call returns a fresh stream positioned at byte 0.
+ * close() deletes the temp file, if the spool created one.
+ */
+final class ImageSource implements Closeable {
+
+    /** Bodies larger than this are spooled to disk instead of memory. */
+    static final int MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final byte[] bytes;
+    private final int byteCount;
+    private final File file;
+    private final boolean ownsFile;
+    // Open for the source's lifetime when file != null; every pass reads through it
+    private final FileInputStream fileIn;
+    private final FileChannel fileChannel;
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final long uriLength;
+
+    private ImageSource(byte[] bytes, int byteCount) {
+        this(bytes, byteCount, null, false, null, null, null, 0);
+    }
+
+    private ImageSource(File file, boolean ownsFile, FileInputStream fileIn) {
+        this(null, 0, file, ownsFile, fileIn, null, null, 0);
+    }
+
+    private ImageSource(byte[] bytes, int byteCount, File file, boolean ownsFile, FileInputStream fileIn,
+                        ContentResolver resolver, Uri uri, long uriLength) {
+        this.bytes = bytes;
+        this.byteCount = byteCount;
+        this.file = file;
+        this.ownsFile = ownsFile;
+        this.fileIn = fileIn;
+        this.fileChannel = fileIn != null ? fileIn.getChannel() : null;
+        this.resolver = resolver;
+        this.uri = uri;
+        this.uriLength = uriLength;
+    }
+
+    /**
+     * Wraps an existing file, opening it now. close() closes it and leaves
+     * the file itself untouched. Throws FileNotFoundException if the file
+     * is already gone.
+     */
+    static ImageSource fromFile(File file) throws FileNotFoundException {
+        return new ImageSource(file, false, new FileInputStream(file));
+    }
+
+    /**
+     * Wraps a content:// URI. Opens it once up front, so a missing or
+     * unreadable URI fails here rather than in the decoder.
+     */
+    static ImageSource fromContentUri(ContentResolver resolver, Uri uri) throws IOException {
+        ParcelFileDescriptor pfd = openDescriptor(resolver, uri);
+        long length;
+        try {
+            length = pfd.getStatSize();
+        } finally {
+            pfd.close();
+        }
+        return new ImageSource(null, 0, null, false, null, resolver, uri, length);
+    }
+
+    /**
+     * Compresses {@code bmp} once into an in-memory body, so the same
+     * encoded bytes can be handed to several consumers (e.g. one
+     * WallpaperManager.setStream per target) without re-encoding.
+     */
+    static ImageSource encode(Bitmap bmp, Bitmap.CompressFormat format, int quality) throws IOException {
+        ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(Math.max(64 * 1024, bmp.getByteCount() / 4));
+        if (!bmp.compress(format, quality, out)) {
+            throw new IOException("Failed to encode bitmap as " + format);
+        }
+        return new ImageSource(out.buffer(), out.size());
+    }
+
+    /**
+     * Drains {@code in} into a new spool. The caller still owns (and must
+     * close) {@code in}; the returned source must be closed by the caller.
+     */
+    static ImageSource spool(InputStream in, File tempDir) throws IOException {
+        ExposedByteArrayOutputStream memory = new ExposedByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            memory.write(buffer, 0, read);
+
+            if (memory.size() > MEMORY_THRESHOLD) {
+                return spillToFile(memory, in, buffer, tempDir);
+            }
+        }
+
+        return new ImageSource(memory.buffer(), memory.size());
+    }
+
+    private static ImageSource spillToFile(ExposedByteArrayOutputStream memory, InputStream in,
+                                           byte[] buffer, File tempDir) throws IOException {
+        File temp = File.createTempFile("wallpaper_", ".spool", tempDir);
+        OutputStream out = null;
+        boolean ok = false;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE);
+            out.write(memory.buffer(), 0, memory.size());
+
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+            ok = true;
+        } finally {
+            try {
+                if (out != null) out.close();
+            } catch (IOException ignored) {}
+            if (!ok) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+        try {
+            return new ImageSource(temp, true, new FileInputStream(temp));
+        } catch (FileNotFoundException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw e;
+        }
+    }
+
+    /** A fresh stream over the full body, starting at byte 0. */
+    InputStream openStream() throws IOException {
+        if (uri != null) {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) throw new FileNotFoundException("No stream for " + uri);
+            return new BufferedInputStream(in, BUFFER_SIZE);
+        }
+        if (file != null) {
+            return new BufferedInputStream(new ChannelInputStream(fileChannel), BUFFER_SIZE);
+        }
+        return new ByteArrayInputStream(bytes, 0, byteCount);
+    }
+
+    /**
+     * BitmapFactory decode (or bounds pass) straight from the body: the
+     * open file's or the URI's file descriptor, or the in-memory array — no
+     * Java stream or buffer copy in between. The file descriptor's offset is
+     * always 0 (openStream() uses positional reads), which is where
+     * decodeFileDescriptor starts reading.
+     */
+    Bitmap decode(BitmapFactory.Options options) throws IOException {
+        if (uri != null) {
+            ParcelFileDescriptor pfd = openDescriptor(resolver, uri);
+            try {
+                return BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, options);
+            } finally {
+                pfd.close();
+            }
+        }
+        if (file != null) {
+            return BitmapFactory.decodeFileDescriptor(fileIn.getFD(), null, options);
+        }
+        return BitmapFactory.decodeByteArray(bytes, 0, byteCount, options);
+    }
+
+    /**
+     * A region decoder over the body, reading the file's or the URI's file
+     * descriptor (which the decoder dups) in place, or the in-memory bytes
+     * without a copy. Throws for formats it can't handle (e.g. GIF).
+     */
+    BitmapRegionDecoder newRegionDecoder() throws IOException {
+        if (uri != null) {
+            ParcelFileDescriptor pfd = openDescriptor(resolver, uri);
+            try {
+                return regionDecoder(pfd.getFileDescriptor());
+            } finally {
+                pfd.close();
+            }
+        }
+        if (file != null) {
+            return regionDecoder(fileIn.getFD());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(bytes, 0, byteCount);
+        }
+        return legacyRegionDecoder(bytes, byteCount);
+    }
+
+    private static BitmapRegionDecoder regionDecoder(FileDescriptor fd) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(fd);
+        }
+        return legacyRegionDecoder(fd);
+    }
+
+    /** Pre-31 overloads; isShareable is ignored since API 21 anyway. */
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder legacyRegionDecoder(FileDescriptor fd) throws IOException {
+        return BitmapRegionDecoder.newInstance(fd, false);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder legacyRegionDecoder(byte[] data, int length) throws IOException {
+        return BitmapRegionDecoder.newInstance(data, 0, length, false);
+    }
+
+    /**
+     * An ImageDecoder source over the body (API 28+), again without copying.
+     * A file is memory-mapped from the open descriptor; the mapping stays
+     * valid even if the file is deleted meanwhile.
+     */
+    ImageDecoder.Source newDecoderSource() throws IOException {
+        if (uri != null) {
+            return ImageDecoder.createSource(resolver, uri);
+        }
+        if (file != null) {
+            return ImageDecoder.createSource(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+        }
+        return ImageDecoder.createSource(ByteBuffer.wrap(bytes, 0, byteCount).slice());
+    }
+
+    /** Body size in bytes; -1 for a content URI whose provider doesn't report one. */
+    long length() {
+        if (uri != null) return uriLength;
+        if (file != null) {
+            try {
+                return fileChannel.size();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return byteCount;
+    }
+
+    /** Whether spool() overflowed its memory cap into a temp file. */
+    boolean isSpilledToDisk() {
+        return ownsFile;
+    }
+
+    @Override
+    public void close() {
+        if (fileIn != null) {
+            try {
+                fileIn.close();
+            } catch (IOException ignored) {}
+        }
+        if (file != null && ownsFile) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static ParcelFileDescriptor openDescriptor(ContentResolver resolver, Uri uri) throws IOException {
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+        if (pfd == null) throw new FileNotFoundException("No file descriptor for " + uri);
+        return pfd;
+    }
+
+    /**
+     * Reads a channel with positional reads, from byte 0, without moving
+     * the channel's (and so the descriptor's) own position.
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position = 0;
+
+        ChannelInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+            if (read > 0) position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, channel.size() - position));
+            position += skipped;
+            return skipped;
+        }
+    }
+
+    /** Lets the spool hand its backing array to ByteArrayInputStream without a copy. */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int initialSize) {
+            super(initialSize);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.dreamydesk.app;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+import com.dreamydesk.app.imagecore.CoverCrop;
+import com.dreamydesk.app.imagecore.SampleSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-flight memory planning for one decode.
+ *
+ * Previously the pipeline just tried, and caught OutOfMemoryError after the
+ * heap was already exhausted — on 2 GB devices a parallax call with
+ * overscan 2.0 (4x the screen's pixels, plus intermediates) failed that way
+ * routinely. Now, right after the bounds pass, plan() estimates the peak
+ * bytes of the whole pipeline for the requested quality and, if that
+ * doesn't fit the budget, walks down a ladder until something does:
+ *
+ *   full               requested overscan, ARGB_8888
+ *   reduced-detail     same output, 2x coarser decode sample (pre-API 28)
+ *   reduced-overscan   parallax only: less panning room, down to 1.3
+ *   rgb565             half the bytes per pixel, no alpha
+ *   reduced-resolution static wallpapers only: 3/4, then 1/2 of the screen
+ *                      (WallpaperManager scales it back up); parallax
+ *                      instead drops to the 1.05 minimum overscan
+ *
+ * If even the last step doesn't fit, it is used anyway — the OOM catch in
+ * the decoder stays as the final safety net.
+ */
+final class MemoryGovernor {
+
+    private static final String TAG = "MemoryGovernor";
+
+    static final String LEVEL_FULL = "full";
+    static final String LEVEL_REDUCED_DETAIL = "reduced-detail";
+    static final String LEVEL_REDUCED_OVERSCAN = "reduced-overscan";
+    static final String LEVEL_RGB_565 = "rgb565";
+    static final String LEVEL_REDUCED_RESOLUTION = "reduced-resolution";
+
+    /** Share of the free memory one decode may plan for; the rest covers decoder buffers etc. */
+    private static final float HEADROOM = 0.75f;
+
+    private static final float MIN_OVERSCAN = 1.05f;
+    private static final float DEFAULT_OVERSCAN = 1.3f;
+    private static final float OVERSCAN_STEP = 0.25f;
+
+    /** What the decode should actually produce. */
+    static final class Plan {
+        final String level;
+        final int targetWidth;
+        final int targetHeight;
+        final float overscan;
+        final Bitmap.Config config;
+        /** Multiplier on the decoder's natural inSampleSize (1 or 2). */
+        final int sampleBoost;
+        final long estimatedPeakBytes;
+        final long budgetBytes;
+
+        private Plan(String level, int targetWidth, int targetHeight, float overscan, Bitmap.Config config,
+                     int sampleBoost, long estimatedPeakBytes, long budgetBytes) {
+            this.level = level;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+            this.overscan = overscan;
+            this.config = config;
+            this.sampleBoost = sampleBoost;
+            this.estimatedPeakBytes = estimatedPeakBytes;
+            this.budgetBytes = budgetBytes;
+        }
+
+        @Override
+        public String toString() {
+            return level + " target=" + targetWidth + "x" + targetHeight + " overscan=" + overscan +
+                   " config=" + config + " sampleBoost=" + sampleBoost +
+                   " peak≈" + (estimatedPeakBytes / 1024 / 1024) + "MB" +
+                   " budget=" + (budgetBytes / 1024 / 1024) + "MB";
+        }
+    }
+
+    private MemoryGovernor() {}
+
+    /**
+     * Memory one decode may use right now: the free part of the per-app
+     * heap (where bitmap pixels live before API 26), or on API 26+ — pixels
+     * are native memory there — the smaller of the heap class and what the
+     * system has available before it starts killing processes. Shared
+     * between the decodes currently running.
+     */
+    static long budgetBytes(Context context, int concurrentDecodes) {
+        Runtime runtime = Runtime.getRuntime();
+        long budget = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            budget = runtime.maxMemory();
+            if (am != null) {
+                ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+                am.getMemoryInfo(info);
+                budget = Math.min(budget, Math.max(0, info.availMem - info.threshold));
+            }
+        }
+
+        return (long) (budget * HEADROOM) / Math.max(1, concurrentDecodes);
+    }
+
+    /**
+     * Free Java heap, with the same headroom. Unlike budgetBytes() this
+     * ignores native memory: it is for int[] pixel buffers (Resampler),
+     * which always live on the heap.
+     */
+    static long heapBudgetBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return (long) (free * HEADROOM);
+    }
+
+    /**
+     * Picks the highest quality that fits {@code budgetBytes}.
+     *
+     * @param mimeType    outMimeType from the bounds pass, or null if the
+     *                    decoder couldn't tell
+     * @param exactDecode true when the decoder produces the output directly
+     *                    (ImageDecoder, API 28+), i.e. no sampled intermediate
+     */
+    static Plan plan(int srcW, int srcH, String mimeType, int screenW, int screenH, float overscan,
+                     boolean exactDecode, long budgetBytes) {
+        boolean regionDecode = hasRegionDecoder(mimeType);
+        List<Plan> ladder = ladder(srcW, srcH, screenW, screenH, overscan, exactDecode, regionDecode, budgetBytes);
+
+        Plan chosen = ladder.get(ladder.size() - 1);
+        for (Plan candidate : ladder) {
+            if (candidate.estimatedPeakBytes <= budgetBytes) {
+                chosen = candidate;
+                break;
+            }
+        }
+
+        if (chosen.estimatedPeakBytes > budgetBytes) {
+            Log.w(TAG, "⚠️ Nothing fits the memory budget, using lowest quality: " + chosen);
+        } else if (!LEVEL_FULL.equals(chosen.level)) {
+            Log.w(TAG, "🧮 Degraded to fit memory: " + chosen);
+        } else {
+            Log.d(TAG, "🧮 " + chosen);
+        }
+        return chosen;
+    }
+
+    /**
+     * Formats BitmapRegionDecoder is known to handle. GIF has no region
+     * decoder and interlaced PNGs are rejected, so anything else may fall
+     * through to decoding the whole frame.
+     */
+    static boolean hasRegionDecoder(String mimeType) {
+        return "image/jpeg".equals(mimeType) || "image/webp".equals(mimeType);
+    }
+
+    private static List<Plan> ladder(int srcW, int srcH, int screenW, int screenH, float overscan,
+                                     boolean exactDecode, boolean regionDecode, long budget) {
+        List<Plan> ladder = new ArrayList<>();
+        boolean parallax = overscan > 1.0f;
+        Bitmap.Config argb = Bitmap.Config.ARGB_8888;
+        Bitmap.Config rgb565 = Bitmap.Config.RGB_565;
+
+        ladder.add(candidate(LEVEL_FULL, srcW, srcH, screenW, screenH, overscan, 1f, argb, 1, exactDecode, regionDecode, budget));
+        if (!exactDecode) {
+            ladder.add(candidate(LEVEL_REDUCED_DETAIL, srcW, srcH, screenW, screenH, overscan, 1f, argb, 2, false, regionDecode, budget));
+        }
+        int boost = exactDecode ? 1 : 2;
+
+        float stepped = overscan;
+        if (parallax) {
+            while (stepped > DEFAULT_OVERSCAN) {
+                stepped = Math.max(DEFAULT_OVERSCAN, stepped - OVERSCAN_STEP);
+                ladder.add(candidate(LEVEL_REDUCED_OVERSCAN, srcW, srcH, screenW, screenH, stepped, 1f,
+                        argb, boost, exactDecode, regionDecode, budget));
+            }
+        }
+
+        ladder.add(candidate(LEVEL_RGB_565, srcW, srcH, screenW, screenH, stepped, 1f, rgb565, boost, exactDecode, regionDecode, budget));
+
+        if (parallax) {
+            if (stepped > MIN_OVERSCAN) {
+                ladder.add(candidate(LEVEL_REDUCED_OVERSCAN, srcW, srcH, screenW, screenH, MIN_OVERSCAN, 1f,
+                        rgb565, boost, exactDecode, regionDecode, budget));
+            }
+        } else {
+            ladder.add(candidate(LEVEL_REDUCED_RESOLUTION, srcW, srcH, screenW, screenH, overscan, 0.75f,
+                    rgb565, boost, exactDecode, regionDecode, budget));
+            ladder.add(candidate(LEVEL_REDUCED_RESOLUTION, srcW, srcH, screenW, screenH, overscan, 0.5f,
+                    rgb565, boost, exactDecode, regionDecode, budget));
+        }
+        return ladder;
+    }
+
+    private static Plan candidate(String level, int srcW, int srcH, int screenW, int screenH,
+                                  float overscan, float resolution, Bitmap.Config config, int sampleBoost,
+                                  boolean exactDecode, boolean regionDecode, long budget) {
+        int targetW = Math.max(1, Math.round(screenW * overscan * resolution));
+        int targetH = Math.max(1, Math.round(screenH * overscan * resolution));
+        int bpp = config == Bitmap.Config.RGB_565 ? 2 : 4;
+
+        CoverCrop crop = CoverCrop.compute(srcW, srcH, targetW, targetH);
+        long output = (long) crop.outputWidth * crop.outputHeight * bpp;
+
+        // Without ImageDecoder the decoder first produces the (sub)sampled
+        // cover region, then draws it into the output. Where the format may
+        // have no region decoder, the fallback samples the whole frame.
+        long intermediate = 0;
+        if (!exactDecode) {
+            int sample = crop.sampleSize() * sampleBoost;
+            intermediate = (long) SampleSize.sampledSize(crop.width, sample) * SampleSize.sampledSize(crop.height, sample) * bpp;
+            if (!regionDecode) {
+                int fullSample = SampleSize.forTarget(srcW, srcH, targetW, targetH) * sampleBoost;
+                long fullFrame = (long) SampleSize.sampledSize(srcW, fullSample)
+                        * SampleSize.sampledSize(srcH, fullSample) * bpp;
+                intermediate = Math.max(intermediate, fullFrame);
+            }
+        }
+
+        // The decoded result and the private copy each caller gets from the
+        // shared decode coexist briefly, hence the second output.
+        long peak = intermediate + 2 * output;
+        return new Plan(level, targetW, targetH, overscan, config, sampleBoost, peak, budget);
+    }
+}
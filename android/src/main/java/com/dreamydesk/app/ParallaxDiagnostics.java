@@ -0,0 +1,90 @@
+package com.dreamydesk.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Render-loop counters written by ParallaxWallpaperService and read by
+ * WallpaperPlugin.getParallaxDiagnostics.
+ *
+ * Kept in their own preferences file: the engine listens to WallpaperPrefs
+ * for settings changes, and stats written there would wake it up again.
+ * Totals are cumulative across engines until reset(); the engine adds its
+ * deltas whenever it becomes invisible, so nothing is written per frame.
+ */
+final class ParallaxDiagnostics {
+
+    static final String PREFS_NAME = "ParallaxDiagnostics";
+
+    private static final String KEY_RENDER_MS = "render_ms";
+    private static final String KEY_IDLE_MS = "idle_ms";
+    private static final String KEY_FRAMES = "frames";
+    private static final String KEY_WAKEUPS = "wakeups";
+    private static final String KEY_UPDATED_AT = "updated_at";
+    private static final String KEY_RENDER_PATH = "render_path";
+    private static final String KEY_SENSOR_EVENTS = "sensor_events";
+    private static final String KEY_SENSOR_WAKEUPS = "sensor_wakeups";
+    private static final String KEY_SENSOR_FAST_MS = "sensor_fast_ms";
+
+    private ParallaxDiagnostics() {}
+
+    /**
+     * Adds one visible period's counters to the totals. {@code renderPath}
+     * ("hardware" / "software") is the canvas in use at the end of it.
+     * {@code sensorWakeups} counts tilt sensor deliveries: with batching one
+     * delivery carries several of the {@code sensorEvents}.
+     */
+    static void record(Context context, long renderMs, long idleMs, long frames, long wakeups,
+                       String renderPath, long sensorEvents, long sensorWakeups, long sensorFastMs) {
+        SharedPreferences prefs = prefs(context);
+        prefs.edit()
+            .putLong(KEY_RENDER_MS, prefs.getLong(KEY_RENDER_MS, 0) + renderMs)
+            .putLong(KEY_IDLE_MS, prefs.getLong(KEY_IDLE_MS, 0) + idleMs)
+            .putLong(KEY_FRAMES, prefs.getLong(KEY_FRAMES, 0) + frames)
+            .putLong(KEY_WAKEUPS, prefs.getLong(KEY_WAKEUPS, 0) + wakeups)
+            .putLong(KEY_UPDATED_AT, System.currentTimeMillis())
+            .putString(KEY_RENDER_PATH, renderPath)
+            .putLong(KEY_SENSOR_EVENTS, prefs.getLong(KEY_SENSOR_EVENTS, 0) + sensorEvents)
+            .putLong(KEY_SENSOR_WAKEUPS, prefs.getLong(KEY_SENSOR_WAKEUPS, 0) + sensorWakeups)
+            .putLong(KEY_SENSOR_FAST_MS, prefs.getLong(KEY_SENSOR_FAST_MS, 0) + sensorFastMs)
+            .apply();
+    }
+
+    static JSObject read(Context context) {
+        SharedPreferences prefs = prefs(context);
+        long renderMs = prefs.getLong(KEY_RENDER_MS, 0);
+        long idleMs = prefs.getLong(KEY_IDLE_MS, 0);
+        long visibleMs = renderMs + idleMs;
+        long wakeups = prefs.getLong(KEY_WAKEUPS, 0);
+        long sensorWakeups = prefs.getLong(KEY_SENSOR_WAKEUPS, 0);
+
+        JSObject result = new JSObject();
+        result.put("renderMs", renderMs);
+        result.put("idleMs", idleMs);
+        result.put("idleFraction", visibleMs > 0 ? (double) idleMs / visibleMs : 0d);
+        result.put("frames", prefs.getLong(KEY_FRAMES, 0));
+        result.put("wakeups", wakeups);
+        result.put("wakeupsPerMinute", perMinute(wakeups, visibleMs));
+        result.put("updatedAt", prefs.getLong(KEY_UPDATED_AT, 0));
+        result.put("renderPath", prefs.getString(KEY_RENDER_PATH, null));
+        result.put("sensorEvents", prefs.getLong(KEY_SENSOR_EVENTS, 0));
+        result.put("sensorWakeups", sensorWakeups);
+        result.put("sensorWakeupsPerMinute", perMinute(sensorWakeups, visibleMs));
+        result.put("sensorFastMs", prefs.getLong(KEY_SENSOR_FAST_MS, 0));
+        return result;
+    }
+
+    private static double perMinute(long count, long visibleMs) {
+        return visibleMs > 0 ? count * 60_000d / visibleMs : 0d;
+    }
+
+    static void reset(Context context) {
+        prefs(context).edit().clear().apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,201 @@
+package com.dreamydesk.app;
+
+/**
+ * Where ParallaxWallpaperService's image sits for one frame: pan position
+ * (an acceleration-clamped damped spring chasing a target set by scroll and
+ * tilt), perspective rotation and depth "breathing" scale, plus whether the
+ * pan has settled so the frame loop may park.
+ *
+ * No Android types, so it is unit tested and benchmarked on the JVM. A
+ * step allocates nothing: the damping factor is only recomputed when the
+ * frame interval changes (at a steady refresh rate it repeats), and the
+ * breathing sqrt is skipped at zero tilt. Render thread only.
+ */
+final class ParallaxMotion {
+
+    /** Pan distance and per-frame velocity (px) below which the spring counts as settled. */
+    static final float SETTLE_EPSILON_PX = 0.1f;
+    static final float MAX_PERSPECTIVE_DEGREES = 5.5f;
+
+    // Acceleration clamp: caps how much velocity can change in one frame, so a
+    // sudden tilt or fast swipe can't cause a jarring instantaneous snap —
+    // motion always ramps up/down instead of teleporting in direction/speed.
+    static final float MAX_ACCEL_PER_FRAME = 0.55f; // px/frame^2 scaling factor
+    static final float SPRING_DAMPING = 0.86f;      // 0-1, higher = less overshoot
+    // pow(SPRING_DAMPING, n) == exp(n * LN_SPRING_DAMPING)
+    private static final double LN_SPRING_DAMPING = Math.log(SPRING_DAMPING);
+
+    // ----- settings, refreshed every frame -----
+    private float intensity;     // 0-100
+    private float speed;         // 0.01-1
+    private float depthStrength; // 0-2
+    private boolean scrollEnabled;
+    private boolean sensorEnabled;
+
+    // ----- pan range (image size minus surface size) -----
+    private float maxPanX, maxPanY;
+
+    // ----- spring state -----
+    // Modelling pan as a damped spring (critically-damped-ish) instead of a
+    // fixed-rate exponential lerp gives a natural ease-out: it starts quickly
+    // toward a new target and settles smoothly, rather than moving at a
+    // constant fractional rate every frame regardless of distance.
+    private float panX = -1f; // -1 sentinel = "not yet initialised"
+    private float panY = -1f;
+    private float velocityX = 0f;
+    private float velocityY = 0f;
+    private long lastFrameNanos = 0L;
+    private long dampingForNanos = -1L; // frame interval cachedDamping was computed for
+    private float cachedDamping = 1f;
+
+    // ----- last step's output -----
+    private float perspectiveX, perspectiveY;
+    private float scale = 1f;
+
+    void setSettings(float intensity, float speed, float depthStrength,
+                     boolean scrollEnabled, boolean sensorEnabled) {
+        this.intensity = intensity;
+        this.speed = speed;
+        this.depthStrength = depthStrength;
+        this.scrollEnabled = scrollEnabled;
+        this.sensorEnabled = sensorEnabled;
+    }
+
+    /** New image or surface size. An uninitialised pan starts centred. */
+    void setPanRange(float maxPanX, float maxPanY) {
+        this.maxPanX = maxPanX;
+        this.maxPanY = maxPanY;
+        if (panX < 0) panX = maxPanX / 2f;
+        if (panY < 0) panY = maxPanY / 2f;
+    }
+
+    /** New image: don't jump from a stale position or carry over velocity. */
+    void reset() {
+        panX = -1f;
+        panY = -1f;
+        velocityX = 0f;
+        velocityY = 0f;
+    }
+
+    /** After a pause: dt restarts from one frame, not from the length of the pause. */
+    void restartClock() {
+        lastFrameNanos = 0L;
+    }
+
+    /**
+     * Advances to {@code frameTimeNanos} with this frame's input snapshot
+     * (scroll -1..1, tilt -1..1 each). Returns true once pan and velocity
+     * are below SETTLE_EPSILON_PX; perspective and breathing only change
+     * with tilt, which wakes the loop by itself.
+     */
+    boolean step(long frameTimeNanos, float scrollX, float tiltX, float tiltY) {
+        if (lastFrameNanos == 0L) {
+            lastFrameNanos = frameTimeNanos;
+        }
+        long intervalNanos = frameTimeNanos - lastFrameNanos;
+        float dt = intervalNanos / 1_000_000_000f;
+        lastFrameNanos = frameTimeNanos;
+        dt = clamp(dt, 1f / 240f, 1f / 20f);
+
+        // Combine input sources. Scroll only drives X (matches launcher paging);
+        // tilt drives both X and Y for the "3D" feel. Each source is weighted
+        // so combining both doesn't exceed the configured intensity.
+        float scrollWeight = scrollEnabled ? 1f : 0f;
+        float sensorWeight = sensorEnabled ? 1f : 0f;
+
+        float combinedX = clamp(scrollX * scrollWeight * 0.65f + tiltX * sensorWeight * 0.75f, -1f, 1f);
+        float combinedY = clamp(tiltY * sensorWeight, -1f, 1f);
+
+        float amplitudeFraction = intensity / 100f;
+        float targetPanX = (maxPanX / 2f) + combinedX * (maxPanX / 2f) * amplitudeFraction;
+        float targetPanY = (maxPanY / 2f) + combinedY * (maxPanY / 2f) * amplitudeFraction;
+
+        targetPanX = clamp(targetPanX, 0, maxPanX);
+        targetPanY = clamp(targetPanY, 0, maxPanY);
+
+        if (panX < 0) panX = targetPanX;
+        if (panY < 0) panY = targetPanY;
+
+        // --- Natural ease-out motion: acceleration-clamped damped spring ---
+        // Instead of a flat exponential lerp (constant fractional step every
+        // frame, which reads as slightly mechanical), treat the pan position
+        // as being pulled toward the target by a spring:
+        //   1. desired velocity = distance-to-target * speed  (like the old lerp,
+        //      but treated as a velocity request, not a direct position jump)
+        //   2. actual velocity change is capped per frame (MAX_ACCEL_PER_FRAME),
+        //      so direction/speed changes ramp in instead of snapping
+        //   3. velocity itself is damped each frame (SPRING_DAMPING), so motion
+        //      settles into the target smoothly (ease-out) instead of
+        //      overshooting or stopping abruptly
+        float desiredVelX = (targetPanX - panX) * speed * (dt * 60f);
+        float desiredVelY = (targetPanY - panY) * speed * (dt * 60f);
+
+        float panRangeForAccel = Math.max(1f, Math.max(maxPanX, maxPanY));
+        float maxAccel = Math.max(0.01f, speed) * MAX_ACCEL_PER_FRAME * panRangeForAccel * (dt * 60f);
+        velocityX += clamp(desiredVelX - velocityX, -maxAccel, maxAccel);
+        velocityY += clamp(desiredVelY - velocityY, -maxAccel, maxAccel);
+
+        // At a steady refresh rate the interval repeats, and so does the damping
+        if (intervalNanos != dampingForNanos) {
+            dampingForNanos = intervalNanos;
+            cachedDamping = (float) Math.exp(LN_SPRING_DAMPING * dt * 60f);
+        }
+        velocityX *= cachedDamping;
+        velocityY *= cachedDamping;
+
+        panX += velocityX;
+        panY += velocityY;
+        panX = clamp(panX, 0, maxPanX);
+        panY = clamp(panY, 0, maxPanY);
+
+        // --- Subtle depth "breathing": a faint scale-up as tilt magnitude
+        // increases, on top of the pan. Real depth-layered parallax (e.g.
+        // KLWP-style) reads as 3D partly because elements grow slightly
+        // closer as you tilt toward them, not just because they slide. A
+        // tiny scale range (up to +2%) is enough to sell that impression
+        // without ever exposing empty edges (bitmap is already oversized
+        // via `overscan`, which reserves room beyond what panning alone uses).
+        float perspectiveDegrees = MAX_PERSPECTIVE_DEGREES * depthStrength;
+        perspectiveX = tiltX * amplitudeFraction * perspectiveDegrees;
+        perspectiveY = tiltY * amplitudeFraction * perspectiveDegrees;
+
+        scale = 1f;
+        if (tiltX != 0f || tiltY != 0f) {
+            float tiltMagnitude = clamp((float) Math.sqrt(tiltX * tiltX + tiltY * tiltY), 0f, 1f);
+            scale = 1f + tiltMagnitude * amplitudeFraction * 0.02f;
+        }
+
+        return Math.abs(targetPanX - panX) < SETTLE_EPSILON_PX
+                && Math.abs(targetPanY - panY) < SETTLE_EPSILON_PX
+                && Math.abs(velocityX) < SETTLE_EPSILON_PX
+                && Math.abs(velocityY) < SETTLE_EPSILON_PX;
+    }
+
+    /** Left edge of the draw window in image pixels. */
+    float panX() {
+        return panX;
+    }
+
+    float panY() {
+        return panY;
+    }
+
+    /** Camera rotation about Y, in degrees. */
+    float perspectiveX() {
+        return perspectiveX;
+    }
+
+    /** Camera rotation about X (negated when applied), in degrees. */
+    float perspectiveY() {
+        return perspectiveY;
+    }
+
+    /** Breathing scale about the surface centre, 1 at zero tilt. */
+    float scale() {
+        return scale;
+    }
+
+    private static float clamp(float v, float min, float max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -14,6 +14,10 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.service.wallpaper.WallpaperService;
 import android.util.Log;
 import android.view.Choreographer;
@@ -21,6 +25,11 @@ import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Parallax Wallpaper Service
@@ -35,6 +44,25 @@ import java.io.File;
  * empty edges. All range/speed/behaviour knobs are read from SharedPreferences and
  * can be changed live by the app via WallpaperPlugin#updateParallaxSettings — this
  * engine listens for preference changes and applies them on the fly, no restart needed.
+ *
+ * Threading: each engine renders on its own HandlerThread with its own
+ * Choreographer. The service's main thread only receives callbacks (sensor,
+ * touch, offsets, prefs) and publishes their result through atomics; image
+ * loading, pan physics and drawing all happen on the render thread, so a
+ * slow callback or a decode can no longer push a frame past its vsync.
+ *
+ * Render on demand: once the pan spring has settled (sub-pixel distance and
+ * velocity) the frame loop parks instead of redrawing an unchanged frame
+ * every vsync. Scroll, touch, settings changes, a new image and tilt beyond
+ * TILT_WAKE_THRESHOLD wake it again. Time spent rendering vs parked is
+ * accumulated in ParallaxDiagnostics. The loop itself (vsync scheduling,
+ * parking, frame timing) is RenderLoop; the engine is its Renderer.
+ *
+ * On API 26+ frames are drawn through lockHardwareCanvas with the image
+ * uploaded once as a HARDWARE bitmap, so the GPU does the filtered,
+ * perspective-transformed blit instead of the CPU rasterizing it every
+ * frame. If the hardware canvas can't be locked the engine falls back to
+ * the software canvas (and a software copy of the image) for good.
  */
 public class ParallaxWallpaperService extends WallpaperService {
 
@@ -52,7 +80,37 @@ public class ParallaxWallpaperService extends WallpaperService {
     private static final float DEFAULT_INTENSITY = 30f;
     private static final float DEFAULT_SPEED = 0.2f;
     private static final float DEFAULT_DEPTH_STRENGTH = 1.0f;
-    private static final float MAX_PERSPECTIVE_DEGREES = 5.5f;
+
+    /** Tilt change (normalized -1..1) that wakes a parked loop; smaller is sensor noise. */
+    private static final float TILT_WAKE_THRESHOLD = 0.01f;
+
+    /** How long onSurfaceDestroyed waits for the render thread to let go of the surface. */
+    private static final long SURFACE_RELEASE_TIMEOUT_MS = 500;
+
+    // ----- tilt sensor rates -----
+    // While the phone is held still the sensor runs slow and, where the
+    // hardware has a FIFO, batched: the CPU wakes a few times a second for a
+    // burst of samples instead of for every sample. Fast tilting switches to
+    // an unbatched rate picked from how strongly tilt shows on screen.
+    /** Sample period at full on-screen tilt gain; about SENSOR_DELAY_GAME. */
+    private static final int FAST_PERIOD_US = 16_667;
+    /** Slowest fast-mode period, for settings where tilt barely moves the image. */
+    private static final int FAST_PERIOD_MAX_US = 50_000;
+    /** Tilt gain (see tiltGain()) at and above which fast mode runs at FAST_PERIOD_US. */
+    private static final float FULL_RATE_TILT_GAIN = 0.3f;
+    private static final int CALM_PERIOD_US = 50_000;
+    /** How long the sensor hub may hold calm samples before delivering them. */
+    private static final int CALM_MAX_LATENCY_US = 250_000;
+    /** Calm period on sensors without a FIFO, where every sample is a wakeup. */
+    private static final int CALM_UNBATCHED_PERIOD_US = 100_000;
+    /** Smoothed tilt speed (normalized units/s) that switches to fast mode. */
+    private static final float FAST_TILT_SPEED = 0.15f;
+    /** Fast mode lasts this long after the last fast-moving sample. */
+    private static final long FAST_HOLD_NANOS = 1_500_000_000L;
+    /** Sample interval the tilt filter alphas were tuned at (SENSOR_DELAY_GAME). */
+    private static final float FILTER_REFERENCE_DT_S = 0.02f;
+    /** Callbacks closer together than this belong to one delivery (one CPU wakeup). */
+    private static final long SENSOR_BURST_GAP_NANOS = 2_000_000L;
 
     @Override
     public Engine onCreateEngine() {
@@ -60,12 +118,32 @@ public class ParallaxWallpaperService extends WallpaperService {
     }
 
     private class ParallaxEngine extends Engine implements SensorEventListener,
-            SharedPreferences.OnSharedPreferenceChangeListener {
+            SharedPreferences.OnSharedPreferenceChangeListener, RenderLoop.Renderer, RenderLoop.Vsync {
+
+        // Render thread; everything below marked "render thread" is only touched there
+        private HandlerThread renderThread;
+        private Handler renderHandler;
+        private Choreographer choreographer;
+        private RenderLoop renderLoop;
 
-        private SurfaceHolder holder;
+        private volatile SurfaceHolder holder;
         private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
         private final Camera camera = new Camera();
-        private final Matrix cameraMatrix = new Matrix();
+
+        // ----- per-frame transform caches (render thread) -----
+        // Everything draw() needs is preallocated: a steady-state frame
+        // allocates nothing and only redoes the math whose inputs changed.
+        private final Matrix perspectiveMatrix = new Matrix(); // camera rotation, pivot at origin
+        private final Matrix frameMatrix = new Matrix();       // full bitmap → surface transform
+        private final Matrix inverseMatrix = new Matrix();
+        private final float[] corners = new float[8];
+        private float perspectiveForX = Float.NaN;   // rotation perspectiveMatrix was built for
+        private float perspectiveForY = Float.NaN;
+        // What the surface currently shows; an identical frame isn't redrawn
+        private float shownPanX = Float.NaN;
+        private float shownPanY = Float.NaN;
+        private float shownScale = Float.NaN;
+        private boolean forceRedraw = true;
         private final float[] rotationMatrix = new float[9];
         private final float[] orientation = new float[3];
 
@@ -74,12 +152,49 @@ public class ParallaxWallpaperService extends WallpaperService {
         private Sensor accelerometer;
         private Sensor gameRotation;
 
+        // ----- render thread -----
         private Bitmap bitmap;
         private long loadedTimestamp = -1;
 
-        private boolean visible = true;
+        // Load-to-first-frame timing for the current image, logged once
+        private long loadStartNanos = 0L;
+        private long loadMs = 0L;
+        private String loadedFormat;
+
+        // ----- canvas path (render thread) -----
+        private final CanvasPath<Canvas> canvasPath = new CanvasPath<>(new CanvasPath.Surface<Canvas>() {
+            @Override
+            public Canvas lockHardware() {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                    throw new UnsupportedOperationException("Hardware canvas needs API 26");
+                }
+                return holder.lockHardwareCanvas();
+            }
+
+            @Override
+            public Canvas lockSoftware() {
+                return holder.lockCanvas();
+            }
+        }, Build.VERSION.SDK_INT >= Build.VERSION_CODES.O, this::fallBackToSoftware);
+        // Config the image had before the GPU upload, for a software fallback copy
+        private Bitmap.Config softwareConfig;
+
+        private volatile boolean visible = true;
         private boolean sensorRegistered = false;
 
+        // ----- adaptive sensor rate (main thread) -----
+        private boolean sensorFast = false;
+        private int registeredPeriodUs;
+        private int registeredLatencyUs;
+        private long fastSinceNanos;
+        private long lastFastMotionNanos;
+        private long lastSensorTimestamp = 0L;
+        private long lastSensorCallbackNanos = 0L;
+        // Counted on the main thread, collected by endVisiblePeriod()
+        private final AtomicLong sensorEvents = new AtomicLong();
+        private final AtomicLong sensorWakeups = new AtomicLong();
+        private final AtomicLong sensorFastNanos = new AtomicLong();
+
         // Manual swipe fallback state (for launchers that don't report offsets reliably)
         private float lastTouchX = 0f;
         private boolean touchDragging = false;
@@ -91,32 +206,38 @@ public class ParallaxWallpaperService extends WallpaperService {
         private volatile boolean sensorEnabled = true;
         private volatile boolean scrollEnabled = true;
 
-        // ----- pan geometry (recomputed on surface/bitmap change) -----
-        private int surfaceW, surfaceH;
-        private float maxPanX, maxPanY;
-
-        // ----- targets driven by input sources, combined then smoothed -----
-        private float scrollNormX = 0f; // -1..1, from home-screen offset
+        // ----- surface size; pan range is recomputed from it on the render thread -----
+        private volatile int surfaceW, surfaceH;
+
+        // ----- input handoff: main thread writes, render thread reads -----
+        // Lock-free and allocation-free. Tilt X/Y are packed into one long
+        // (two float bit patterns) so a frame never pairs the X of one sensor
+        // event with the Y of another.
+        private final AtomicInteger scrollInput = new AtomicInteger(Float.floatToIntBits(0f)); // -1..1
+        private final AtomicLong tiltInput = new AtomicLong(packFloats(0f, 0f));             // -1..1 each
+        // Set by the render thread when a new image loads; the sensor callback
+        // then restarts its smoothing from zero.
+        private volatile boolean tiltResetRequested = false;
+
+        // ----- idle parking (RenderLoop parks; non-tilt input wakes it) -----
+        // Tilt the last frame before parking was drawn with
+        private final AtomicLong parkedTilt = new AtomicLong(packFloats(0f, 0f));
+        // What the current frame was drawn with (render thread)
+        private long drawnTilt;
+
+        // ----- render vs idle time while visible (render thread) -----
+        private long phaseStartNanos = 0L; // 0 = not visible
+        private long renderNanos = 0L;
+        private long idleNanos = 0L;
+        private long visibleFrames = 0L;
+        private long wakeups = 0L;
+
+        // ----- sensor filter state (main thread) -----
         private float tiltNormX = 0f;   // -1..1, low-pass filtered tilt
         private float tiltNormY = 0f;
 
-        // ----- smoothed current pan position (top-left of the draw window) -----
-        private float currentPanX = -1f; // -1 sentinel = "not yet initialised"
-        private float currentPanY = -1f;
-
-        // ----- velocity state for spring-damped motion (replaces plain lerp) -----
-        // Modelling pan as a damped spring (critically-damped-ish) instead of a
-        // fixed-rate exponential lerp gives a natural ease-out: it starts quickly
-        // toward a new target and settles smoothly, rather than moving at a
-        // constant fractional rate every frame regardless of distance.
-        private float velocityX = 0f;
-        private float velocityY = 0f;
-
-        // Acceleration clamp: caps how much velocity can change in one frame, so a
-        // sudden tilt or fast swipe can't cause a jarring instantaneous snap —
-        // motion always ramps up/down instead of teleporting in direction/speed.
-        private static final float MAX_ACCEL_PER_FRAME = 0.55f; // px/frame^2 scaling factor
-        private static final float SPRING_DAMPING = 0.86f;      // 0-1, higher = less overshoot
+        // ----- pan spring, perspective and breathing (render thread) -----
+        private final ParallaxMotion motion = new ParallaxMotion();
 
         // low-pass filter state for accelerometer (stage 1: isolate gravity from noise)
         private final float[] gravity = new float[3];
@@ -129,14 +250,8 @@ public class ParallaxWallpaperService extends WallpaperService {
         private float smoothedTiltNormY = 0f;
         private static final float TILT_SMOOTHING_ALPHA = 0.2f;
 
-        private boolean frameScheduled = false;
-        private long lastFrameNanos = 0L;
-        private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> {
-            frameScheduled = false;
-            if (!visible) return;
-            draw(frameTimeNanos);
-            scheduleNextFrame();
-        };
+        // ----- render thread -----
+        private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> renderLoop.doFrame(frameTimeNanos);
 
         ParallaxEngine() {
             holder = getSurfaceHolder();
@@ -150,6 +265,13 @@ public class ParallaxWallpaperService extends WallpaperService {
             // Enable direct touch callbacks as a fallback swipe source.
             setTouchEventsEnabled(true);
 
+            renderThread = new HandlerThread("parallax-render", Process.THREAD_PRIORITY_DISPLAY);
+            renderThread.start();
+            renderHandler = new Handler(renderThread.getLooper());
+            renderLoop = new RenderLoop(this, renderHandler::post, this);
+            // Choreographer.getInstance() is per-thread: this one ticks on the render looper
+            renderHandler.post(() -> choreographer = Choreographer.getInstance());
+
             prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
             prefs.registerOnSharedPreferenceChangeListener(this);
             sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
@@ -180,19 +302,22 @@ public class ParallaxWallpaperService extends WallpaperService {
             if (key == null) return;
 
             switch (key) {
-                case KEY_INTENSITY:
                 case KEY_SPEED:
-                case KEY_DEPTH_STRENGTH:
                 case KEY_SCROLL_ENABLED:
                     readSettingsFromPrefs();
+                    wake();
                     break;
+                case KEY_INTENSITY:
+                case KEY_DEPTH_STRENGTH:
                 case KEY_SENSOR_ENABLED:
+                    // These change the sensor rate (or whether it runs at all)
                     readSettingsFromPrefs();
                     updateSensorRegistration();
+                    wake();
                     break;
                 case KEY_IMAGE_PATH:
                 case KEY_TIMESTAMP:
-                    loadImageIfChanged();
+                    renderHandler.post(this::loadImageIfChanged);
                     break;
                 default:
                     break;
@@ -200,7 +325,7 @@ public class ParallaxWallpaperService extends WallpaperService {
         }
 
         // =========================================================
-        // IMAGE LOADING
+        // IMAGE LOADING (render thread)
         // =========================================================
         private void loadImageIfChanged() {
             String path = prefs.getString(KEY_IMAGE_PATH, null);
@@ -222,30 +347,93 @@ public class ParallaxWallpaperService extends WallpaperService {
             }
 
             recycleBitmap();
-
-            // Image was already sized/compressed for panning room by the plugin,
-            // so a direct decode is fine here (no need to re-sample).
-            BitmapFactory.Options opts = new BitmapFactory.Options();
-            opts.inPreferredConfig = Bitmap.Config.RGB_565; // lighter for a long-lived wallpaper bitmap
-            bitmap = BitmapFactory.decodeFile(path, opts);
+            loadStartNanos = System.nanoTime();
+
+            if (RawPixelFile.isRaw(path)) {
+                // Written by the plugin in the engine's own pixel format: a
+                // mapped copy into the bitmap, no decode.
+                try {
+                    bitmap = RawPixelFile.read(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to read raw parallax image: " + e.getMessage());
+                    return;
+                }
+                loadedFormat = "raw";
+            } else {
+                // Image was already sized/compressed for panning room by the plugin,
+                // so a direct decode is fine here (no need to re-sample).
+                BitmapFactory.Options opts = new BitmapFactory.Options();
+                opts.inPreferredConfig = Bitmap.Config.RGB_565; // lighter for a long-lived wallpaper bitmap
+                bitmap = BitmapFactory.decodeFile(path, opts);
+                loadedFormat = "jpeg";
+            }
 
             if (bitmap == null) {
                 Log.e(TAG, "Failed to decode parallax image");
                 return;
             }
+            softwareConfig = bitmap.getConfig();
+            if (canvasPath.isHardware()) {
+                uploadToGpu();
+            }
+            loadMs = (System.nanoTime() - loadStartNanos) / 1_000_000;
 
             loadedTimestamp = timestamp;
             // reset smoothing so we don't jump from a stale position or carry
             // over velocity/tilt state from a previously-loaded wallpaper
-            currentPanX = -1f;
-            currentPanY = -1f;
-            velocityX = 0f;
-            velocityY = 0f;
-            smoothedTiltNormX = 0f;
-            smoothedTiltNormY = 0f;
+            motion.reset();
+            tiltInput.set(packFloats(0f, 0f));
+            tiltResetRequested = true;
+            forceRedraw = true;
             recomputePanBounds();
 
-            Log.d(TAG, "Parallax image loaded: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+            Log.d(TAG, "Parallax image loaded: " + bitmap.getWidth() + "x" + bitmap.getHeight() +
+                  " " + bitmap.getConfig() + " from " + loadedFormat + " in " + loadMs + "ms");
+            wake();
+        }
+
+        /**
+         * Replaces the image with a HARDWARE copy: one texture upload now
+         * instead of the renderer re-uploading or rasterizing it per frame.
+         * The software pixels are freed; fallBackToSoftware() can copy back.
+         */
+        private void uploadToGpu() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+            Bitmap gpu = bitmap.copy(Bitmap.Config.HARDWARE, false);
+            if (gpu == null) {
+                Log.w(TAG, "GPU upload failed, drawing from the software bitmap");
+                return;
+            }
+            bitmap.recycle();
+            bitmap = gpu;
+        }
+
+        /**
+         * Software canvases can't draw HARDWARE bitmaps: bring the pixels back
+         * first. Returns false if the copy failed; the reload it posts draws
+         * the next frame.
+         */
+        private boolean fallBackToSoftware(RuntimeException cause) {
+            Log.w(TAG, "Hardware canvas unsupported (" + cause + "), falling back to software");
+            if (bitmap == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O
+                    || bitmap.getConfig() != Bitmap.Config.HARDWARE) {
+                return bitmap != null;
+            }
+
+            Bitmap software = bitmap.copy(softwareConfig != null ? softwareConfig : Bitmap.Config.RGB_565, false);
+            bitmap.recycle();
+            bitmap = software;
+            if (software == null) {
+                // Reload from disk instead
+                loadedTimestamp = -1;
+                renderHandler.post(this::loadImageIfChanged);
+                return false;
+            }
+            return true;
+        }
+
+        private String renderPath() {
+            return canvasPath.isHardware() ? "hardware" : "software";
         }
 
         private void recycleBitmap() {
@@ -257,33 +445,125 @@ public class ParallaxWallpaperService extends WallpaperService {
 
         private void recomputePanBounds() {
             if (bitmap == null || surfaceW == 0 || surfaceH == 0) return;
+            forceRedraw = true; // new surface size or new image
 
-            maxPanX = Math.max(0, bitmap.getWidth() - surfaceW);
-            maxPanY = Math.max(0, bitmap.getHeight() - surfaceH);
-
-            if (currentPanX < 0) currentPanX = maxPanX / 2f;
-            if (currentPanY < 0) currentPanY = maxPanY / 2f;
+            motion.setPanRange(Math.max(0, bitmap.getWidth() - surfaceW),
+                    Math.max(0, bitmap.getHeight() - surfaceH));
         }
 
         // =========================================================
         // SENSOR (TILT)
         // =========================================================
+        /**
+         * Registers the tilt sensor at the rate the current mode and settings
+         * call for, re-registering when that rate changed. Not registered at
+         * all while tilt can't show (intensity 0).
+         */
         private void updateSensorRegistration() {
             boolean hasAnyTiltSensor = gameRotation != null || accelerometer != null;
-            boolean shouldRegister = visible && sensorEnabled && hasAnyTiltSensor;
+            boolean shouldRegister = visible && sensorEnabled && intensity > 0f && hasAnyTiltSensor;
+
+            if (!shouldRegister) {
+                if (sensorRegistered) {
+                    sensorManager.unregisterListener(this);
+                    sensorRegistered = false;
+                    if (sensorFast) endFastMode();
+                    lastSensorTimestamp = 0L;
+                }
+                return;
+            }
 
-            if (shouldRegister && !sensorRegistered) {
-                Sensor activeSensor = gameRotation != null ? gameRotation : accelerometer;
-                sensorManager.registerListener(this, activeSensor, SensorManager.SENSOR_DELAY_GAME);
-                sensorRegistered = true;
-            } else if (!shouldRegister && sensorRegistered) {
+            Sensor activeSensor = gameRotation != null ? gameRotation : accelerometer;
+            int periodUs;
+            int latencyUs;
+            if (sensorFast) {
+                periodUs = fastPeriodUs();
+                latencyUs = 0;
+            } else if (activeSensor.getFifoMaxEventCount() > 0) {
+                periodUs = CALM_PERIOD_US;
+                latencyUs = CALM_MAX_LATENCY_US;
+            } else {
+                periodUs = CALM_UNBATCHED_PERIOD_US;
+                latencyUs = 0;
+            }
+            if (sensorRegistered && periodUs == registeredPeriodUs && latencyUs == registeredLatencyUs) {
+                return;
+            }
+
+            if (sensorRegistered) {
                 sensorManager.unregisterListener(this);
-                sensorRegistered = false;
             }
+            sensorManager.registerListener(this, activeSensor, periodUs, latencyUs);
+            sensorRegistered = true;
+            registeredPeriodUs = periodUs;
+            registeredLatencyUs = latencyUs;
+            Log.d(TAG, "Tilt sensor " + (sensorFast ? "fast" : "calm") + ": " + (periodUs / 1000) +
+                  "ms period, " + (latencyUs / 1000) + "ms batch latency");
+        }
+
+        /**
+         * How strongly tilt shows on screen, 0 to ~1: pan follows intensity,
+         * the perspective rotation intensity × depthStrength.
+         */
+        private float tiltGain() {
+            return intensity / 100f * (1f + depthStrength) / 2f;
+        }
+
+        /** Fast-mode period: full rate at normal gain, slower when tilt barely moves the image. */
+        private int fastPeriodUs() {
+            float gain = tiltGain();
+            if (gain >= FULL_RATE_TILT_GAIN) return FAST_PERIOD_US;
+            return (int) clamp(FAST_PERIOD_US * FULL_RATE_TILT_GAIN / Math.max(gain, 0.01f),
+                    FAST_PERIOD_US, FAST_PERIOD_MAX_US);
+        }
+
+        private void endFastMode() {
+            sensorFast = false;
+            sensorFastNanos.addAndGet(System.nanoTime() - fastSinceNanos);
+        }
+
+        /** Switches between fast and calm sampling from the smoothed tilt's speed. */
+        private void adaptSensorRate(float speed, long timestamp) {
+            if (speed > FAST_TILT_SPEED) {
+                lastFastMotionNanos = timestamp;
+                if (!sensorFast) {
+                    sensorFast = true;
+                    fastSinceNanos = System.nanoTime();
+                    updateSensorRegistration();
+                }
+            } else if (sensorFast && timestamp - lastFastMotionNanos > FAST_HOLD_NANOS) {
+                endFastMode();
+                updateSensorRegistration();
+            }
+        }
+
+        /** Per-sample filter alpha tuned at FILTER_REFERENCE_DT_S, rescaled for a {@code dt} interval. */
+        private static float alphaFor(float alpha, float dt) {
+            return 1f - (float) Math.pow(1f - alpha, dt / FILTER_REFERENCE_DT_S);
         }
 
         @Override
         public void onSensorChanged(SensorEvent event) {
+            long now = System.nanoTime();
+            sensorEvents.incrementAndGet();
+            if (now - lastSensorCallbackNanos > SENSOR_BURST_GAP_NANOS) {
+                sensorWakeups.incrementAndGet();
+            }
+            lastSensorCallbackNanos = now;
+
+            if (tiltResetRequested) {
+                tiltResetRequested = false;
+                smoothedTiltNormX = 0f;
+                smoothedTiltNormY = 0f;
+            }
+
+            // The filters run per sample, and the sample rate now varies:
+            // keep their time constants fixed by scaling alpha with the interval.
+            float dt = lastSensorTimestamp == 0L
+                    ? FILTER_REFERENCE_DT_S
+                    : clamp((event.timestamp - lastSensorTimestamp) / 1_000_000_000f, 0.001f, 0.5f);
+            lastSensorTimestamp = event.timestamp;
+
             int type = event.sensor.getType();
             if (type == Sensor.TYPE_GAME_ROTATION_VECTOR) {
                 SensorManager.getRotationMatrixFromVector(rotationMatrix, event.values);
@@ -295,8 +575,9 @@ public class ParallaxWallpaperService extends WallpaperService {
                 tiltNormY = clamp((float) (-pitch / 0.6f), -1f, 1f);
             } else if (type == Sensor.TYPE_ACCELEROMETER) {
                 // Simple low-pass filter to isolate gravity/tilt from jitter/motion noise
-                gravity[0] = LOW_PASS_ALPHA * event.values[0] + (1 - LOW_PASS_ALPHA) * gravity[0];
-                gravity[1] = LOW_PASS_ALPHA * event.values[1] + (1 - LOW_PASS_ALPHA) * gravity[1];
+                float lowPass = alphaFor(LOW_PASS_ALPHA, dt);
+                gravity[0] = lowPass * event.values[0] + (1 - lowPass) * gravity[0];
+                gravity[1] = lowPass * event.values[1] + (1 - lowPass) * gravity[1];
 
                 // gravity[0] (x) ranges roughly -9.8..9.8 as the phone tilts left/right.
                 // gravity[1] (y) ranges roughly -9.8..9.8 as the phone tilts up/down.
@@ -315,8 +596,19 @@ public class ParallaxWallpaperService extends WallpaperService {
             // resulting tiltNormX/Y can still carry small hand-tremor jitter that
             // reads as a "nervous" twitch once amplified by intensity. This extra
             // stage removes that without adding perceptible input lag.
-            smoothedTiltNormX += (tiltNormX - smoothedTiltNormX) * TILT_SMOOTHING_ALPHA;
-            smoothedTiltNormY += (tiltNormY - smoothedTiltNormY) * TILT_SMOOTHING_ALPHA;
+            float smoothing = alphaFor(TILT_SMOOTHING_ALPHA, dt);
+            float stepX = (tiltNormX - smoothedTiltNormX) * smoothing;
+            float stepY = (tiltNormY - smoothedTiltNormY) * smoothing;
+            smoothedTiltNormX += stepX;
+            smoothedTiltNormY += stepY;
+            adaptSensorRate(Math.max(Math.abs(stepX), Math.abs(stepY)) / dt, event.timestamp);
+            long tilt = packFloats(smoothedTiltNormX, smoothedTiltNormY);
+            tiltInput.set(tilt);
+            // Read after publishing; parking (onPark, then inputMissed) reads in
+            // the opposite order, so a tilt that races with it is seen by one side or the other.
+            if (renderLoop.isParked() && tiltMoved(parkedTilt.get(), tilt)) {
+                wake();
+            }
         }
 
         @Override
@@ -332,7 +624,8 @@ public class ParallaxWallpaperService extends WallpaperService {
                                       float yOffsetStep, int xPixelOffset, int yPixelOffset) {
             super.onOffsetsChanged(xOffset, yOffset, xOffsetStep, yOffsetStep, xPixelOffset, yPixelOffset);
             // xOffset is 0 (left-most home screen) .. 1 (right-most). Centre it to -1..1.
-            scrollNormX = clamp((xOffset - 0.5f) * 2f, -1f, 1f);
+            scrollInput.set(Float.floatToIntBits(clamp((xOffset - 0.5f) * 2f, -1f, 1f)));
+            wake();
         }
 
         @Override
@@ -359,7 +652,9 @@ public class ParallaxWallpaperService extends WallpaperService {
 
                     // Swipe right should move toward left pages (smaller offset), so invert sign.
                     float deltaNorm = -(dx / Math.max(1f, (float) surfaceW)) * 2f;
-                    scrollNormX = clamp(scrollNormX + deltaNorm, -1f, 1f);
+                    float scrollNormX = Float.intBitsToFloat(scrollInput.get());
+                    scrollInput.set(Float.floatToIntBits(clamp(scrollNormX + deltaNorm, -1f, 1f)));
+                    wake();
                     break;
                 case MotionEvent.ACTION_UP:
                 case MotionEvent.ACTION_CANCEL:
@@ -371,104 +666,58 @@ public class ParallaxWallpaperService extends WallpaperService {
         }
 
         // =========================================================
-        // DRAW LOOP
+        // DRAW LOOP (render thread)
         // =========================================================
-        private void draw(long frameTimeNanos) {
-            if (!visible || bitmap == null) return;
-
-            if (lastFrameNanos == 0L) {
-                lastFrameNanos = frameTimeNanos;
-            }
-            float dt = (frameTimeNanos - lastFrameNanos) / 1_000_000_000f;
-            lastFrameNanos = frameTimeNanos;
-            dt = clamp(dt, 1f / 240f, 1f / 20f);
-
-            // Combine input sources. Scroll only drives X (matches launcher paging);
-            // tilt drives both X and Y for the "3D" feel. Each source is weighted
-            // so combining both doesn't exceed the configured intensity.
-            float scrollWeight = scrollEnabled ? 1f : 0f;
-            float sensorWeight = sensorEnabled ? 1f : 0f;
-
-            float combinedX = clamp(scrollNormX * scrollWeight * 0.65f + smoothedTiltNormX * sensorWeight * 0.75f, -1f, 1f);
-            float combinedY = clamp(smoothedTiltNormY * sensorWeight, -1f, 1f);
-
-            float amplitudeFraction = intensity / 100f;
-            float targetPanX = (maxPanX / 2f) + combinedX * (maxPanX / 2f) * amplitudeFraction;
-            float targetPanY = (maxPanY / 2f) + combinedY * (maxPanY / 2f) * amplitudeFraction;
-
-            targetPanX = clamp(targetPanX, 0, maxPanX);
-            targetPanY = clamp(targetPanY, 0, maxPanY);
-
-            if (currentPanX < 0) currentPanX = targetPanX;
-            if (currentPanY < 0) currentPanY = targetPanY;
-
-            // --- Natural ease-out motion: acceleration-clamped damped spring ---
-            // Instead of a flat exponential lerp (constant fractional step every
-            // frame, which reads as slightly mechanical), treat the pan position
-            // as being pulled toward the target by a spring:
-            //   1. desired velocity = distance-to-target * speed  (like the old lerp,
-            //      but treated as a velocity request, not a direct position jump)
-            //   2. actual velocity change is capped per frame (MAX_ACCEL_PER_FRAME),
-            //      so direction/speed changes ramp in instead of snapping
-            //   3. velocity itself is damped each frame (SPRING_DAMPING), so motion
-            //      settles into the target smoothly (ease-out) instead of
-            //      overshooting or stopping abruptly
-            float desiredVelX = (targetPanX - currentPanX) * speed * (dt * 60f);
-            float desiredVelY = (targetPanY - currentPanY) * speed * (dt * 60f);
-
-            float panRangeForAccel = Math.max(1f, Math.max(maxPanX, maxPanY));
-            float maxAccel = Math.max(0.01f, speed) * MAX_ACCEL_PER_FRAME * panRangeForAccel * (dt * 60f);
-            velocityX += clamp(desiredVelX - velocityX, -maxAccel, maxAccel);
-            velocityY += clamp(desiredVelY - velocityY, -maxAccel, maxAccel);
-
-            float damping = (float) Math.pow(SPRING_DAMPING, dt * 60f);
-            velocityX *= damping;
-            velocityY *= damping;
-
-            currentPanX += velocityX;
-            currentPanY += velocityY;
-            currentPanX = clamp(currentPanX, 0, maxPanX);
-            currentPanY = clamp(currentPanY, 0, maxPanY);
-
-            // --- Subtle depth "breathing": a faint scale-up as tilt magnitude
-            // increases, on top of the pan. Real depth-layered parallax (e.g.
-            // KLWP-style) reads as 3D partly because elements grow slightly
-            // closer as you tilt toward them, not just because they slide. A
-            // tiny scale range (up to +2%) is enough to sell that impression
-            // without ever exposing empty edges (bitmap is already oversized
-            // via `overscan`, which reserves room beyond what panning alone uses).
-            float tiltMagnitude = clamp(
-                (float) Math.sqrt(smoothedTiltNormX * smoothedTiltNormX + smoothedTiltNormY * smoothedTiltNormY),
-                0f, 1f
-            );
-            float breatheScale = 1f + tiltMagnitude * amplitudeFraction * 0.02f;
+        /** Draws one frame; returns true once the pan has settled and the loop may park. */
+        private boolean draw(long frameTimeNanos) {
+            if (!visible || bitmap == null) return true;
+
+            // One consistent snapshot of the inputs for this frame
+            float scrollNormX = Float.intBitsToFloat(scrollInput.get());
+            long tilt = tiltInput.get();
+            drawnTilt = tilt;
+            float tiltX = unpackHigh(tilt);
+            float tiltY = unpackLow(tilt);
+
+            motion.setSettings(intensity, speed, depthStrength, scrollEnabled, sensorEnabled);
+            boolean settled = motion.step(frameTimeNanos, scrollNormX, tiltX, tiltY);
+            float currentPanX = motion.panX();
+            float currentPanY = motion.panY();
+            float breatheScale = motion.scale();
+            boolean perspectiveChanged = updatePerspective(motion.perspectiveX(), motion.perspectiveY());
+
+            // Same transform as the frame already on screen: don't lock the surface at all
+            if (!forceRedraw && !perspectiveChanged
+                    && currentPanX == shownPanX && currentPanY == shownPanY && breatheScale == shownScale) {
+                return settled;
+            }
+
+            // Canvas order translate(-pan) · perspective(about pivot) · scale(about pivot),
+            // folded into one matrix
+            float pivotX = surfaceW / 2f + currentPanX;
+            float pivotY = surfaceH / 2f + currentPanY;
+            frameMatrix.set(perspectiveMatrix);
+            frameMatrix.preTranslate(-pivotX, -pivotY);
+            frameMatrix.postTranslate(pivotX, pivotY);
+            if (breatheScale != 1f) {
+                frameMatrix.preScale(breatheScale, breatheScale, pivotX, pivotY);
+            }
+            frameMatrix.postTranslate(-currentPanX, -currentPanY);
+
+            boolean posted = false;
 
             Canvas canvas = null;
             try {
-                canvas = holder.lockCanvas();
-                if (canvas == null) return;
+                canvas = canvasPath.lock();
+                if (canvas == null) return false;
 
-                canvas.drawColor(Color.BLACK);
-                canvas.save();
-                canvas.translate(-currentPanX, -currentPanY);
-
-                float pivotX = surfaceW / 2f + currentPanX;
-                float pivotY = surfaceH / 2f + currentPanY;
-                float perspectiveDegrees = MAX_PERSPECTIVE_DEGREES * depthStrength;
-                float perspectiveX = smoothedTiltNormX * amplitudeFraction * perspectiveDegrees;
-                float perspectiveY = smoothedTiltNormY * amplitudeFraction * perspectiveDegrees;
-                camera.save();
-                camera.rotateY(perspectiveX);
-                camera.rotateX(-perspectiveY);
-                camera.getMatrix(cameraMatrix);
-                camera.restore();
-                cameraMatrix.preTranslate(-pivotX, -pivotY);
-                cameraMatrix.postTranslate(pivotX, pivotY);
-                canvas.concat(cameraMatrix);
-
-                if (breatheScale != 1f) {
-                    canvas.scale(breatheScale, breatheScale, pivotX, pivotY);
+                // The oversized image normally covers the whole surface; only
+                // clear when the transform exposes an edge
+                if (!coversSurface(frameMatrix)) {
+                    canvas.drawColor(Color.BLACK);
                 }
+                canvas.save();
+                canvas.concat(frameMatrix);
                 canvas.drawBitmap(bitmap, 0, 0, paint);
                 canvas.restore();
             } catch (Exception e) {
@@ -477,38 +726,209 @@ public class ParallaxWallpaperService extends WallpaperService {
                 if (canvas != null) {
                     try {
                         holder.unlockCanvasAndPost(canvas);
+                        posted = true;
+                        logFirstFrame();
                     } catch (Exception ignored) {}
                 }
             }
 
+            if (posted) {
+                shownPanX = currentPanX;
+                shownPanY = currentPanY;
+                shownScale = breatheScale;
+                forceRedraw = false;
+            }
+            return settled && posted;
         }
 
-        private void scheduleNextFrame() {
-            if (!visible || frameScheduled) return;
-            frameScheduled = true;
-            Choreographer.getInstance().postFrameCallback(frameCallback);
+        /**
+         * Rebuilds the camera rotation only when the rotation angles changed;
+         * returns whether it did. The pivot is applied per frame on a copy.
+         */
+        private boolean updatePerspective(float perspectiveX, float perspectiveY) {
+            if (perspectiveX == perspectiveForX && perspectiveY == perspectiveForY) return false;
+            perspectiveForX = perspectiveX;
+            perspectiveForY = perspectiveY;
+
+            camera.save();
+            camera.rotateY(perspectiveX);
+            camera.rotateX(-perspectiveY);
+            camera.getMatrix(perspectiveMatrix);
+            camera.restore();
+            return true;
         }
 
-        private void cancelFrameLoop() {
-            Choreographer.getInstance().removeFrameCallback(frameCallback);
-            frameScheduled = false;
+        /**
+         * Whether the bitmap, drawn through {@code matrix}, covers every
+         * surface pixel: maps the surface corners back into bitmap space and
+         * checks they all land inside the bitmap.
+         */
+        private boolean coversSurface(Matrix matrix) {
+            if (!matrix.invert(inverseMatrix)) return false;
+            corners[0] = 0;        corners[1] = 0;
+            corners[2] = surfaceW; corners[3] = 0;
+            corners[4] = 0;        corners[5] = surfaceH;
+            corners[6] = surfaceW; corners[7] = surfaceH;
+            inverseMatrix.mapPoints(corners);
+
+            int w = bitmap.getWidth();
+            int h = bitmap.getHeight();
+            for (int i = 0; i < 8; i += 2) {
+                if (corners[i] < 0 || corners[i] > w || corners[i + 1] < 0 || corners[i + 1] > h) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Load start → first posted frame, once per loaded image; compares raw vs jpeg handoff. */
+        private void logFirstFrame() {
+            if (loadStartNanos == 0L) return;
+            long totalMs = (System.nanoTime() - loadStartNanos) / 1_000_000;
+            loadStartNanos = 0L;
+            Log.d(TAG, "First frame " + totalMs + "ms after load start (" + loadedFormat +
+                  ", load " + loadMs + "ms)");
         }
 
         // =========================================================
-        // LIFECYCLE
+        // FRAME LOOP (RenderLoop callbacks, render thread)
+        // =========================================================
+
+        @Override
+        public void requestFrame() {
+            choreographer.postFrameCallback(frameCallback);
+        }
+
+        @Override
+        public void cancelFrame() {
+            if (choreographer != null) choreographer.removeFrameCallback(frameCallback);
+        }
+
+        @Override
+        public boolean drawFrame(long frameTimeNanos) {
+            visibleFrames++;
+            return draw(frameTimeNanos);
+        }
+
+        /** After a settled frame: the loop stops rescheduling until woken. */
+        @Override
+        public void onPark() {
+            long now = System.nanoTime();
+            if (phaseStartNanos != 0L) {
+                renderNanos += now - phaseStartNanos;
+                phaseStartNanos = now;
+            }
+            parkedTilt.set(drawnTilt);
+        }
+
+        @Override
+        public boolean inputMissed() {
+            return tiltMoved(drawnTilt, tiltInput.get());
+        }
+
+        @Override
+        public void onResume() {
+            long now = System.nanoTime();
+            if (phaseStartNanos != 0L) {
+                idleNanos += now - phaseStartNanos;
+                phaseStartNanos = now;
+            }
+            wakeups++;
+            // dt restarts from one frame, not from the length of the idle period
+            motion.restartClock();
+        }
+
+        /**
+         * Main-thread stalls used to show up directly as lateness and skips;
+         * on the render thread they shouldn't at all.
+         */
+        @Override
+        public void onFrameStats(RenderLoop.FrameStats stats) {
+            Log.d(TAG, "Frames=" + stats.frames() + " (" + renderPath() + ")" +
+                  " draw avg=" + (stats.averageDrawNanos() / 1000) + "us" +
+                  " max=" + (stats.maxDrawNanos() / 1000) + "us" +
+                  " late max=" + (stats.maxLateNanos() / 1000) + "us" +
+                  " skipped=" + stats.skipped());
+        }
+
+        /** Any thread. Restarts a parked frame loop; no-op while it runs. */
+        private void wake() {
+            renderLoop.wake();
+        }
+
+        private boolean tiltMoved(long from, long to) {
+            return Math.abs(unpackHigh(to) - unpackHigh(from)) > TILT_WAKE_THRESHOLD
+                    || Math.abs(unpackLow(to) - unpackLow(from)) > TILT_WAKE_THRESHOLD;
+        }
+
+        /** Render thread. Starts render/idle accounting for a visible period. */
+        private void startVisiblePeriod() {
+            phaseStartNanos = System.nanoTime();
+            motion.restartClock();
+            // The surface may have been recreated or cleared while hidden
+            forceRedraw = true;
+        }
+
+        /** Render thread. Closes the visible period and adds it to ParallaxDiagnostics. */
+        private void endVisiblePeriod() {
+            if (phaseStartNanos == 0L) return;
+            long elapsed = System.nanoTime() - phaseStartNanos;
+            if (renderLoop.isParked()) {
+                idleNanos += elapsed;
+            } else {
+                renderNanos += elapsed;
+            }
+            phaseStartNanos = 0L;
+
+            long renderMs = renderNanos / 1_000_000;
+            long idleMs = idleNanos / 1_000_000;
+            long events = sensorEvents.getAndSet(0);
+            long sensorWakes = sensorWakeups.getAndSet(0);
+            long fastMs = sensorFastNanos.getAndSet(0) / 1_000_000;
+            Log.d(TAG, "Visible period: rendering " + renderMs + "ms, idle " + idleMs + "ms, " +
+                  visibleFrames + " frames, " + wakeups + " wakeups, " + renderPath() + " canvas; sensor " +
+                  events + " events in " + sensorWakes + " deliveries, fast for " + fastMs + "ms");
+            ParallaxDiagnostics.record(ParallaxWallpaperService.this, renderMs, idleMs, visibleFrames, wakeups,
+                    renderPath(), events, sensorWakes, fastMs);
+            renderNanos = 0L;
+            idleNanos = 0L;
+            visibleFrames = 0L;
+            wakeups = 0L;
+        }
+
+        private static long packFloats(float high, float low) {
+            return ((long) Float.floatToIntBits(high) << 32) | (Float.floatToIntBits(low) & 0xffffffffL);
+        }
+
+        private static float unpackHigh(long packed) {
+            return Float.intBitsToFloat((int) (packed >>> 32));
+        }
+
+        private static float unpackLow(long packed) {
+            return Float.intBitsToFloat((int) packed);
+        }
+
+        // =========================================================
+        // LIFECYCLE (main thread; render-side work is posted)
         // =========================================================
         @Override
         public void onVisibilityChanged(boolean visible) {
             this.visible = visible;
 
             if (visible) {
-                loadImageIfChanged();
                 updateSensorRegistration();
-                lastFrameNanos = 0L;
-                scheduleNextFrame();
+                renderHandler.post(() -> {
+                    startVisiblePeriod();
+                    renderLoop.start();
+                    loadImageIfChanged();
+                });
             } else {
-                cancelFrameLoop();
+                // Unregister first so the period's sensor counters are complete
                 updateSensorRegistration(); // will unregister since visible=false
+                renderHandler.post(() -> {
+                    renderLoop.stop();
+                    endVisiblePeriod();
+                });
             }
         }
 
@@ -516,7 +936,7 @@ public class ParallaxWallpaperService extends WallpaperService {
         public void onSurfaceCreated(SurfaceHolder holder) {
             super.onSurfaceCreated(holder);
             this.holder = holder;
-            loadImageIfChanged();
+            renderHandler.post(this::loadImageIfChanged);
         }
 
         @Override
@@ -536,19 +956,46 @@ public class ParallaxWallpaperService extends WallpaperService {
                 // Defensive: do not crash wallpaper engine on OEM-specific behavior.
             }
 
-            recomputePanBounds();
+            renderHandler.post(this::recomputePanBounds);
+            wake();
         }
 
         @Override
         public void onSurfaceDestroyed(SurfaceHolder holder) {
-            super.onSurfaceDestroyed(holder);
             visible = false;
-            cancelFrameLoop();
             updateSensorRegistration();
             if (prefs != null) {
                 prefs.unregisterOnSharedPreferenceChangeListener(this);
             }
-            recycleBitmap();
+
+            // The surface is gone once this returns: wait until the render
+            // thread has stopped drawing (a frame in progress finishes first).
+            CountDownLatch released = new CountDownLatch(1);
+            renderHandler.post(() -> {
+                renderLoop.stop();
+                endVisiblePeriod();
+                recycleBitmap();
+                released.countDown();
+            });
+            try {
+                if (!released.await(SURFACE_RELEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Render thread did not release the surface in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.onSurfaceDestroyed(holder);
+        }
+
+        @Override
+        public void onDestroy() {
+            super.onDestroy();
+            renderHandler.post(() -> {
+                renderLoop.stop();
+                endVisiblePeriod();
+                recycleBitmap();
+            });
+            renderThread.quitSafely();
         }
     }
 }
@@ -0,0 +1,212 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default WallpaperTransport: the platform HttpURLConnection, used so that
+ * its built-in keep-alive pool actually gets to reuse sockets.
+ *
+ * The previous code disconnect()ed after every request, which closes the
+ * socket, so each wallpaper paid a fresh TCP + TLS handshake to the same
+ * CDN. Here a connection is only disconnected when it can't be reused
+ * (error, cancellation, body not fully read); otherwise the caller drains
+ * and closes the body and the socket returns to the pool for the next
+ * request to that host.
+ *
+ * At most maxConnectionsPerHost connections to one host are open at a
+ * time: open() takes a permit from that host's semaphore and release()
+ * returns it. A request that finds the host full waits for a permit, for up
+ * to the connect timeout, then fails with HostBusyException. The platform's own pool settings (the process-wide
+ * http.* system properties) are left alone, since they belong to the host
+ * app too.
+ *
+ * Per host, the time from execute() to response headers is recorded for
+ * the first request and averaged for later ones. The gap between the two
+ * is what connection reuse saves, and getTransportStats() reports it.
+ */
+final class PooledHttpTransport implements WallpaperTransport {
+
+    private static final String TAG = "PooledHttpTransport";
+
+    static final int DEFAULT_CONNECT_TIMEOUT_MS = 30000;
+    static final int DEFAULT_READ_TIMEOUT_MS = 60000;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+
+    /** Error bodies up to this size are drained so the socket can be reused. */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private volatile int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private volatile int readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+    private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    // Guarded by this. Replaced on configure(); connections keep the semaphore they took a permit from.
+    private Map<String, Semaphore> hostPermits = new HashMap<>();
+    private final Map<HttpURLConnection, Semaphore> heldPermits = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, HostStats> hosts = new LinkedHashMap<>();
+    private long requestCount = 0;
+    private long discardedCount = 0;
+
+    /** Header latency per host: first request vs. the rest. */
+    private static final class HostStats {
+        long requests;
+        long firstRequestMs = -1;
+        long subsequentTotalMs;
+    }
+
+    @Override
+    public void configure(int connectTimeoutMs, int readTimeoutMs, int maxConnectionsPerHost) {
+        if (connectTimeoutMs > 0) this.connectTimeoutMs = connectTimeoutMs;
+        if (readTimeoutMs > 0) this.readTimeoutMs = readTimeoutMs;
+        if (maxConnectionsPerHost > 0 && maxConnectionsPerHost != this.maxConnectionsPerHost) {
+            synchronized (this) {
+                this.maxConnectionsPerHost = maxConnectionsPerHost;
+                // New limit for new connections; ones already open finish on the old permits
+                hostPermits = new HashMap<>();
+            }
+        }
+        Log.d(TAG, "🌐 Transport: connect=" + this.connectTimeoutMs + "ms read=" + this.readTimeoutMs +
+              "ms maxConnectionsPerHost=" + this.maxConnectionsPerHost);
+    }
+
+    @Override
+    public int maxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    @Override
+    public HttpURLConnection open(String url) throws IOException {
+        URL parsed = new URL(url);
+        Semaphore permits = permitsFor(parsed.getHost());
+        try {
+            if (!permits.tryAcquire(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new HostBusyException("No free connection to " + parsed.getHost() +
+                        " within " + connectTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + parsed.getHost());
+        }
+
+        try {
+            HttpURLConnection connection = (HttpURLConnection) parsed.openConnection();
+            connection.setDoInput(true);
+            connection.setUseCaches(false);
+            connection.setConnectTimeout(connectTimeoutMs);
+            connection.setReadTimeout(readTimeoutMs);
+            heldPermits.put(connection, permits);
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized Semaphore permitsFor(String host) {
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(maxConnectionsPerHost, true);
+            hostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    @Override
+    public int execute(HttpURLConnection connection) throws IOException {
+        long start = System.nanoTime();
+        int code = connection.getResponseCode();
+        record(connection.getURL().getHost(), (System.nanoTime() - start) / 1000000L);
+        return code;
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        try {
+            if (reusable && drainErrorBody(connection)) {
+                return;
+            }
+            synchronized (this) {
+                discardedCount++;
+            }
+            connection.disconnect();
+        } finally {
+            Semaphore permits = heldPermits.remove(connection);
+            if (permits != null) permits.release();
+        }
+    }
+
+    /** Error responses carry a (usually tiny) body that must be consumed too. */
+    private static boolean drainErrorBody(HttpURLConnection connection) {
+        InputStream error = connection.getErrorStream();
+        if (error == null) return true;
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int total = 0;
+            int read;
+            while ((read = error.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_DRAIN_BYTES) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try { error.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private synchronized void record(String host, long millis) {
+        requestCount++;
+        HostStats stats = hosts.get(host);
+        if (stats == null) {
+            stats = new HostStats();
+            hosts.put(host, stats);
+        }
+        stats.requests++;
+        if (stats.firstRequestMs < 0) {
+            stats.firstRequestMs = millis;
+        } else {
+            stats.subsequentTotalMs += millis;
+        }
+    }
+
+    @Override
+    public synchronized JSObject stats() {
+        JSObject perHost = new JSObject();
+        for (Map.Entry<String, HostStats> entry : hosts.entrySet()) {
+            HostStats stats = entry.getValue();
+            Semaphore permits = hostPermits.get(entry.getKey());
+            JSObject host = new JSObject();
+            host.put("requests", stats.requests);
+            host.put("openConnections", permits != null ? maxConnectionsPerHost - permits.availablePermits() : 0);
+            host.put("firstRequestMs", stats.firstRequestMs);
+            host.put("avgSubsequentRequestMs", stats.requests > 1
+                    ? stats.subsequentTotalMs / (stats.requests - 1) : -1);
+            perHost.put(entry.getKey(), host);
+        }
+
+        JSObject result = new JSObject();
+        result.put("connectTimeoutMs", connectTimeoutMs);
+        result.put("readTimeoutMs", readTimeoutMs);
+        result.put("maxConnectionsPerHost", maxConnectionsPerHost);
+        result.put("requestCount", requestCount);
+        result.put("discardedConnectionCount", discardedCount);
+        result.put("hosts", perHost);
+        return result;
+    }
+}
@@ -0,0 +1,149 @@
+package com.dreamydesk.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * One prefetchWallpapers() call: its URLs, shared byte budget,
+ * cancellation flag and per-item outcome.
+ *
+ * Every item completes exactly once: by its PrefetchTask, or by failFrom()
+ * / settle() for tasks that never got to run (a refused submit, the plugin
+ * being destroyed). Whichever completion comes second is ignored. The
+ * Listener hears about the batch once, when its last item completes.
+ */
+final class PrefetchBatch {
+
+    static final String READY = "ready";
+    static final String FAILED = "failed";
+    static final String SKIPPED = "skipped";
+    static final String CANCELLED = "cancelled";
+
+    /** Called once, on the thread that completed the last item. */
+    interface Listener {
+        void onDone(PrefetchBatch batch);
+    }
+
+    final String id;
+    final List<String> targets;
+    final float overscan;
+    private final long maxBytes;
+    private final List<String> urls;
+    private final Listener listener;
+
+    private final AtomicReferenceArray<String> statuses;
+    // Written by the thread that won the item's status, read after onDone
+    private final String[] errors;
+    private final String[] codes;
+    private final AtomicInteger remaining;
+    private final AtomicLong bytesUsed = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    PrefetchBatch(String id, List<String> urls, List<String> targets, float overscan, long maxBytes,
+                  Listener listener) {
+        this.id = id;
+        this.urls = new ArrayList<>(urls);
+        this.targets = targets;
+        this.overscan = overscan;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+        this.statuses = new AtomicReferenceArray<>(urls.size());
+        this.errors = new String[urls.size()];
+        this.codes = new String[urls.size()];
+        this.remaining = new AtomicInteger(urls.size());
+    }
+
+    int size() {
+        return urls.size();
+    }
+
+    String url(int index) {
+        return urls.get(index);
+    }
+
+    /** The item's outcome, or null while it is still pending. */
+    String status(int index) {
+        return statuses.get(index);
+    }
+
+    String error(int index) {
+        return errors[index];
+    }
+
+    /** Rejection code for an item that was never queued, e.g. 'BUSY'; usually null. */
+    String code(int index) {
+        return codes[index];
+    }
+
+    int readyCount() {
+        int ready = 0;
+        for (int i = 0; i < size(); i++) {
+            if (READY.equals(statuses.get(i))) ready++;
+        }
+        return ready;
+    }
+
+    /** Items still queued are dropped; one already running finishes its current step first. */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checked before each item, so a batch can overshoot maxBytes by at
+     * most the item that crossed the line.
+     */
+    boolean budgetExhausted() {
+        return maxBytes > 0 && bytesUsed.get() >= maxBytes;
+    }
+
+    void addBytes(long bytes) {
+        bytesUsed.addAndGet(bytes);
+    }
+
+    long bytesDownloaded() {
+        return bytesUsed.get();
+    }
+
+    /** Records the item's outcome. Returns false if it had already completed. */
+    boolean complete(int index, String status, String error) {
+        return complete(index, status, error, null);
+    }
+
+    /** Fails item {@code from} and every one after it: their tasks were never queued. */
+    void failFrom(int from, String error, String code) {
+        for (int i = from; i < size(); i++) {
+            complete(i, FAILED, error, code);
+        }
+    }
+
+    /**
+     * Cancels the batch and completes every item still pending as
+     * cancelled, so the caller hears back even though the queue is about
+     * to be dropped. Running items that finish later are ignored.
+     */
+    void settle() {
+        cancelled = true;
+        for (int i = 0; i < size(); i++) {
+            complete(i, CANCELLED, null, null);
+        }
+    }
+
+    private boolean complete(int index, String status, String error, String code) {
+        if (!statuses.compareAndSet(index, null, status)) {
+            return false;
+        }
+        errors[index] = error;
+        codes[index] = code;
+        if (remaining.decrementAndGet() == 0) {
+            listener.onDone(this);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A single prefetch item. Ordered by batch priority, then submission
+ * order, so a "high" batch queued behind a large "low" one still runs
+ * next. Must be passed to execute(), not submit() — submit() would wrap
+ * it in a FutureTask and lose the ordering.
+ */
+final class PrefetchTask implements Runnable, Comparable<PrefetchTask> {
+
+    private static final String TAG = "PrefetchTask";
+
+    static final int PRIORITY_HIGH = 0;
+    static final int PRIORITY_NORMAL = 1;
+    static final int PRIORITY_LOW = 2;
+
+    /** What prefetching one URL means; implemented by WallpaperPlugin. */
+    interface Work {
+        /**
+         * Downloads and pre-sizes {@code url} for the batch's targets.
+         * Returns the bytes newly downloaded (0 for a cache hit). Throws
+         * CancellationException if it saw the batch cancelled part-way.
+         */
+        long prefetch(PrefetchBatch batch, String url) throws Exception;
+    }
+
+    private final PrefetchBatch batch;
+    private final int index;
+    private final int priority;
+    private final long sequence;
+    private final Work work;
+
+    PrefetchTask(PrefetchBatch batch, int index, int priority, long sequence, Work work) {
+        this.batch = batch;
+        this.index = index;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.work = work;
+    }
+
+    @Override
+    public int compareTo(PrefetchTask other) {
+        if (priority != other.priority) return Integer.compare(priority, other.priority);
+        return Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public void run() {
+        if (batch.isCancelled()) {
+            batch.complete(index, PrefetchBatch.CANCELLED, null);
+            return;
+        }
+        if (batch.budgetExhausted()) {
+            batch.complete(index, PrefetchBatch.SKIPPED, "Prefetch byte budget exhausted");
+            return;
+        }
+
+        String url = batch.url(index);
+        try {
+            batch.addBytes(work.prefetch(batch, url));
+            batch.complete(index, PrefetchBatch.READY, null);
+        } catch (CancellationException e) {
+            batch.complete(index, PrefetchBatch.CANCELLED, null);
+        } catch (Exception | OutOfMemoryError e) {
+            Log.e(TAG, "❌ Prefetch failed for " + url + ": " + e.getMessage());
+            batch.complete(index, PrefetchBatch.FAILED, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dreamydesk.app;
+
+import com.getcapacitor.JSObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress for one wallpaper URL, forwarded to JS as "wallpaperProgress"
+ * events through the plugin's notifyListeners.
+ *
+ * Stage changes (connect → download → decode → resize → apply) are always
+ * emitted. Byte-count updates come from tight read loops, possibly on
+ * several range-download threads at once, so they are coalesced and only
+ * emitted every MIN_INTERVAL_MS — a 60 MB video would otherwise push
+ * thousands of messages across the bridge.
+ *
+ * Every reporter belongs to a WallpaperJob; since the reporter is already
+ * threaded through each download/decode stage, those stages reach the job
+ * (for cancellation) through job().
+ */
+final class ProgressReporter {
+
+    static final String EVENT = "wallpaperProgress";
+
+    static final String STAGE_CONNECT = "connect";
+    static final String STAGE_DOWNLOAD = "download";
+    static final String STAGE_DECODE = "decode";
+    static final String STAGE_RESIZE = "resize";
+    static final String STAGE_APPLY = "apply";
+
+    private static final long MIN_INTERVAL_NANOS = 150_000_000L;
+    /** Weight of the newest sample in the throughput moving average. */
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+
+    /** Receives each event; implemented by WallpaperPlugin via notifyListeners. */
+    interface Sink {
+        void emit(JSObject event);
+    }
+
+    private final String url;
+    private final WallpaperJob job;
+    private final Sink sink;
+
+    private final AtomicLong received = new AtomicLong();
+    private volatile long total = -1;
+    private volatile long nextEmitNanos = 0;
+
+    // Guarded by this
+    private String stage;
+    private long lastEmitNanos;
+    private long lastEmitBytes;
+    private double bytesPerSecond;
+
+    /** @param sink null to track nothing and emit nothing */
+    ProgressReporter(String url, WallpaperJob job, Sink sink) {
+        this.url = url;
+        this.job = job;
+        this.sink = sink;
+    }
+
+    /** A reporter that emits nothing, for work that isn't a JS-visible job. */
+    static ProgressReporter silent(String url) {
+        return new ProgressReporter(url, WallpaperJob.detached(), null);
+    }
+
+    WallpaperJob job() {
+        return job;
+    }
+
+    synchronized void stage(String newStage) {
+        if (newStage.equals(stage)) return;
+        stage = newStage;
+        emit(System.nanoTime());
+    }
+
+    /** Total body size, or -1 if the server didn't say. */
+    void setTotal(long totalBytes) {
+        total = totalBytes;
+    }
+
+    /** Absolute position, e.g. the offset a resumed download starts from. */
+    void setReceived(long bytes) {
+        received.set(bytes);
+        maybeEmit();
+    }
+
+    void addReceived(long delta) {
+        received.addAndGet(delta);
+        maybeEmit();
+    }
+
+    /** Wraps a response body so every read counts toward bytesReceived. */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) addReceived(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) addReceived(n);
+                return n;
+            }
+        };
+    }
+
+    private void maybeEmit() {
+        if (sink == null) return;
+        long now = System.nanoTime();
+        // Cheap unsynchronized pre-check so read loops don't contend on the lock
+        if (now < nextEmitNanos) return;
+
+        synchronized (this) {
+            if (now < nextEmitNanos) return;
+            emit(now);
+        }
+    }
+
+    // Caller holds the lock
+    private void emit(long now) {
+        long bytes = received.get();
+
+        long elapsed = now - lastEmitNanos;
+        if (lastEmitNanos != 0 && elapsed > 0 && bytes >= lastEmitBytes) {
+            double sample = (bytes - lastEmitBytes) * 1e9 / elapsed;
+            bytesPerSecond = bytesPerSecond == 0
+                    ? sample
+                    : bytesPerSecond + (sample - bytesPerSecond) * THROUGHPUT_SMOOTHING;
+        }
+        lastEmitNanos = now;
+        lastEmitBytes = bytes;
+        nextEmitNanos = now + MIN_INTERVAL_NANOS;
+
+        if (sink == null) return;
+
+        JSObject event = new JSObject();
+        event.put("url", url);
+        if (job.id != null) event.put("jobId", job.id);
+        event.put("stage", stage);
+        event.put("bytesReceived", bytes);
+        event.put("totalBytes", total);
+        event.put("bytesPerSecond", Math.round(bytesPerSecond));
+        sink.emit(event);
+    }
+}
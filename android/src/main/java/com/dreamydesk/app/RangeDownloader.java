@@ -0,0 +1,565 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Resumable downloader for large live wallpaper files (20-60 MB MP4/GIF).
+ *
+ * Progress is persisted next to the destination:
+ *   <target>.part        bytes received so far
+ *   <target>.part.meta   java.util.Properties: url, validators, total
+ *                        length and — in parallel mode — the byte ranges
+ *                        and how far each one has got
+ *
+ * Sequential mode (connections == 1) appends to the .part file and, after
+ * a dropped connection or a process restart, continues with
+ * "Range: bytes=<received>-" guarded by If-Range, so a file that changed
+ * on the server restarts cleanly instead of being stitched together.
+ *
+ * Parallel mode (connections > 1) preallocates the .part file to the full
+ * length and fetches N contiguous ranges concurrently, each worker writing
+ * at its own offset with positional FileChannel writes (no shared file
+ * pointer, no locking on the write path). Each range resumes independently.
+ * The ranges run on the plugin's shared range pool rather than threads of
+ * their own.
+ * Servers that don't advertise a length or don't honour Range fall back to
+ * sequential mode.
+ *
+ * Once complete, the .part file is renamed to the target and the .meta
+ * file deleted.
+ */
+final class RangeDownloader {
+
+    private static final String TAG = "RangeDownloader";
+
+    static final int MAX_CONNECTIONS = 8;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_BACKOFF_MS = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** How often (in bytes, per range) parallel progress is persisted to .meta */
+    private static final long PERSIST_EVERY_BYTES = 1024 * 1024;
+
+    /** Outcome of a completed download, including validators for caching. */
+    static final class Result {
+        final File file;
+        final long length;
+        final String etag;
+        final String lastModified;
+
+        private Result(File file, long length, String etag, String lastModified) {
+            this.file = file;
+            this.length = length;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /** The server answered a range request with a full body — content changed or ranges unsupported. */
+    private static final class RangeNotHonouredException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RangeNotHonouredException(String message) {
+            super(message);
+        }
+    }
+
+    /** A definitive HTTP status from the server — retrying won't change it. */
+    private static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        HttpStatusException(int code) {
+            super("HTTP error: " + code);
+        }
+    }
+
+    private final String url;
+    private final File target;
+    private final File partFile;
+    private final File metaFile;
+    private final int connections;
+    private final WallpaperTransport transport;
+    private final ExecutorService rangePool;
+    private final ProgressReporter progress;
+
+    private Properties meta;
+
+    RangeDownloader(String url, File target, int connections, WallpaperTransport transport,
+                    ExecutorService rangePool, ProgressReporter progress) {
+        this.url = url;
+        this.target = target;
+        this.partFile = new File(target.getPath() + ".part");
+        this.metaFile = new File(target.getPath() + ".part.meta");
+        // More ranges than the transport allows per host would only queue for connections
+        this.connections = Math.max(1, Math.min(Math.min(MAX_CONNECTIONS, connections),
+                transport.maxConnectionsPerHost()));
+        this.transport = transport;
+        this.rangePool = rangePool;
+        this.progress = progress;
+    }
+
+    Result download() throws IOException {
+        meta = loadMeta();
+        progress.stage(ProgressReporter.STAGE_CONNECT);
+
+        if (meta.getProperty("ranges") != null || (connections > 1 && !partFile.exists())) {
+            try {
+                return downloadParallel();
+            } catch (RangeNotHonouredException e) {
+                Log.w(TAG, "⚠️ Parallel download not possible (" + e.getMessage() + "), falling back to sequential");
+                discardPartial();
+            }
+        }
+        return downloadSequential();
+    }
+
+    // =========================================================
+    // SEQUENTIAL (single connection, resume from offset)
+    // =========================================================
+
+    private Result downloadSequential() throws IOException {
+        IOException lastError = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            progress.job().throwIfCancelled();
+            try {
+                return sequentialAttempt();
+            } catch (RangeNotHonouredException e) {
+                // Server sent the full body for a resume request: file changed
+                // (If-Range failed) or no range support. Start over from zero.
+                Log.w(TAG, "⚠️ " + e.getMessage() + " — restarting from byte 0");
+                discardPartial();
+                lastError = e;
+            } catch (HttpStatusException | WallpaperJob.CancelledException e) {
+                throw e;
+            } catch (WallpaperTransport.HostBusyException e) {
+                waitedForConnection(e);
+                attempt--;
+            } catch (IOException e) {
+                progress.job().throwIfCancelled();
+                lastError = e;
+                Log.w(TAG, "⚠️ Attempt " + attempt + " failed at " + partFile.length() +
+                      " bytes: " + e.getMessage());
+                sleepBeforeRetry(attempt);
+            }
+        }
+        throw lastError;
+    }
+
+    private Result sequentialAttempt() throws IOException {
+        long offset = partFile.exists() && url.equals(meta.getProperty("url")) ? partFile.length() : 0;
+        if (offset == 0) discardPartial();
+
+        HttpURLConnection connection = null;
+        InputStream in = null;
+        OutputStream out = null;
+        boolean reusable = false;
+
+        try {
+            connection = open();
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                String validator = validator();
+                if (validator != null) connection.setRequestProperty("If-Range", validator);
+            }
+            int code = transport.execute(connection);
+            if (offset > 0 && code == 416 && offset == parseLong(meta.getProperty("length"), -1)) {
+                // Everything was already received before the last interruption
+                reusable = true;
+                return finish();
+            }
+            if (offset > 0 && code == HttpURLConnection.HTTP_OK) {
+                throw new RangeNotHonouredException("Resume from " + offset + " answered with 200");
+            }
+            if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new HttpStatusException(code);
+            }
+
+            if (offset == 0) {
+                rememberValidators(connection, connection.getContentLength() > 0
+                        ? connection.getContentLength() : -1);
+                saveMeta();
+            } else {
+                Log.d(TAG, "⏯️ Resuming " + url + " from byte " + offset);
+            }
+            progress.setTotal(parseLong(meta.getProperty("length"), -1));
+            progress.stage(ProgressReporter.STAGE_DOWNLOAD);
+            progress.setReceived(offset);
+
+            in = connection.getInputStream();
+            out = new FileOutputStream(partFile, offset > 0);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                progress.addReceived(read);
+            }
+            out.close();
+            out = null;
+            reusable = true;
+
+            long expected = parseLong(meta.getProperty("length"), -1);
+            if (expected > 0 && partFile.length() < expected) {
+                throw new IOException("Connection closed early: " + partFile.length() + "/" + expected);
+            }
+            return finish();
+        } finally {
+            try { if (out != null) out.close(); } catch (IOException ignored) {}
+            try { if (in != null) in.close(); } catch (IOException ignored) {}
+            if (connection != null) release(connection, reusable);
+        }
+    }
+
+    // =========================================================
+    // PARALLEL (N ranges, positional writes)
+    // =========================================================
+
+    private Result downloadParallel() throws IOException {
+        int rangeCount;
+        long length;
+
+        if (meta.getProperty("ranges") != null && url.equals(meta.getProperty("url")) && partFile.exists()) {
+            rangeCount = Integer.parseInt(meta.getProperty("ranges"));
+            length = parseLong(meta.getProperty("length"), -1);
+            Log.d(TAG, "⏯️ Resuming parallel download of " + url + " (" + rangeCount + " ranges)");
+        } else {
+            discardPartial();
+            length = probeLength();
+            rangeCount = connections;
+            planRanges(length, rangeCount);
+
+            RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+            try {
+                raf.setLength(length);
+            } finally {
+                raf.close();
+            }
+            saveMeta();
+            Log.d(TAG, "⬇️ Parallel download: " + length + " bytes in " + rangeCount + " ranges");
+        }
+
+        final long[] starts = new long[rangeCount];
+        final long[] ends = new long[rangeCount];
+        final AtomicLongArray done = new AtomicLongArray(rangeCount);
+        long alreadyReceived = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            starts[i] = parseLong(meta.getProperty("range." + i + ".start"), 0);
+            ends[i] = parseLong(meta.getProperty("range." + i + ".end"), 0);
+            done.set(i, parseLong(meta.getProperty("range." + i + ".done"), 0));
+            alreadyReceived += done.get(i);
+        }
+
+        progress.setTotal(length);
+        progress.stage(ProgressReporter.STAGE_DOWNLOAD);
+        progress.setReceived(alreadyReceived);
+
+        RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+        final FileChannel channel = raf.getChannel();
+        List<Future<Void>> futures = new ArrayList<>(rangeCount);
+
+        try {
+            for (int i = 0; i < rangeCount; i++) {
+                final int index = i;
+                futures.add(rangePool.submit(() -> {
+                    fetchRange(channel, index, starts[index], ends[index], done);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download interrupted");
+                }
+            }
+            channel.force(false);
+        } finally {
+            // Stop this download's ranges (queued or running), not the shared pool
+            for (Future<Void> f : futures) {
+                f.cancel(true);
+            }
+            persistRangeProgress(done);
+            try { channel.close(); } catch (IOException ignored) {}
+            try { raf.close(); } catch (IOException ignored) {}
+        }
+
+        return finish();
+    }
+
+    /** Learns the total length and whether ranges work, via a one-byte range request. */
+    private long probeLength() throws IOException {
+        HttpURLConnection connection = open();
+        boolean reusable = false;
+        try {
+            connection.setRequestProperty("Range", "bytes=0-0");
+            int code = transport.execute(connection);
+            if (code != HttpURLConnection.HTTP_PARTIAL) {
+                if (code != HttpURLConnection.HTTP_OK) throw new HttpStatusException(code);
+                throw new RangeNotHonouredException("server does not support byte ranges");
+            }
+
+            // Content-Range: bytes 0-0/12345678
+            String contentRange = connection.getHeaderField("Content-Range");
+            int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+            long length = slash >= 0 ? parseLong(contentRange.substring(slash + 1).trim(), -1) : -1;
+            if (length <= 0) {
+                throw new RangeNotHonouredException("unknown total length");
+            }
+
+            rememberValidators(connection, length);
+            reusable = drain(connection.getInputStream());
+            return length;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    private void planRanges(long length, int rangeCount) {
+        long chunk = length / rangeCount;
+        meta.setProperty("ranges", Integer.toString(rangeCount));
+        for (int i = 0; i < rangeCount; i++) {
+            long start = i * chunk;
+            long end = (i == rangeCount - 1) ? length - 1 : start + chunk - 1;
+            meta.setProperty("range." + i + ".start", Long.toString(start));
+            meta.setProperty("range." + i + ".end", Long.toString(end));
+            meta.setProperty("range." + i + ".done", "0");
+        }
+    }
+
+    private void fetchRange(FileChannel channel, int index, long start, long end, AtomicLongArray done)
+            throws IOException {
+        long size = end - start + 1;
+        IOException lastError = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long received = done.get(index);
+            if (received >= size) return;
+            progress.job().throwIfCancelled();
+
+            HttpURLConnection connection = null;
+            InputStream in = null;
+            boolean reusable = false;
+            try {
+                connection = open();
+                connection.setRequestProperty("Range", "bytes=" + (start + received) + "-" + end);
+                String validator = validator();
+                if (validator != null) connection.setRequestProperty("If-Range", validator);
+                int code = transport.execute(connection);
+                if (code == HttpURLConnection.HTTP_OK) {
+                    throw new RangeNotHonouredException("range " + index + " answered with 200");
+                }
+                if (code != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new HttpStatusException(code);
+                }
+
+                in = connection.getInputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+                long sincePersist = 0;
+                int read;
+
+                while (received < size && (read = in.read(buffer, 0, (int) Math.min(buffer.length, size - received))) != -1) {
+                    wrapped.clear();
+                    wrapped.limit(read);
+                    long position = start + received;
+                    while (wrapped.hasRemaining()) {
+                        position += channel.write(wrapped, position);
+                    }
+                    received += read;
+                    done.set(index, received);
+                    progress.addReceived(read);
+
+                    sincePersist += read;
+                    if (sincePersist >= PERSIST_EVERY_BYTES) {
+                        persistRangeProgress(done);
+                        sincePersist = 0;
+                    }
+                }
+
+                if (received < size) {
+                    throw new IOException("Range " + index + " closed early: " + received + "/" + size);
+                }
+                reusable = true;
+                return;
+            } catch (RangeNotHonouredException | HttpStatusException | WallpaperJob.CancelledException e) {
+                throw e;
+            } catch (WallpaperTransport.HostBusyException e) {
+                waitedForConnection(e);
+                attempt--;
+            } catch (IOException e) {
+                progress.job().throwIfCancelled();
+                lastError = e;
+                Log.w(TAG, "⚠️ Range " + index + " attempt " + attempt + " failed at " +
+                      done.get(index) + "/" + size + ": " + e.getMessage());
+                sleepBeforeRetry(attempt);
+            } finally {
+                try { if (in != null) in.close(); } catch (IOException ignored) {}
+                if (connection != null) release(connection, reusable);
+            }
+        }
+        throw lastError;
+    }
+
+    private synchronized void persistRangeProgress(AtomicLongArray done) {
+        for (int i = 0; i < done.length(); i++) {
+            meta.setProperty("range." + i + ".done", Long.toString(done.get(i)));
+        }
+        saveMeta();
+    }
+
+    // =========================================================
+    // SHARED
+    // =========================================================
+
+    private HttpURLConnection open() throws IOException {
+        HttpURLConnection connection = transport.open(url);
+        // Byte offsets must refer to the stored representation, not a gzipped one
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        // Cancelling the job disconnects it, failing any blocked read at once
+        try {
+            progress.job().track(connection);
+        } catch (WallpaperJob.CancelledException e) {
+            transport.release(connection, false);
+            throw e;
+        }
+        return connection;
+    }
+
+    private void release(HttpURLConnection connection, boolean reusable) {
+        progress.job().untrack(connection);
+        transport.release(connection, reusable);
+    }
+
+    /** Reads {@code in} to EOF and closes it, so its socket can be reused. */
+    private static boolean drain(InputStream in) {
+        try {
+            byte[] buffer = new byte[512];
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer) != -1) {}
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try { in.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private Result finish() throws IOException {
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Could not replace " + target.getAbsolutePath());
+        }
+        if (!partFile.renameTo(target)) {
+            throw new IOException("Could not move download to " + target.getAbsolutePath());
+        }
+        Result result = new Result(target, target.length(),
+                meta.getProperty("etag"), meta.getProperty("lastModified"));
+        //noinspection ResultOfMethodCallIgnored
+        metaFile.delete();
+        Log.d(TAG, "✅ Downloaded " + result.length + " bytes to " + target.getAbsolutePath());
+        return result;
+    }
+
+    private void rememberValidators(HttpURLConnection connection, long length) {
+        meta = new Properties();
+        meta.setProperty("url", url);
+        meta.setProperty("length", Long.toString(length));
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (etag != null) meta.setProperty("etag", etag);
+        if (lastModified != null) meta.setProperty("lastModified", lastModified);
+    }
+
+    /** Strong ETag if we have one, else Last-Modified (If-Range accepts either). */
+    private String validator() {
+        String etag = meta.getProperty("etag");
+        if (etag != null && !etag.startsWith("W/")) return etag;
+        return meta.getProperty("lastModified");
+    }
+
+    private void discardPartial() {
+        //noinspection ResultOfMethodCallIgnored
+        partFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        metaFile.delete();
+        meta = new Properties();
+    }
+
+    private Properties loadMeta() {
+        Properties p = new Properties();
+        if (!metaFile.exists()) return p;
+        InputStream in = null;
+        try {
+            in = new FileInputStream(metaFile);
+            p.load(in);
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Unreadable partial download state, starting over: " + e.getMessage());
+            p.clear();
+        } finally {
+            try { if (in != null) in.close(); } catch (IOException ignored) {}
+        }
+        return p;
+    }
+
+    private void saveMeta() {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(metaFile);
+            meta.store(out, null);
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Could not persist download progress: " + e.getMessage());
+        } finally {
+            try { if (out != null) out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * open() timed out waiting for a connection the host's other downloads
+     * hold. That is local queueing, not a failed transfer: the caller tries
+     * again without using up an attempt, for as long as the job is live.
+     */
+    private void waitedForConnection(WallpaperTransport.HostBusyException e) throws IOException {
+        progress.job().throwIfCancelled();
+        Log.d(TAG, "⏳ " + e.getMessage() + ", still waiting");
+    }
+
+    private static void sleepBeforeRetry(int attempt) throws IOException {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted");
+        }
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.dreamydesk.app;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Uncompressed pixel file for the parallax handoff between
+ * SaveParallaxImageRunnable and ParallaxWallpaperService.
+ *
+ * The JPEG handoff costs a full decode on the engine's main thread every
+ * time the wallpaper changes and every time the service cold-starts. A raw
+ * file is written once and loaded with a memory-mapped read straight into
+ * Bitmap.copyPixelsFromBuffer — no decoder, no intermediate byte[]. The
+ * price is size on disk: 2 bytes/pixel (RGB_565) instead of ~0.3 for JPEG.
+ *
+ * Layout (big-endian):
+ *   int magic     'DDPX'
+ *   int version   1
+ *   int width
+ *   int height
+ *   int config    1 = RGB_565, 2 = ARGB_8888
+ *   pixels        exactly as Bitmap.copyPixelsToBuffer writes them
+ */
+final class RawPixelFile {
+
+    private static final String TAG = "RawPixelFile";
+
+    static final String EXTENSION = ".raw";
+
+    private static final int MAGIC = 0x44445058; // "DDPX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * 4;
+
+    static final int CONFIG_RGB_565 = 1;
+    static final int CONFIG_ARGB_8888 = 2;
+
+    private RawPixelFile() {}
+
+    /** Width, height and pixel format of a raw file; everything but the pixels. */
+    static final class Header {
+        final int width;
+        final int height;
+        /** CONFIG_RGB_565 or CONFIG_ARGB_8888 */
+        final int config;
+
+        Header(int width, int height, int config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        int bytesPerPixel() {
+            return config == CONFIG_RGB_565 ? 2 : 4;
+        }
+
+        long pixelBytes() {
+            return (long) width * height * bytesPerPixel();
+        }
+
+        long fileBytes() {
+            return HEADER_BYTES + pixelBytes();
+        }
+
+        void writeTo(ByteBuffer out) {
+            out.putInt(MAGIC)
+               .putInt(VERSION)
+               .putInt(width)
+               .putInt(height)
+               .putInt(config);
+        }
+
+        /**
+         * Reads and validates the header at the start of {@code in}, a file
+         * of {@code length} bytes; checks the pixels are all there before
+         * anyone allocates a bitmap for them.
+         */
+        static Header readFrom(ByteBuffer in, long length) throws IOException {
+            if (length < HEADER_BYTES) {
+                throw new IOException("Truncated raw pixel file: " + length + " bytes");
+            }
+            int magic = in.getInt();
+            int version = in.getInt();
+            int width = in.getInt();
+            int height = in.getInt();
+            int config = in.getInt();
+
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("Not a raw pixel file (magic=" + Integer.toHexString(magic) +
+                        " version=" + version + ")");
+            }
+            if (config != CONFIG_RGB_565 && config != CONFIG_ARGB_8888) {
+                throw new IOException("Unknown pixel config " + config);
+            }
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Bad size " + width + "x" + height);
+            }
+            Header header = new Header(width, height, config);
+            if (length < header.fileBytes()) {
+                throw new IOException("Truncated raw pixel file: " + length + " of " + header.fileBytes() + " bytes");
+            }
+            return header;
+        }
+    }
+
+    /** Copies a bitmap's pixels into the mapped file (Bitmap.copyPixelsToBuffer). */
+    interface PixelSource {
+        void copyTo(ByteBuffer out);
+    }
+
+    /** A validated raw file: its header and its pixels, mapped read-only. */
+    static final class Mapped {
+        final Header header;
+        final ByteBuffer pixels;
+
+        private Mapped(Header header, ByteBuffer pixels) {
+            this.header = header;
+            this.pixels = pixels;
+        }
+    }
+
+    static boolean isRaw(String path) {
+        return path != null && path.endsWith(EXTENSION);
+    }
+
+    /**
+     * Writes {@code bmp} to {@code file}, as RGB_565 unless it has alpha.
+     * {@code bmp} is not modified.
+     */
+    static void write(Bitmap bmp, File file) throws IOException {
+        Bitmap.Config config = bmp.hasAlpha() ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+        Bitmap source = bmp.getConfig() == config ? bmp : bmp.copy(config, false);
+        if (source == null) {
+            throw new IOException("Could not convert bitmap to " + config);
+        }
+
+        try {
+            Header header = new Header(source.getWidth(), source.getHeight(),
+                    config == Bitmap.Config.RGB_565 ? CONFIG_RGB_565 : CONFIG_ARGB_8888);
+            writePixels(file, header, source::copyPixelsToBuffer);
+        } finally {
+            if (source != bmp) source.recycle();
+        }
+        Log.d(TAG, "💾 Raw pixels written: " + file.getName() + " " + config + " " + (file.length() / 1024) + "KB");
+    }
+
+    /**
+     * Writes {@code header} and then {@code pixels} (exactly
+     * header.pixelBytes() of them) to {@code file}. Goes through a temp
+     * file + rename so the engine never maps a half-written file.
+     */
+    static void writePixels(File file, Header header, PixelSource pixels) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(tmp, "rw");
+            raf.setLength(header.fileBytes());
+
+            MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, header.fileBytes());
+            header.writeTo(out);
+            pixels.copyTo(out);
+            out.force();
+        } finally {
+            if (raf != null) {
+                try { raf.close(); } catch (IOException ignored) {}
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not move " + tmp + " to " + file);
+        }
+    }
+
+    /** Maps {@code file} and copies its pixels into a new bitmap. */
+    static Bitmap read(File file) throws IOException {
+        Mapped mapped = map(file);
+        Header header = mapped.header;
+        Bitmap bitmap = Bitmap.createBitmap(header.width, header.height,
+                header.config == CONFIG_RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(mapped.pixels);
+        return bitmap;
+    }
+
+    /** Maps {@code file} read-only and validates its header; pixels start at position 0. */
+    static Mapped map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            // A mapping outlives the channel it came from
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            Header header = Header.readFrom(in, length);
+            ByteBuffer pixels = in.slice();
+            pixels.limit((int) header.pixelBytes());
+            return new Mapped(header, pixels);
+        } finally {
+            try { raf.close(); } catch (IOException ignored) {}
+        }
+    }
+}
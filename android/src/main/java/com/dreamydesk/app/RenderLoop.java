@@ -0,0 +1,214 @@
+package com.dreamydesk.app;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallaxWallpaperService's on-demand frame loop, minus the drawing: one
+ * frame per vsync while something moves, parked once a frame reports that
+ * it has settled, woken again from any thread.
+ *
+ * Everything except wake() and isParked() runs on the render thread. On
+ * the device Vsync is the render thread's Choreographer and renderThread
+ * its Handler; neither is an Android type here, so tests can drive the
+ * loop with their own vsync and threads and read the lateness it records.
+ */
+final class RenderLoop {
+
+    /** The render thread's vsync source. */
+    interface Vsync {
+        /** Calls doFrame() on the render thread at the next vsync. */
+        void requestFrame();
+
+        /** Drops a requested frame that hasn't run yet. */
+        void cancelFrame();
+    }
+
+    interface Renderer {
+        /** Draws one frame; returns true once nothing moves and the loop may park. */
+        boolean drawFrame(long frameTimeNanos);
+
+        /** About to park after a settled frame. */
+        void onPark();
+
+        /**
+         * Just parked: true if input the last frame didn't see arrived by
+         * some other route than wake() (e.g. tilt, checked against a threshold).
+         */
+        boolean inputMissed();
+
+        /** A parked loop is about to run again. */
+        void onResume();
+
+        /** Every FrameStats.WINDOW frames, before the window starts over. */
+        void onFrameStats(FrameStats stats);
+    }
+
+    /**
+     * Per-frame timing: how long a frame took to draw, how late it started
+     * after its vsync, and frames skipped (gaps of 1.5+ of the shortest
+     * interval seen).
+     */
+    static final class FrameStats {
+        static final int WINDOW = 600;
+
+        private int frames;
+        private long drawNanos;
+        private long maxDrawNanos;
+        private long maxLateNanos;
+        private long minIntervalNanos = Long.MAX_VALUE;
+        private int skipped;
+        private long prevFrameNanos;
+
+        /** Returns true once the window is full. */
+        boolean record(long frameTimeNanos, long startNanos, long endNanos) {
+            long draw = endNanos - startNanos;
+            frames++;
+            drawNanos += draw;
+            maxDrawNanos = Math.max(maxDrawNanos, draw);
+            maxLateNanos = Math.max(maxLateNanos, startNanos - frameTimeNanos);
+            if (prevFrameNanos != 0L) {
+                long interval = frameTimeNanos - prevFrameNanos;
+                minIntervalNanos = Math.min(minIntervalNanos, interval);
+                if (interval * 2 >= minIntervalNanos * 3) skipped++;
+            }
+            prevFrameNanos = frameTimeNanos;
+            return frames >= WINDOW;
+        }
+
+        /** The loop was parked or hidden: the gap to the next frame isn't a skip. */
+        void restart() {
+            prevFrameNanos = 0L;
+        }
+
+        void startWindow() {
+            frames = 0;
+            drawNanos = 0L;
+            maxDrawNanos = 0L;
+            maxLateNanos = 0L;
+            skipped = 0;
+        }
+
+        int frames() {
+            return frames;
+        }
+
+        long averageDrawNanos() {
+            return frames == 0 ? 0L : drawNanos / frames;
+        }
+
+        long maxDrawNanos() {
+            return maxDrawNanos;
+        }
+
+        long maxLateNanos() {
+            return maxLateNanos;
+        }
+
+        int skipped() {
+            return skipped;
+        }
+    }
+
+    private final Vsync vsync;
+    private final Executor renderThread;
+    private final Renderer renderer;
+    private final FrameStats stats = new FrameStats();
+
+    // True while the loop is stopped because nothing moves. Whoever flips it
+    // back to false owns waking the render thread.
+    private final AtomicBoolean parked = new AtomicBoolean(false);
+    // Bumped by every wake request
+    private final AtomicInteger wakeRequests = new AtomicInteger();
+    private final Runnable resumeRunnable = this::resume;
+
+    // ----- render thread -----
+    private boolean running = false;
+    private boolean frameScheduled = false;
+    // wakeRequests as of the current frame's start
+    private int drawnWakeRequests;
+
+    RenderLoop(Vsync vsync, Executor renderThread, Renderer renderer) {
+        this.vsync = vsync;
+        this.renderThread = renderThread;
+        this.renderer = renderer;
+    }
+
+    /** Render thread. Starts drawing, e.g. when the wallpaper becomes visible. */
+    void start() {
+        running = true;
+        parked.set(false);
+        stats.restart();
+        scheduleFrame();
+    }
+
+    /** Render thread. Stops drawing; a requested frame is dropped. */
+    void stop() {
+        running = false;
+        vsync.cancelFrame();
+        frameScheduled = false;
+    }
+
+    /** Any thread. Restarts a parked loop; no-op while it runs. */
+    void wake() {
+        wakeRequests.incrementAndGet();
+        if (parked.compareAndSet(true, false)) {
+            renderThread.execute(resumeRunnable);
+        }
+    }
+
+    /** Any thread. */
+    boolean isParked() {
+        return parked.get();
+    }
+
+    /** Render thread, from Vsync. */
+    void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!running) return;
+        drawnWakeRequests = wakeRequests.get();
+        long start = System.nanoTime();
+        boolean settled = renderer.drawFrame(frameTimeNanos);
+        if (stats.record(frameTimeNanos, start, System.nanoTime())) {
+            renderer.onFrameStats(stats);
+            stats.startWindow();
+        }
+        if (settled) {
+            park();
+        } else {
+            scheduleFrame();
+        }
+    }
+
+    /** Render thread; the current window's numbers. */
+    FrameStats stats() {
+        return stats;
+    }
+
+    private void scheduleFrame() {
+        if (!running || frameScheduled) return;
+        frameScheduled = true;
+        vsync.requestFrame();
+    }
+
+    private void park() {
+        renderer.onPark();
+        parked.set(true);
+
+        // Input that arrived while the last frame was drawn saw parked == false
+        // and didn't wake us — catch it here instead of sleeping through it.
+        boolean missedInput = wakeRequests.get() != drawnWakeRequests || renderer.inputMissed();
+        if (missedInput && parked.compareAndSet(true, false)) {
+            resume();
+        }
+    }
+
+    private void resume() {
+        if (!running) return;
+        renderer.onResume();
+        // The parked period isn't a run of skipped frames
+        stats.restart();
+        scheduleFrame();
+    }
+}
@@ -0,0 +1,353 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent, content-addressed disk cache for downloaded wallpapers
+ * (static/parallax images and live wallpaper videos).
+ *
+ * Layout, under getCacheDir()/wallpaper_cache:
+ *   <sha256(url)>.data   the response body, byte-for-byte
+ *   <sha256(url)>.meta   java.util.Properties: url, etag, lastModified
+ *
+ * Eviction is LRU by total byte size. Recency is kept in an access-ordered
+ * LinkedHashMap, rebuilt from the data files' mtimes on startup (every hit
+ * bumps the mtime), so ordering survives process death without a journal.
+ *
+ * The cache itself does no networking: WallpaperPlugin asks lookup() for
+ * the stored validators, performs the (conditional) request, and either
+ * calls recordHit() on a 304 or streams the body to newTempFile() and
+ * commit()s it.
+ *
+ * Entries can be deleted (eviction, replacement, clear()) while a decode
+ * still reads them. Readers therefore open the returned file once and keep
+ * reading that descriptor, which outlives the file's deletion.
+ */
+final class WallpaperDiskCache {
+
+    private static final String TAG = "WallpaperDiskCache";
+
+    static final long DEFAULT_MAX_BYTES = 200L * 1024 * 1024;
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PARTIAL_SUFFIX = ".download";
+
+    private final File dir;
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(32, 0.75f, true);
+    private long totalBytes = 0;
+    private long maxBytes;
+    private volatile boolean offline;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /** Stored copy of a URL plus the validators needed to revalidate it. */
+    static final class Entry {
+        final File file;
+        final String etag;
+        final String lastModified;
+
+        private Entry(File file, String etag, String lastModified) {
+            this.file = file;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    WallpaperDiskCache(File cacheRoot, long maxBytes, boolean offline) {
+        this.dir = new File(cacheRoot, "wallpaper_cache");
+        this.maxBytes = Math.max(0, maxBytes);
+        this.offline = offline;
+        load();
+    }
+
+    private synchronized void load() {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "❌ Could not create cache dir: " + dir.getAbsolutePath());
+            return;
+        }
+
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        // Oldest first, so the access-ordered map ends up with the most
+        // recently used entry at the tail — same as if they'd been touched live.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Leftover from a download interrupted by process death
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                String key = name.substring(0, name.length() - DATA_SUFFIX.length());
+                lru.put(key, f.length());
+                totalBytes += f.length();
+            }
+        }
+
+        trimToSize(null);
+        Log.d(TAG, "💾 Disk cache loaded: " + lru.size() + " entries, " + totalBytes + " bytes");
+    }
+
+    // =========================================================
+    // CONFIG
+    // =========================================================
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        trimToSize(null);
+    }
+
+    synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Cache disabled = nothing is stored, every request goes to the network. */
+    synchronized boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /** Offline mode: serve only what is already cached, never touch the network. */
+    boolean isOffline() {
+        return offline;
+    }
+
+    // =========================================================
+    // LOOKUP / STORE
+    // =========================================================
+
+    /** Returns the stored entry for {@code url}, or null. Does not count as a hit. */
+    synchronized Entry lookup(String url) {
+        String key = keyFor(url);
+        if (!lru.containsKey(key)) return null;
+
+        File data = dataFile(key);
+        if (!data.exists()) {
+            remove(key);
+            return null;
+        }
+
+        Properties meta = readMeta(key);
+        return new Entry(data, meta.getProperty("etag"), meta.getProperty("lastModified"));
+    }
+
+    /** Marks {@code url} as served from cache (fresh hit or 304 revalidation). */
+    synchronized File recordHit(String url) {
+        String key = keyFor(url);
+        lru.get(key); // bump recency
+        File data = dataFile(key);
+        //noinspection ResultOfMethodCallIgnored
+        data.setLastModified(System.currentTimeMillis());
+        hitCount++;
+        return data;
+    }
+
+    /** Temp file to stream a new body into before commit(). */
+    File newTempFile(String url) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create cache dir: " + dir.getAbsolutePath());
+        }
+        return File.createTempFile(keyFor(url) + "_", TEMP_SUFFIX, dir);
+    }
+
+    /**
+     * Stable (not randomly named) destination for resumable downloads of
+     * {@code url}. RangeDownloader keeps its .part/.part.meta files next to
+     * it, and they deliberately survive restarts so the download can resume.
+     */
+    File partialFileFor(String url) {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        return new File(dir, keyFor(url) + PARTIAL_SUFFIX);
+    }
+
+    /**
+     * Moves a fully-downloaded temp file into the cache as the body for
+     * {@code url}, then evicts least-recently-used entries (never the one
+     * just stored) until the cache fits its byte cap again.
+     */
+    synchronized File commit(String url, File temp, String etag, String lastModified) throws IOException {
+        String key = keyFor(url);
+        File data = dataFile(key);
+
+        remove(key);
+        if (!temp.renameTo(data)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Could not move download into cache: " + data.getAbsolutePath());
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        if (etag != null) meta.setProperty("etag", etag);
+        if (lastModified != null) meta.setProperty("lastModified", lastModified);
+        writeMeta(key, meta);
+
+        lru.put(key, data.length());
+        totalBytes += data.length();
+        missCount++;
+
+        trimToSize(key);
+        return data;
+    }
+
+    /** A download that could not be cached still counts as a miss. */
+    synchronized void recordMiss() {
+        missCount++;
+    }
+
+    /**
+     * Deletes every committed entry. Temp files and resumable partial
+     * downloads belong to downloads still in progress and are left alone;
+     * sources already reading an entry keep their open descriptor (see
+     * ImageSource.fromFile).
+     */
+    synchronized void clear() {
+        for (String key : lru.keySet()) {
+            //noinspection ResultOfMethodCallIgnored
+            dataFile(key).delete();
+            //noinspection ResultOfMethodCallIgnored
+            metaFile(key).delete();
+        }
+        lru.clear();
+        totalBytes = 0;
+        Log.d(TAG, "🧹 Disk cache cleared");
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    synchronized int entryCount() {
+        return lru.size();
+    }
+
+    synchronized long hitCount() {
+        return hitCount;
+    }
+
+    synchronized long missCount() {
+        return missCount;
+    }
+
+    synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    // =========================================================
+    // INTERNALS
+    // =========================================================
+
+    private void trimToSize(String keepKey) {
+        Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keepKey)) continue;
+
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictionCount++;
+            //noinspection ResultOfMethodCallIgnored
+            dataFile(eldest.getKey()).delete();
+            //noinspection ResultOfMethodCallIgnored
+            metaFile(eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(String key) {
+        Long size = lru.remove(key);
+        if (size != null) totalBytes -= size;
+        //noinspection ResultOfMethodCallIgnored
+        dataFile(key).delete();
+        //noinspection ResultOfMethodCallIgnored
+        metaFile(key).delete();
+    }
+
+    private File dataFile(String key) {
+        return new File(dir, key + DATA_SUFFIX);
+    }
+
+    private File metaFile(String key) {
+        return new File(dir, key + META_SUFFIX);
+    }
+
+    private Properties readMeta(String key) {
+        Properties meta = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(metaFile(key));
+            meta.load(in);
+        } catch (IOException ignored) {
+            // No validators — entry is still usable, it just can't be revalidated
+        } finally {
+            try {
+                if (in != null) in.close();
+            } catch (IOException ignored) {}
+        }
+        return meta;
+    }
+
+    private void writeMeta(String key, Properties meta) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(metaFile(key));
+            meta.store(out, null);
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Could not write cache metadata: " + e.getMessage());
+        } finally {
+            try {
+                if (out != null) out.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is guaranteed on every Android version we support
+            throw new IllegalStateException(e);
+        }
+    }
+}
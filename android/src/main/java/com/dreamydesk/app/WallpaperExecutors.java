@@ -0,0 +1,231 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The plugin's worker threads, created once in WallpaperPlugin.load() and
+ * shut down in handleOnDestroy():
+ *
+ *   io        network fetches / disk cache reads (LoadWallpaperBitmapCallable,
+ *             DownloadVideoCallable)
+ *   cpu       bitmap decode + resize — at most one per core, so a burst of
+ *             taps can't have six full-size decodes competing for the heap
+ *   apply     WallpaperManager calls and file writes, strictly serialized
+ *   prefetch  background warm-up, ordered by batch priority
+ *   range     byte-range workers of parallel video downloads (RangeDownloader),
+ *             shared by all downloads; each waits on its own ranges only
+ *   resample  fork-join pool, one worker per core, that Resampler splits a
+ *             single large downscale across (entered from a cpu thread)
+ *
+ * io and cpu have bounded queues. io is fed straight from the plugin
+ * thread, which must never run a download itself: when its queue is full the
+ * submit fails with PoolBusyException and the call is rejected as BUSY. cpu
+ * is only fed from io threads; when it is full the submitting io thread runs
+ * the decode itself (caller-runs), which slows the producer down instead of
+ * queueing without limit or dropping work.
+ */
+final class WallpaperExecutors {
+
+    private static final String TAG = "WallpaperExecutors";
+
+    static final int IO_THREADS = 4;
+    static final int IO_QUEUE_CAPACITY = 32;
+    static final int CPU_QUEUE_CAPACITY = 16;
+    static final int PREFETCH_THREADS = 2;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor io;
+    private final ThreadPoolExecutor cpu;
+    private final ThreadPoolExecutor apply;
+    private final ThreadPoolExecutor prefetch;
+    private final ThreadPoolExecutor range;
+    private final ForkJoinPool resample;
+
+    private final AtomicLong ioRejected = new AtomicLong();
+    private final AtomicLong cpuCallerRuns = new AtomicLong();
+
+    WallpaperExecutors() {
+        int cpuThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+        io = newPool("wallpaper-io", IO_THREADS, new ArrayBlockingQueue<Runnable>(IO_QUEUE_CAPACITY),
+                new RejectWhenFull(ioRejected));
+        cpu = newPool("wallpaper-cpu", cpuThreads, new ArrayBlockingQueue<Runnable>(CPU_QUEUE_CAPACITY),
+                new CallerRunsWhenFull(cpuCallerRuns));
+        // Unbounded on purpose: applies are tiny, must never run on the
+        // caller's thread, and must stay in submission order.
+        apply = newPool("wallpaper-apply", 1, new LinkedBlockingQueue<Runnable>(),
+                new ThreadPoolExecutor.AbortPolicy());
+        prefetch = newPool("wallpaper-prefetch", PREFETCH_THREADS, new PriorityBlockingQueue<Runnable>(),
+                new ThreadPoolExecutor.AbortPolicy());
+        // Unbounded queue: ranges of concurrent downloads wait their turn; a
+        // range never waits on another range, so queueing can't deadlock
+        range = newPool("wallpaper-range", RangeDownloader.MAX_CONNECTIONS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        resample = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+        Log.d(TAG, "🧵 Pools ready: io=" + IO_THREADS + " cpu=" + cpuThreads + " apply=1 prefetch=" + PREFETCH_THREADS +
+              " range=" + RangeDownloader.MAX_CONNECTIONS +
+              " resample=" + resample.getParallelism());
+    }
+
+    ThreadPoolExecutor io() {
+        return io;
+    }
+
+    ThreadPoolExecutor cpu() {
+        return cpu;
+    }
+
+    ThreadPoolExecutor apply() {
+        return apply;
+    }
+
+    /** Only accepts Comparable tasks via execute() — see PrefetchTask. */
+    ThreadPoolExecutor prefetch() {
+        return prefetch;
+    }
+
+    ThreadPoolExecutor range() {
+        return range;
+    }
+
+    ForkJoinPool resample() {
+        return resample;
+    }
+
+    void shutdown() {
+        prefetch.shutdownNow();
+        range.shutdownNow();
+        resample.shutdownNow();
+        io.shutdownNow();
+        cpu.shutdownNow();
+        // Let an apply that already started finish rather than interrupting
+        // WallpaperManager halfway through a write.
+        apply.shutdown();
+        Log.d(TAG, "🧵 Pools shut down");
+    }
+
+    JSObject stats() {
+        JSObject result = new JSObject();
+        result.put("io", poolStats(io, IO_QUEUE_CAPACITY, 0, ioRejected.get()));
+        result.put("cpu", poolStats(cpu, CPU_QUEUE_CAPACITY, cpuCallerRuns.get(), 0));
+        result.put("apply", poolStats(apply, -1, 0, 0));
+        result.put("prefetch", poolStats(prefetch, -1, 0, 0));
+        result.put("range", poolStats(range, -1, 0, 0));
+
+        JSObject fj = new JSObject();
+        fj.put("parallelism", resample.getParallelism());
+        fj.put("poolSize", resample.getPoolSize());
+        fj.put("activeCount", resample.getActiveThreadCount());
+        fj.put("stealCount", resample.getStealCount());
+        result.put("resample", fj);
+        return result;
+    }
+
+    private static JSObject poolStats(ThreadPoolExecutor pool, int queueCapacity, long callerRuns, long rejected) {
+        JSObject stats = new JSObject();
+        stats.put("activeCount", pool.getActiveCount());
+        stats.put("poolSize", pool.getPoolSize());
+        stats.put("maxPoolSize", pool.getMaximumPoolSize());
+        stats.put("queueDepth", pool.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("completedTaskCount", pool.getCompletedTaskCount());
+        stats.put("callerRunsCount", callerRuns);
+        stats.put("rejectedCount", rejected);
+        return stats;
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, BlockingQueue<Runnable> queue,
+                                              RejectedExecutionHandler rejection) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new NamedThreadFactory(name), rejection);
+        // Idle plugin = no parked threads
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Caller-runs backpressure, except after shutdown: the stock
+     * CallerRunsPolicy silently drops the task then, which would leave a
+     * submit()ted Future that never completes.
+     */
+    private static final class CallerRunsWhenFull implements RejectedExecutionHandler {
+        private final AtomicLong counter;
+
+        private CallerRunsWhenFull(AtomicLong counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Wallpaper plugin is shutting down");
+            }
+            counter.incrementAndGet();
+            task.run();
+        }
+    }
+
+    /** A submit refused because the pool's queue is full, not because it shut down. */
+    static final class PoolBusyException extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        PoolBusyException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * For pools fed from the plugin thread: a full queue fails the submit
+     * instead of running the task on the caller.
+     */
+    private static final class RejectWhenFull implements RejectedExecutionHandler {
+        private final AtomicLong counter;
+
+        private RejectWhenFull(AtomicLong counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Wallpaper plugin is shutting down");
+            }
+            counter.incrementAndGet();
+            throw new PoolBusyException("Too many wallpaper requests in progress");
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.dreamydesk.app;
+
+import android.util.Log;
+
+import com.getcapacitor.PluginCall;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One in-flight set*Wallpaper call, identified by a jobId that JS can pass
+ * to cancelWallpaperJob().
+ *
+ * Lifecycle: RUNNING → APPLYING → FINISHED, or RUNNING → CANCELLED.
+ * Cancelling is only possible before the apply stage starts — once
+ * WallpaperManager is writing, the wallpaper WILL change, so cancel()
+ * reports false rather than rejecting a call whose effect still happens.
+ *
+ * Cancelling aborts promptly without interrupting pool threads (a task may
+ * be running on the plugin's own thread under caller-runs backpressure):
+ *   - every tracked HttpURLConnection is disconnected, which makes a
+ *     blocked read fail immediately;
+ *   - tracked futures that haven't started yet are dropped from their queue;
+ *   - each stage calls isCancelled()/throwIfCancelled() before doing more work.
+ */
+final class WallpaperJob {
+
+    private static final String TAG = "WallpaperJob";
+
+    private static final int RUNNING = 0;
+    private static final int APPLYING = 1;
+    private static final int CANCELLED = 2;
+    private static final int FINISHED = 3;
+
+    /** Thrown from I/O paths once the job has been cancelled. */
+    static final class CancelledException extends InterruptedIOException {
+        private static final long serialVersionUID = 1L;
+
+        CancelledException(String jobId) {
+            super("Wallpaper job cancelled" + (jobId != null ? ": " + jobId : ""));
+        }
+    }
+
+    final String id;
+    final PluginCall call;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final Set<HttpURLConnection> connections =
+            Collections.newSetFromMap(new ConcurrentHashMap<HttpURLConnection, Boolean>());
+    private final Set<Future<?>> futures =
+            Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+
+    WallpaperJob(String id, PluginCall call) {
+        this.id = id;
+        this.call = call;
+    }
+
+    /** Work not started from JS (e.g. prefetch): never cancelled, never resolved. */
+    static WallpaperJob detached() {
+        return new WallpaperJob(null, null);
+    }
+
+    boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    void throwIfCancelled() throws CancelledException {
+        if (isCancelled()) throw new CancelledException(id);
+    }
+
+    /** Registers a connection to disconnect on cancel. Call untrack() when done with it. */
+    void track(HttpURLConnection connection) throws CancelledException {
+        connections.add(connection);
+        if (isCancelled()) {
+            connections.remove(connection);
+            connection.disconnect();
+            throw new CancelledException(id);
+        }
+    }
+
+    void untrack(HttpURLConnection connection) {
+        connections.remove(connection);
+    }
+
+    /** Registers a queued stage, dropped from its pool's queue on cancel. */
+    void track(Future<?> future) {
+        futures.add(future);
+        if (isCancelled()) future.cancel(false);
+    }
+
+    /**
+     * Moves the job into its apply stage. Returns false if it was cancelled,
+     * in which case the caller must not touch the wallpaper.
+     */
+    boolean beginApply() {
+        return state.compareAndSet(RUNNING, APPLYING);
+    }
+
+    /**
+     * Marks the job done. Returns false if it was already finished or
+     * cancelled — the call has been (or is being) settled elsewhere.
+     */
+    boolean finish() {
+        while (true) {
+            int current = state.get();
+            if (current == CANCELLED || current == FINISHED) return false;
+            if (state.compareAndSet(current, FINISHED)) return true;
+        }
+    }
+
+    /**
+     * Cancels the job if it hasn't reached the apply stage. Returns false if
+     * it is already applying or done.
+     */
+    boolean cancel() {
+        if (!state.compareAndSet(RUNNING, CANCELLED)) return false;
+
+        for (HttpURLConnection connection : connections) {
+            connection.disconnect();
+        }
+        connections.clear();
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        futures.clear();
+
+        Log.d(TAG, "🛑 Cancelled job " + id);
+        return true;
+    }
+}
@@ -2,19 +2,32 @@ package com.dreamydesk.app;
 
 import android.app.WallpaperManager;
 import android.content.ComponentName;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ImageDecoder;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.Build;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.Size;
 import android.net.Uri;
 
+import com.dreamydesk.app.imagecore.CoverCrop;
+import com.dreamydesk.app.imagecore.Resampler;
+import com.dreamydesk.app.imagecore.SampleSize;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -22,16 +35,26 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Capacitor Wallpaper Plugin
@@ -51,15 +74,112 @@ public class WallpaperPlugin extends Plugin {
     private static final String TAG = "WallpaperPlugin";
     private Context context = null;
     private static final boolean IS_NOUGAT_OR_GREATER = Build.VERSION.SDK_INT >= 24;
-    // ✅ PATCH 1: Global single-thread executor — avoids spawning many threads
-    private static final ExecutorService wallpaperExecutor = Executors.newSingleThreadExecutor();
+
+    /** Shrink factor from which drawCoverCrop uses Resampler instead of Canvas filtering. */
+    private static final double RESAMPLE_MIN_FACTOR = 1.25;
+    // ✅ PATCH 1: Plugin-wide worker pools — no per-call executors, one global cap
+    private WallpaperExecutors executors;
+
+    private static final String KEY_CACHE_MAX_BYTES = "cache_max_bytes";
+    private static final String KEY_CACHE_OFFLINE = "cache_offline";
+    private WallpaperDiskCache diskCache;
+    private BitmapMemoryCache memoryCache;
+
+    // Prefetch: executors.prefetch() drains a priority queue shared by every batch
+    private final AtomicLong prefetchSequence = new AtomicLong();
+    private final Map<String, PrefetchBatch> prefetchBatches = new ConcurrentHashMap<>();
+
+    private static final String KEY_TRANSPORT_CONNECT_TIMEOUT = "transport_connect_timeout_ms";
+    private static final String KEY_TRANSPORT_READ_TIMEOUT = "transport_read_timeout_ms";
+    private static final String KEY_TRANSPORT_MAX_CONNECTIONS = "transport_max_connections";
+    // Pluggable HTTP stack shared by every download; see setTransport()
+    private static volatile WallpaperTransport transport = new PooledHttpTransport();
+
+    // set* calls in progress, by jobId, for cancelWallpaperJob
+    private final Map<String, WallpaperJob> jobs = new ConcurrentHashMap<>();
+
+    // Recycled decode/resize buffers, trimmed from onTrimMemory
+    private BitmapPool bitmapPool;
+    private final ComponentCallbacks2 trimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            // Cache first: what it evicts goes to the pool
+            if (memoryCache != null) memoryCache.trim(level);
+            if (bitmapPool != null) bitmapPool.trim(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            if (memoryCache != null) memoryCache.clear();
+            if (bitmapPool != null) bitmapPool.clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {}
+    };
+
+    // Single-flight: decodes currently running, by memory-cache key
+    private final ConcurrentHashMap<String, SharedDecode> inFlightDecodes = new ConcurrentHashMap<>();
 
     @Override
     public void load() {
         super.load();
+        context = getContext();
+
+        SharedPreferences prefs = context.getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE);
+        diskCache = new WallpaperDiskCache(
+            context.getCacheDir(),
+            prefs.getLong(KEY_CACHE_MAX_BYTES, WallpaperDiskCache.DEFAULT_MAX_BYTES),
+            prefs.getBoolean(KEY_CACHE_OFFLINE, false)
+        );
+        bitmapPool = new BitmapPool(context);
+        context.registerComponentCallbacks(trimCallbacks);
+        memoryCache = new BitmapMemoryCache(context, bitmapPool);
+        executors = new WallpaperExecutors();
+        transport.configure(
+            prefs.getInt(KEY_TRANSPORT_CONNECT_TIMEOUT, 0),
+            prefs.getInt(KEY_TRANSPORT_READ_TIMEOUT, 0),
+            prefs.getInt(KEY_TRANSPORT_MAX_CONNECTIONS, 0)
+        );
+
         Log.d(TAG, "✅ WallpaperPlugin loaded successfully!");
     }
 
+    /**
+     * Replaces the HTTP stack used for every download, e.g. with an
+     * OkHttp-backed implementation sharing the app's own connection pool.
+     * Call it from the host app before any wallpaper is set (typically in
+     * MainActivity.onCreate). Settings from configureTransport() are
+     * applied to it on the next plugin load.
+     */
+    public static void setTransport(WallpaperTransport customTransport) {
+        if (customTransport == null) {
+            throw new IllegalArgumentException("transport must not be null");
+        }
+        transport = customTransport;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (WallpaperJob job : jobs.values()) {
+            job.cancel();
+        }
+        // Queued prefetch items are about to be dropped: answer their calls now
+        for (PrefetchBatch batch : prefetchBatches.values()) {
+            batch.settle();
+        }
+        if (executors != null) {
+            executors.shutdown();
+        }
+        if (context != null) {
+            context.unregisterComponentCallbacks(trimCallbacks);
+        }
+        if (bitmapPool != null) {
+            bitmapPool.clear();
+        }
+        super.handleOnDestroy();
+    }
+
     @PluginMethod
     public void isAvailable(PluginCall call) {
         JSObject result = new JSObject();
@@ -80,33 +200,17 @@ public class WallpaperPlugin extends Plugin {
             return;
         }
 
-        Bitmap bmp = null;
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Bitmap> future = executorService.submit(new GetBitmapFromURLCallable(url));
-
-        try {
-            bmp = future.get();
-
-            // ✅ PATCH 3: Resize bitmap to screen dimensions before setting
-            if (bmp != null) {
-                bmp = resizeBitmapToScreen(bmp);
-            }
+        WallpaperJob job = startJob(call);
+        // ✅ PATCH 3: Loaded already resized to screen dimensions (or straight from the memory cache)
+        ProgressReporter progress = newProgress(url, job);
 
-            if (bmp == null) {
-                call.reject("Failed to download image");
-                executorService.shutdown();
-                return;
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            call.reject("Download failed: " + e.getMessage());
-            executorService.shutdown();
+        if (useStreamApply(call)) {
+            streamThenApply(job, url, progress, WallpaperManager.FLAG_SYSTEM);
             return;
         }
 
-        // ✅ PATCH 4: Apply wallpaper on background thread, not UI thread
-        wallpaperExecutor.execute(new SetBackgroundImageRunnable(bmp, call));
-        executorService.shutdown();
+        // ✅ PATCH 4: Load on the I/O pool, apply on the apply pool — this thread returns immediately
+        loadThenApply(job, url, 1.0f, progress, (bmp, level) -> new SetBackgroundImageRunnable(bmp, level, job, progress));
     }
 
     @PluginMethod
@@ -122,33 +226,17 @@ public class WallpaperPlugin extends Plugin {
             return;
         }
 
-        Bitmap bmp = null;
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Bitmap> future = executorService.submit(new GetBitmapFromURLCallable(url));
-
-        try {
-            bmp = future.get();
-
-            // ✅ PATCH 3: Resize bitmap to screen dimensions before setting
-            if (bmp != null) {
-                bmp = resizeBitmapToScreen(bmp);
-            }
+        WallpaperJob job = startJob(call);
+        // ✅ PATCH 3: Loaded already resized to screen dimensions (or straight from the memory cache)
+        ProgressReporter progress = newProgress(url, job);
 
-            if (bmp == null) {
-                call.reject("Failed to download image");
-                executorService.shutdown();
-                return;
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            call.reject("Download failed: " + e.getMessage());
-            executorService.shutdown();
+        if (useStreamApply(call)) {
+            streamThenApply(job, url, progress, WallpaperManager.FLAG_LOCK);
             return;
         }
 
-        // ✅ PATCH 4: Apply wallpaper on background thread, not UI thread
-        wallpaperExecutor.execute(new SetLockScreenImageRunnable(bmp, call));
-        executorService.shutdown();
+        // ✅ PATCH 4: Load on the I/O pool, apply on the apply pool — this thread returns immediately
+        loadThenApply(job, url, 1.0f, progress, (bmp, level) -> new SetLockScreenImageRunnable(bmp, level, job, progress));
     }
 
     @PluginMethod
@@ -164,33 +252,17 @@ public class WallpaperPlugin extends Plugin {
             return;
         }
 
-        Bitmap bmp = null;
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Bitmap> future = executorService.submit(new GetBitmapFromURLCallable(url));
-
-        try {
-            bmp = future.get();
-
-            // ✅ PATCH 3: Resize bitmap to screen dimensions before setting
-            if (bmp != null) {
-                bmp = resizeBitmapToScreen(bmp);
-            }
+        WallpaperJob job = startJob(call);
+        // ✅ PATCH 3: Loaded already resized to screen dimensions (or straight from the memory cache)
+        ProgressReporter progress = newProgress(url, job);
 
-            if (bmp == null) {
-                call.reject("Failed to download image");
-                executorService.shutdown();
-                return;
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            call.reject("Download failed: " + e.getMessage());
-            executorService.shutdown();
+        if (useStreamApply(call)) {
+            streamThenApply(job, url, progress, WallpaperManager.FLAG_SYSTEM | WallpaperManager.FLAG_LOCK);
             return;
         }
 
-        // ✅ PATCH 4: Apply wallpaper on background thread, not UI thread
-        wallpaperExecutor.execute(new SetLockScreenAndWallpaperImageRunnable(bmp, call));
-        executorService.shutdown();
+        // ✅ PATCH 4: Load on the I/O pool, apply on the apply pool — this thread returns immediately
+        loadThenApply(job, url, 1.0f, progress, (bmp, level) -> new SetLockScreenAndWallpaperImageRunnable(bmp, level, job, progress));
     }
 
     /**
@@ -200,8 +272,8 @@ public class WallpaperPlugin extends Plugin {
      * Both images are downloaded concurrently (two independent network
      * calls, not sequential) to keep total wait time close to that of a
      * single download rather than doubling it. Each is resized to the
-     * screen independently via the existing resizeBitmapToScreen, which is
-     * fully stateless and safe to call twice with different bitmaps.
+     * screen independently inside LoadWallpaperBitmapCallable, via the
+     * stateless resizeBitmapCoverCrop.
      *
      * ALL-OR-NOTHING: if either download fails, NEITHER wallpaper is
      * applied. This deliberately avoids a half-applied state where, say,
@@ -228,59 +300,101 @@ public class WallpaperPlugin extends Plugin {
             return;
         }
 
-        // Two-thread pool so both downloads run concurrently, not one after
-        // the other — this is purely for the network fetch, separate from
-        // wallpaperExecutor which serializes the actual apply step below.
-        ExecutorService downloadExecutor = Executors.newFixedThreadPool(2);
-        Future<Bitmap> homeFuture = downloadExecutor.submit(new GetBitmapFromURLCallable(homeUrl));
-        Future<Bitmap> lockFuture = downloadExecutor.submit(new GetBitmapFromURLCallable(lockUrl));
-
-        Bitmap homeBmp = null;
-        Bitmap lockBmp = null;
+        final WallpaperJob job = startJob(call);
+        final ProgressReporter homeProgress = newProgress(homeUrl, job);
+        final ProgressReporter lockProgress = newProgress(lockUrl, job);
 
+        // Both downloads go to the shared I/O pool so they run concurrently,
+        // not one after the other — separate from the apply pool, which
+        // serializes the actual apply step below. Whichever finishes second
+        // hands both to the apply pool, so no thread (least of all this one)
+        // sits blocked waiting for the other.
+        final HomeAndLockLoads loads = new HomeAndLockLoads(job, homeProgress, lockProgress);
         try {
-            homeBmp = homeFuture.get();
-            lockBmp = lockFuture.get();
+            job.track(executors.io().submit(loads.load(HomeAndLockLoads.HOME, homeUrl)));
+            job.track(executors.io().submit(loads.load(HomeAndLockLoads.LOCK, lockUrl)));
+        } catch (RejectedExecutionException e) {
+            rejectJob(job, "Download failed: " + e.getMessage() + " — no wallpaper was changed", submitErrorCode(e));
+            // Stands in for the load that never started; one already queued
+            // then finds the job finished and recycles its bitmap
+            loads.done();
+        }
+    }
 
-            if (homeBmp != null) {
-                homeBmp = resizeBitmapToScreen(homeBmp);
-            }
-            if (lockBmp != null) {
-                lockBmp = resizeBitmapToScreen(lockBmp);
-            }
+    /**
+     * The two downloads of one setHomeAndLockWallpapers call. Each runs as
+     * its own io task; the second to finish applies both.
+     */
+    private final class HomeAndLockLoads {
+        static final int HOME = 0;
+        static final int LOCK = 1;
+
+        private final WallpaperJob job;
+        private final ProgressReporter homeProgress;
+        private final ProgressReporter lockProgress;
+        private final AtomicReferenceArray<DecodedBitmap> results = new AtomicReferenceArray<>(2);
+        private final AtomicInteger remaining = new AtomicInteger(2);
+
+        private HomeAndLockLoads(WallpaperJob job, ProgressReporter homeProgress, ProgressReporter lockProgress) {
+            this.job = job;
+            this.homeProgress = homeProgress;
+            this.lockProgress = lockProgress;
+        }
 
-            if (homeBmp == null || lockBmp == null) {
-                // All-or-nothing: recycle whichever one DID succeed so it
-                // doesn't leak, then reject without touching either screen.
-                if (homeBmp != null && !homeBmp.isRecycled()) homeBmp.recycle();
-                if (lockBmp != null && !lockBmp.isRecycled()) lockBmp.recycle();
-
-                String failed = (homeBmp == null && lockBmp == null)
-                        ? "both images"
-                        : (homeBmp == null ? "home image" : "lock image");
-                call.reject("Failed to download " + failed + " — no wallpaper was changed");
-                downloadExecutor.shutdown();
-                return;
+        private Runnable load(int slot, String url) {
+            return () -> {
+                DecodedBitmap result = new LoadWallpaperBitmapCallable(url, 1.0f,
+                        slot == HOME ? homeProgress : lockProgress).call();
+                if (result != null && job.isCancelled()) {
+                    // The other load may have been dropped from the queue and never report back
+                    bitmapPool.put(result.bitmap);
+                    result = null;
+                }
+                results.set(slot, result);
+                done();
+            };
+        }
+
+        private void done() {
+            if (remaining.decrementAndGet() == 0) {
+                applyHomeAndLock(job, results.get(HOME), results.get(LOCK), homeProgress, lockProgress);
             }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            if (homeBmp != null && !homeBmp.isRecycled()) homeBmp.recycle();
-            if (lockBmp != null && !lockBmp.isRecycled()) lockBmp.recycle();
-            call.reject("Download failed: " + e.getMessage() + " — no wallpaper was changed");
-            downloadExecutor.shutdown();
+        }
+    }
+
+    private void applyHomeAndLock(WallpaperJob job, DecodedBitmap home, DecodedBitmap lock,
+                                  ProgressReporter homeProgress, ProgressReporter lockProgress) {
+        Bitmap homeBmp = home != null ? home.bitmap : null;
+        Bitmap lockBmp = lock != null ? lock.bitmap : null;
+        if (job.isCancelled() || homeBmp == null || lockBmp == null) {
+            // All-or-nothing: recycle whichever one DID succeed so it
+            // doesn't leak, then reject without touching either screen.
+            bitmapPool.put(homeBmp);
+            bitmapPool.put(lockBmp);
+
+            String failed = (homeBmp == null && lockBmp == null)
+                    ? "both images"
+                    : (homeBmp == null ? "home image" : "lock image");
+            rejectJob(job, "Failed to download " + failed + " — no wallpaper was changed");
             return;
-        } finally {
-            downloadExecutor.shutdown();
         }
 
-        // Both bitmaps are ready — apply on the serialized wallpaper executor,
-        // same thread pool used by every other set*Wallpaper method, so this
+        // Both bitmaps are ready — apply on the serialized apply pool, the
+        // same single thread used by every other set*Wallpaper method, so this
         // can't race with a concurrent setImageAsWallpaper/setImageAsLockScreen
         // call from elsewhere in the app.
-        wallpaperExecutor.execute(new SetHomeAndLockWallpapersRunnable(homeBmp, lockBmp, call));
+        try {
+            executors.apply().execute(new SetHomeAndLockWallpapersRunnable(
+                home, lock, job, homeProgress, lockProgress));
+        } catch (RejectedExecutionException e) {
+            bitmapPool.put(homeBmp);
+            bitmapPool.put(lockBmp);
+            rejectJob(job, "Apply failed: " + e.getMessage() + " — no wallpaper was changed");
+        }
     }
 
-
+    @PluginMethod
+    public void setLiveWallpaper(PluginCall call) {
         Log.d(TAG, "📱 setLiveWallpaper called");
         
         String videoUrl = call.getString("url");
@@ -306,6 +420,8 @@ public class WallpaperPlugin extends Plugin {
             }
         }
 
+        WallpaperJob job = startJob(call);
+
         // Check if the URL is a local file path
         if (videoUrl.startsWith("file://")) {
             Log.d(TAG, "🔍 Detected local file URI. Skipping download.");
@@ -320,34 +436,35 @@ public class WallpaperPlugin extends Plugin {
                     .apply();
 
                 Log.d(TAG, "✅ Local file path set for LiveWallpaperService: " + videoFile.getAbsolutePath());
-                openNativeLiveWallpaperPicker(call, LiveWallpaperService.class);
+                job.beginApply();
+                openNativeLiveWallpaperPicker(job, LiveWallpaperService.class);
             } catch (Exception e) {
                 Log.e(TAG, "❌ Error handling local file URI: " + e.getMessage());
-                call.reject("Error handling local file: " + e.getMessage());
+                rejectJob(job, "Error handling local file: " + e.getMessage());
             }
             return;
         }
 
         final String finalType = type;
+        final int connections = Math.max(1, Math.min(RangeDownloader.MAX_CONNECTIONS,
+                call.getInt("parallelConnections", 1)));
         Log.d(TAG, "🎬 Downloading " + finalType.toUpperCase());
 
-        // Download in background
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Boolean> future = executorService.submit(new DownloadVideoCallable(videoUrl, finalType));
-
+        // Download in background; the call is settled from the I/O thread
+        final DownloadVideoCallable download =
+            new DownloadVideoCallable(videoUrl, finalType, connections, newProgress(videoUrl, job));
         try {
-            boolean success = future.get();
-            if (success) {
-                Log.d(TAG, "✅ Download complete - opening native picker");
-                openNativeLiveWallpaperPicker(call, LiveWallpaperService.class);
-            } else {
-                call.reject("Failed to download video");
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            call.reject("Error: " + e.getMessage());
-        } finally {
-            executorService.shutdown();
+            job.track(executors.io().submit(() -> {
+                if (download.call()) {
+                    Log.d(TAG, "✅ Download complete - opening native picker");
+                    getBridge().executeOnMainThread(() ->
+                            openNativeLiveWallpaperPicker(job, LiveWallpaperService.class));
+                } else {
+                    rejectJob(job, "Failed to download video");
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejectJob(job, "Error: " + e.getMessage(), submitErrorCode(e));
         }
     }
 
@@ -385,34 +502,15 @@ public class WallpaperPlugin extends Plugin {
         final boolean sensorParallax = call.getBoolean("sensorParallax", true);
         final boolean scrollParallax = call.getBoolean("scrollParallax", true);
         final float overscan = clampFloat(call.getDouble("overscan", 1.3d).floatValue(), 1.05f, 2.0f);
+        final boolean rawFormat = "raw".equals(call.getString("imageFormat", "jpeg"));
 
-        Bitmap bmp;
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Bitmap> future = executorService.submit(new GetBitmapFromURLCallable(url, overscan));
-
-        try {
-            bmp = future.get();
-
-            if (bmp == null) {
-                call.reject("Failed to download image");
-                executorService.shutdown();
-                return;
-            }
-
-            // Cover+crop to the oversized (screen * overscan) canvas — gives the
-            // engine pan room while still filling the screen with no letterboxing.
-            bmp = resizeBitmapForParallax(bmp, overscan);
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            call.reject("Download failed: " + e.getMessage());
-            executorService.shutdown();
-            return;
-        }
+        WallpaperJob job = startJob(call);
+        // Cover+cropped to the oversized (screen * overscan) canvas — gives the
+        // engine pan room while still filling the screen with no letterboxing.
+        ProgressReporter progress = newProgress(url, job);
 
-        final Bitmap finalBmp = bmp;
-        wallpaperExecutor.execute(new SaveParallaxImageRunnable(
-            finalBmp, call, intensity, speed, depthStrength, sensorParallax, scrollParallax));
-        executorService.shutdown();
+        loadThenApply(job, url, overscan, progress, (bmp, level) -> new SaveParallaxImageRunnable(
+            bmp, level, job, progress, overscan, rawFormat, intensity, speed, depthStrength, sensorParallax, scrollParallax));
     }
 
     /**
@@ -505,11 +603,272 @@ public class WallpaperPlugin extends Plugin {
         call.resolve(result);
     }
 
+    /**
+     * How the parallax render loop spends its visible time: rendering vs
+     * parked (settled, nothing to redraw), frames drawn and idle wakeups.
+     * Totals since the last reset; the service adds to them each time the
+     * wallpaper goes out of view. Pass {@code reset: true} to clear them
+     * after reading.
+     */
+    @PluginMethod
+    public void getParallaxDiagnostics(PluginCall call) {
+        JSObject result = ParallaxDiagnostics.read(getContext());
+        if (call.getBoolean("reset", false)) {
+            ParallaxDiagnostics.reset(getContext());
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * Configures the persistent download cache shared by every set* method.
+     * Both settings are persisted and survive app restarts.
+     *   maxBytes: byte cap for the cache (LRU eviction beyond it); 0 disables caching
+     *   offline:  cache-only mode — serve cached wallpapers, never hit the network
+     */
+    @PluginMethod
+    public void configureCache(PluginCall call) {
+        SharedPreferences.Editor editor = getContext()
+            .getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE).edit();
+        JSObject data = call.getData();
+
+        if (data.has("maxBytes")) {
+            Long maxBytes = call.getLong("maxBytes");
+            if (maxBytes == null || maxBytes < 0) {
+                call.reject("maxBytes must be a non-negative number");
+                return;
+            }
+            diskCache.setMaxBytes(maxBytes);
+            editor.putLong(KEY_CACHE_MAX_BYTES, maxBytes);
+        }
+        if (data.has("offline")) {
+            boolean offline = call.getBoolean("offline", false);
+            diskCache.setOffline(offline);
+            editor.putBoolean(KEY_CACHE_OFFLINE, offline);
+        }
+        editor.apply();
+
+        call.resolve(buildCacheStats());
+    }
+
+    @PluginMethod
+    public void getCacheStats(PluginCall call) {
+        call.resolve(buildCacheStats());
+    }
+
+    /**
+     * Snapshot of the plugin's worker pools (io, cpu, apply, prefetch):
+     * active threads, queue depth vs capacity, completed tasks, and how
+     * often a full queue pushed work back onto the caller.
+     */
+    @PluginMethod
+    public void getPoolStats(PluginCall call) {
+        call.resolve(executors.stats());
+    }
+
+    /**
+     * Configure the HTTP transport shared by all downloads:
+     *   connectTimeoutMs, readTimeoutMs    per request
+     *   maxConnectionsPerHost              connections open to one host at a time
+     * Omitted values keep their current setting. Persists across restarts.
+     */
+    @PluginMethod
+    public void configureTransport(PluginCall call) {
+        int connectTimeoutMs = Math.max(0, call.getInt("connectTimeoutMs", 0));
+        int readTimeoutMs = Math.max(0, call.getInt("readTimeoutMs", 0));
+        int maxConnections = Math.max(0, call.getInt("maxConnectionsPerHost", 0));
+
+        transport.configure(connectTimeoutMs, readTimeoutMs, maxConnections);
+
+        SharedPreferences.Editor editor =
+            getContext().getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE).edit();
+        if (connectTimeoutMs > 0) editor.putInt(KEY_TRANSPORT_CONNECT_TIMEOUT, connectTimeoutMs);
+        if (readTimeoutMs > 0) editor.putInt(KEY_TRANSPORT_READ_TIMEOUT, readTimeoutMs);
+        if (maxConnections > 0) editor.putInt(KEY_TRANSPORT_MAX_CONNECTIONS, maxConnections);
+        editor.apply();
+
+        call.resolve(transport.stats());
+    }
+
+    /**
+     * Transport settings plus per-host header latency — first request vs.
+     * the average of later ones, i.e. what keep-alive reuse is saving.
+     */
+    @PluginMethod
+    public void getTransportStats(PluginCall call) {
+        call.resolve(transport.stats());
+    }
+
+    @PluginMethod
+    public void clearCache(PluginCall call) {
+        diskCache.clear();
+        memoryCache.clear();
+        bitmapPool.clear();
+        call.resolve(buildCacheStats());
+    }
+
+    private JSObject buildCacheStats() {
+        JSObject result = new JSObject();
+        result.put("sizeBytes", diskCache.sizeBytes());
+        result.put("maxBytes", diskCache.getMaxBytes());
+        result.put("entryCount", diskCache.entryCount());
+        result.put("hitCount", diskCache.hitCount());
+        result.put("missCount", diskCache.missCount());
+        result.put("evictionCount", diskCache.evictionCount());
+        result.put("offline", diskCache.isOffline());
+
+        // Decoded-bitmap LRU — hit rate and evictions are what to watch
+        // when tuning its share of the heap.
+        JSObject memory = new JSObject();
+        memory.put("sizeBytes", memoryCache.sizeBytes());
+        memory.put("maxBytes", memoryCache.maxBytes());
+        memory.put("hitCount", memoryCache.hitCount());
+        memory.put("missCount", memoryCache.missCount());
+        memory.put("evictionCount", memoryCache.evictionCount());
+        result.put("memory", memory);
+
+        // Reusable decode buffers — a high hit count means decodes are
+        // reusing pixels instead of allocating fresh bitmaps.
+        JSObject pool = new JSObject();
+        pool.put("sizeBytes", bitmapPool.sizeBytes());
+        pool.put("maxBytes", bitmapPool.maxBytes());
+        pool.put("hitCount", bitmapPool.hitCount());
+        pool.put("missCount", bitmapPool.missCount());
+        pool.put("evictionCount", bitmapPool.evictionCount());
+        result.put("bitmapPool", pool);
+        return result;
+    }
+
+    /**
+     * Downloads and pre-sizes wallpapers the user is likely to pick next, so
+     * a later setImageAs* / setParallaxWallpaper for the same URL is served
+     * from the memory cache almost instantly.
+     *
+     *   urls:      images to prefetch, in the order they should be fetched
+     *   priority:  "high" | "normal" | "low" — orders this batch against others
+     *   targets:   which screen geometries to pre-size for: "screen" (home/lock)
+     *              and/or "parallax"; an empty array only downloads to disk
+     *   overscan:  overscan used for the "parallax" target (default 1.3)
+     *   maxBytes:  download budget for the batch (0 = unlimited)
+     *   batchId:   optional caller-chosen id, for cancelPrefetch
+     *
+     * Runs on a small bounded worker pool shared by all batches. Resolves
+     * once every item is done, with a per-item ready/failed/skipped/cancelled
+     * status.
+     */
+    @PluginMethod
+    public void prefetchWallpapers(PluginCall call) {
+        context = getContext();
+
+        JSArray urlArray = call.getArray("urls");
+        List<String> urls = new ArrayList<>();
+        if (urlArray != null) {
+            for (int i = 0; i < urlArray.length(); i++) {
+                String u = urlArray.optString(i);
+                if (u != null && !u.isEmpty()) urls.add(u);
+            }
+        }
+        if (urls.isEmpty()) {
+            call.reject("Must provide at least one URL in urls");
+            return;
+        }
+
+        List<String> targets = new ArrayList<>();
+        JSArray targetArray = call.getArray("targets");
+        if (targetArray == null) {
+            targets.add("screen");
+        } else {
+            for (int i = 0; i < targetArray.length(); i++) {
+                String t = targetArray.optString(i);
+                if (!"screen".equals(t) && !"parallax".equals(t)) {
+                    call.reject("Unknown prefetch target: " + t + " (expected \"screen\" or \"parallax\")");
+                    return;
+                }
+                if (!targets.contains(t)) targets.add(t);
+            }
+        }
+
+        String priorityName = call.getString("priority", "normal");
+        int priority;
+        if ("high".equals(priorityName)) {
+            priority = PrefetchTask.PRIORITY_HIGH;
+        } else if ("low".equals(priorityName)) {
+            priority = PrefetchTask.PRIORITY_LOW;
+        } else {
+            priority = PrefetchTask.PRIORITY_NORMAL;
+        }
+
+        float overscan = clampFloat(call.getDouble("overscan", 1.3d).floatValue(), 1.05f, 2.0f);
+        long maxBytes = Math.max(0L, call.getLong("maxBytes", 0L));
+        String batchId = call.getString("batchId", UUID.randomUUID().toString());
+
+        PrefetchBatch batch = new PrefetchBatch(batchId, urls, targets, overscan, maxBytes,
+                done -> resolvePrefetch(call, done));
+        prefetchBatches.put(batchId, batch);
+        for (int i = 0; i < urls.size(); i++) {
+            try {
+                executors.prefetch().execute(new PrefetchTask(batch, i, priority,
+                        prefetchSequence.getAndIncrement(), this::prefetchOne));
+            } catch (RejectedExecutionException e) {
+                // Shutting down: this item and the rest will never run
+                batch.failFrom(i, "Prefetch failed: " + e.getMessage(), submitErrorCode(e));
+                break;
+            }
+        }
+
+        Log.d(TAG, "📥 Prefetch batch " + batchId + ": " + urls.size() + " URL(s), priority=" +
+              priorityName + " targets=" + targets);
+    }
+
+    /**
+     * Cancels a pending prefetch batch. Items still queued are dropped;
+     * an item already downloading finishes first. The batch's own promise
+     * then resolves with cancelled: true.
+     */
+    @PluginMethod
+    public void cancelPrefetch(PluginCall call) {
+        String batchId = call.getString("batchId");
+        PrefetchBatch batch = batchId != null ? prefetchBatches.get(batchId) : null;
+
+        JSObject result = new JSObject();
+        result.put("cancelled", batch != null);
+        if (batch != null) {
+            batch.cancel();
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * Cancels a running set* call by the jobId it was started with (or the
+     * one returned in its progress events). Open downloads are disconnected
+     * and the call rejects right away. Returns cancelled: false if the job
+     * is unknown, already finished, or already applying the wallpaper —
+     * at that point it can no longer be undone.
+     */
+    @PluginMethod
+    public void cancelWallpaperJob(PluginCall call) {
+        String jobId = call.getString("jobId");
+        WallpaperJob job = jobId != null ? jobs.get(jobId) : null;
+
+        boolean cancelled = job != null && job.cancel();
+        if (cancelled) {
+            jobs.remove(jobId, job);
+            getBridge().executeOnMainThread(() -> job.call.reject("Wallpaper job cancelled", "CANCELLED"));
+        }
+
+        JSObject result = new JSObject();
+        result.put("cancelled", cancelled);
+        call.resolve(result);
+    }
+
     /**
      * Opens Android's native live wallpaper chooser for the given service.
      * User can preview and select the wallpaper.
      */
-    private void openNativeLiveWallpaperPicker(PluginCall call, Class<?> serviceClass) {
+    private void openNativeLiveWallpaperPicker(WallpaperJob job, Class<?> serviceClass) {
+        openNativeLiveWallpaperPicker(job, serviceClass, null);
+    }
+
+    private void openNativeLiveWallpaperPicker(WallpaperJob job, Class<?> serviceClass, JSObject quality) {
         try {
             Log.d(TAG, "📱 Launching native wallpaper picker for " + serviceClass.getSimpleName());
             
@@ -528,12 +887,13 @@ public class WallpaperPlugin extends Plugin {
             
             JSObject result = new JSObject();
             result.put("success", true);
-            call.resolve(result);
+            if (quality != null) result.put("quality", quality);
+            resolveJob(job, result);
             
             Log.d(TAG, "✅ Native picker opened - user can now select wallpaper");
         } catch (Exception e) {
             Log.e(TAG, "❌ Failed to open picker: " + e.getMessage());
-            call.reject("Failed to open wallpaper picker: " + e.getMessage());
+            rejectJob(job, "Failed to open wallpaper picker: " + e.getMessage());
         }
     }
 
@@ -552,91 +912,124 @@ public class WallpaperPlugin extends Plugin {
      *
      * Result: image always fills the screen, never stretches, subject stays centred.
      * Works correctly on phones, tablets (landscape & portrait), and foldables.
+     *
+     * For parallax the target is an OVERSIZED canvas (screen * overscan)
+     * instead of the screen exactly. The extra pixels around every edge are
+     * what ParallaxWallpaperService pans across — without this room the image
+     * would either show black edges or have to be scaled/cropped live
+     * (which the Android WallpaperService canvas surface doesn't support).
+     * The target may also be smaller than the screen when MemoryGovernor
+     * had to reduce resolution.
      */
-    private Bitmap resizeBitmapToScreen(Bitmap bmp) {
-        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
-        int screenW = metrics.widthPixels;
-        int screenH = metrics.heightPixels;
-
-        int srcW = bmp.getWidth();
-        int srcH = bmp.getHeight();
-
-        // Scale factor that makes the image COVER the screen (larger of the two ratios)
-        float scaleX = (float) screenW / srcW;
-        float scaleY = (float) screenH / srcH;
-        float scale  = Math.max(scaleX, scaleY);   // cover = max, contain = min
-
-        // Scaled dimensions — one axis matches screen exactly, the other overflows
-        int scaledW = Math.round(srcW * scale);
-        int scaledH = Math.round(srcH * scale);
-
-        // Scale the full bitmap first
-        Bitmap scaled = Bitmap.createScaledBitmap(bmp, scaledW, scaledH, true);
-
-        // Crop the overflow symmetrically (centre-crop)
-        int cropX = (scaledW - screenW) / 2;
-        int cropY = (scaledH - screenH) / 2;
-
-        Bitmap cropped = Bitmap.createBitmap(scaled, cropX, cropY, screenW, screenH);
-
-        // Recycle the intermediate scaled bitmap if it is a new object
-        if (scaled != cropped && !scaled.isRecycled()) {
-            scaled.recycle();
-        }
-
-        Log.d(TAG, "📐 Cover+crop: src=" + srcW + "x" + srcH +
-              " scale=" + scale +
-              " scaled=" + scaledW + "x" + scaledH +
-              " crop=(" + cropX + "," + cropY + ")" +
-              " final=" + screenW + "x" + screenH);
+    private Bitmap resizeBitmapCoverCrop(Bitmap bmp, int targetW, int targetH, Bitmap.Config config) {
+        // Scale that makes the image COVER the target (larger of the two ratios),
+        // the scaled size (one axis matches, the other overflows) and the centred crop
+        CoverCrop crop = CoverCrop.compute(bmp.getWidth(), bmp.getHeight(), targetW, targetH);
+        Bitmap cropped = drawCoverCrop(bmp, crop, config);
+
+        Log.d(TAG, "📐 Cover+crop: src=" + bmp.getWidth() + "x" + bmp.getHeight() +
+              " scale=" + crop.scale +
+              " scaled=" + crop.scaledWidth + "x" + crop.scaledHeight +
+              " crop=(" + crop.scaledLeft + "," + crop.scaledTop + ")" +
+              " final=" + cropped.getWidth() + "x" + cropped.getHeight() + " " + config);
 
         return cropped;
     }
 
     /**
-     * Same cover+centre-crop technique as resizeBitmapToScreen, but targets an
-     * OVERSIZED canvas (screen dimensions * overscan) instead of the screen
-     * exactly. The extra pixels around every edge are what
-     * ParallaxWallpaperService pans across — without this room the image
-     * would either show black edges or have to be scaled/cropped live
-     * (which the Android WallpaperService canvas surface doesn't support).
+     * Scale + crop in ONE pass: draws {@code src} into an output-sized
+     * bitmap through a translate/scale, instead of createScaledBitmap (a
+     * full-size scaled copy) followed by createBitmap (the crop). The
+     * output buffer is borrowed from the bitmap pool when one fits.
+     * {@code src} is left untouched; the caller still owns it.
+     *
+     * Real downscales go through Resampler (Lanczos/area, parallel strips)
+     * when its int[] buffers fit the heap; Canvas bilinear filtering only
+     * samples 2x2 source pixels and aliases once the factor passes ~2x.
      */
-    private Bitmap resizeBitmapForParallax(Bitmap bmp, float overscan) {
-        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
-        int targetW = Math.round(metrics.widthPixels * overscan);
-        int targetH = Math.round(metrics.heightPixels * overscan);
-
-        int srcW = bmp.getWidth();
-        int srcH = bmp.getHeight();
-
-        float scaleX = (float) targetW / srcW;
-        float scaleY = (float) targetH / srcH;
-        float scale = Math.max(scaleX, scaleY);
-
-        int scaledW = Math.round(srcW * scale);
-        int scaledH = Math.round(srcH * scale);
+    private Bitmap drawCoverCrop(Bitmap src, CoverCrop crop, Bitmap.Config config) {
+        Bitmap out = bitmapPool.get(crop.outputWidth, crop.outputHeight, config);
+        if (out == null) {
+            out = Bitmap.createBitmap(crop.outputWidth, crop.outputHeight, config);
+        }
 
-        Bitmap scaled = Bitmap.createScaledBitmap(bmp, scaledW, scaledH, true);
-        if (scaled != bmp && !bmp.isRecycled()) {
-            bmp.recycle();
+        if (shouldResample(src, crop) && resampleInto(src, crop, out)) {
+            return out;
         }
 
-        int cropX = Math.max(0, (scaledW - targetW) / 2);
-        int cropY = Math.max(0, (scaledH - targetH) / 2);
-        int cropW = Math.min(targetW, scaledW);
-        int cropH = Math.min(targetH, scaledH);
+        out.eraseColor(Color.TRANSPARENT);
+        Canvas canvas = new Canvas(out);
+        canvas.translate(-crop.scaledLeft, -crop.scaledTop);
+        canvas.scale((float) crop.scaledWidth / src.getWidth(), (float) crop.scaledHeight / src.getHeight());
+        canvas.drawBitmap(src, 0, 0, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return out;
+    }
 
-        Bitmap cropped = Bitmap.createBitmap(scaled, cropX, cropY, cropW, cropH);
-        if (scaled != cropped && !scaled.isRecycled()) {
-            scaled.recycle();
+    /**
+     * Resampler needs the source window, its horizontal pass and the
+     * output as int[] on the Java heap at once — on API 26+ that is a
+     * different (smaller) budget than bitmap pixels, so check it separately.
+     */
+    private boolean shouldResample(Bitmap src, CoverCrop crop) {
+        if (src.getWidth() / (double) crop.scaledWidth < RESAMPLE_MIN_FACTOR) return false;
+
+        long pixels = (long) crop.width * crop.height
+                + (long) crop.outputWidth * crop.height
+                + (long) crop.outputWidth * crop.outputHeight;
+        long needed = pixels * 4;
+        long available = MemoryGovernor.heapBudgetBytes();
+        if (needed > available) {
+            Log.d(TAG, "📐 Resampler skipped: needs " + (needed / 1024 / 1024) + "MB heap, " +
+                  (available / 1024 / 1024) + "MB free");
+            return false;
         }
+        return true;
+    }
 
-        Log.d(TAG, "📐 Parallax cover+crop: src=" + srcW + "x" + srcH +
-              " overscan=" + overscan +
-              " target=" + targetW + "x" + targetH +
-              " final=" + cropped.getWidth() + "x" + cropped.getHeight());
+    private boolean resampleInto(Bitmap src, CoverCrop crop, Bitmap out) {
+        long startNanos = System.nanoTime();
+        try {
+            Resampler.Filter filter = Resampler.filterFor(crop.width / (double) crop.outputWidth);
+            Resampler.resample(new BitmapPixels(src), crop, new BitmapPixels(out), filter, executors.resample());
+
+            long ms = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            Log.d(TAG, "📐 Resampled " + crop.width + "x" + crop.height + " → " +
+                  crop.outputWidth + "x" + crop.outputHeight + " " + filter +
+                  " in " + ms + "ms (" + ((long) crop.width * crop.height / 1000 / ms) + " Mpx/s, " +
+                  executors.resample().getParallelism() + " threads)");
+            return true;
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "⚠️ Resampler out of memory, falling back to Canvas");
+            return false;
+        }
+    }
 
-        return cropped;
+    /**
+     * What a set* call actually delivered, for its result: "full", or
+     * "reduced" when MemoryGovernor had to trade resolution, colour depth,
+     * decode detail or overscan for memory. {@code level} is the
+     * MemoryGovernor level the bitmap was decoded at, carried along with it
+     * (memory cache hits are always full), and is reported as {@code step}.
+     */
+    private JSObject describeQuality(Bitmap bmp, String level, float requestedOverscan) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int requestedW = Math.round(metrics.widthPixels * requestedOverscan);
+        int requestedH = Math.round(metrics.heightPixels * requestedOverscan);
+        boolean full = MemoryGovernor.LEVEL_FULL.equals(level);
+
+        JSObject quality = new JSObject();
+        quality.put("level", full ? MemoryGovernor.LEVEL_FULL : "reduced");
+        quality.put("step", level);
+        quality.put("width", bmp.getWidth());
+        quality.put("height", bmp.getHeight());
+        quality.put("requestedWidth", requestedW);
+        quality.put("requestedHeight", requestedH);
+        quality.put("config", String.valueOf(bmp.getConfig()));
+        if (requestedOverscan > 1.0f) {
+            quality.put("overscan", Math.min((float) bmp.getWidth() / metrics.widthPixels,
+                    (float) bmp.getHeight() / metrics.heightPixels));
+        }
+        return quality;
     }
 
     private float clampFloat(float v, float min, float max) {
@@ -646,24 +1039,13 @@ public class WallpaperPlugin extends Plugin {
     /**
      * ✅ PATCH 6: Calculate the largest inSampleSize that keeps the decoded bitmap
      * at or above the required screen dimensions.
-     * Powers the two-pass decode in GetBitmapFromURLCallable to avoid loading
+     * Powers the two-pass decode in DecodeBitmapCallable to avoid loading
      * full 4K/8K images into RAM on low-memory devices (same technique as Zedge/Wallcraft).
      */
     private int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
         int height = options.outHeight;
         int width  = options.outWidth;
-        int inSampleSize = 1;
-
-        if (height > reqHeight || width > reqWidth) {
-            int halfHeight = height / 2;
-            int halfWidth  = width  / 2;
-
-            // Keep halving until the result would be smaller than the screen
-            while ((halfHeight / inSampleSize) >= reqHeight
-                    && (halfWidth  / inSampleSize) >= reqWidth) {
-                inSampleSize *= 2;
-            }
-        }
+        int inSampleSize = SampleSize.forTarget(width, height, reqWidth, reqHeight);
 
         Log.d(TAG, "📐 inSampleSize calculated: " + inSampleSize +
               " (source " + width + "x" + height +
@@ -671,104 +1053,785 @@ public class WallpaperPlugin extends Plugin {
         return inSampleSize;
     }
 
-    // ================== INNER CLASSES ==================
-
     /**
-     * Downloads image from URL with optimized memory usage
+     * Progress reporter for one URL of {@code job}, emitting "wallpaperProgress"
+     * events to JS. Skips building event payloads entirely when nobody is listening.
      */
-    private class GetBitmapFromURLCallable implements Callable<Bitmap> {
-        private String URL;
-        private float sizeMultiplier;
-
-        private GetBitmapFromURLCallable(String URL) {
-            this(URL, 1.0f);
+    private ProgressReporter newProgress(String url, WallpaperJob job) {
+        if (!hasListeners(ProgressReporter.EVENT)) {
+            return new ProgressReporter(url, job, null);
         }
+        return new ProgressReporter(url, job, event -> notifyListeners(ProgressReporter.EVENT, event));
+    }
 
-        /**
-         * @param sizeMultiplier scales the target decode dimensions above the
-         *                       raw screen size (e.g. 1.3 for parallax, which
-         *                       needs a larger-than-screen source image to pan
-         *                       across). Only affects the inSampleSize chosen
-         *                       for pass 2 — never upscales beyond source res.
-         */
-        private GetBitmapFromURLCallable(String URL, float sizeMultiplier) {
-            this.URL = URL;
-            this.sizeMultiplier = sizeMultiplier;
+    /** Registers a job for {@code call}, under the caller's jobId if it passed one. */
+    private WallpaperJob startJob(PluginCall call) {
+        String jobId = call.getString("jobId");
+        if (jobId == null || jobId.isEmpty()) {
+            jobId = UUID.randomUUID().toString();
         }
+        WallpaperJob job = new WallpaperJob(jobId, call);
+        jobs.put(jobId, job);
+        return job;
+    }
 
-        @Override
-        public Bitmap call() {
-            Bitmap bmp = null;
-            HttpURLConnection connection = null;
-            InputStream inputStream = null;
+    /** Resolves the job's call (with its jobId) on the main thread, unless it was already settled. */
+    private void resolveJob(WallpaperJob job, JSObject result) {
+        if (!job.finish()) return;
+        jobs.remove(job.id, job);
+        result.put("jobId", job.id);
+        getBridge().executeOnMainThread(() -> job.call.resolve(result));
+    }
 
-            try {
-                DisplayMetrics metrics = context.getResources().getDisplayMetrics();
-                int reqWidth  = Math.round(metrics.widthPixels * sizeMultiplier);
-                int reqHeight = Math.round(metrics.heightPixels * sizeMultiplier);
+    private void rejectJob(WallpaperJob job, String message) {
+        rejectJob(job, message, null);
+    }
 
-                // ✅ PATCH 6 — Pass 1: decode bounds only (zero pixels loaded into RAM)
-                BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inJustDecodeBounds = true;
+    private void rejectJob(WallpaperJob job, String message, String code) {
+        if (!job.finish()) return;
+        jobs.remove(job.id, job);
+        getBridge().executeOnMainThread(() -> {
+            if (code != null) {
+                job.call.reject(message, code);
+            } else {
+                job.call.reject(message);
+            }
+        });
+    }
 
-                URL imageUrl = new URL(this.URL);
-                connection = (HttpURLConnection) imageUrl.openConnection();
-                connection.setDoInput(true);
-                connection.setConnectTimeout(30000);
-                connection.setReadTimeout(30000);
-                connection.connect();
+    /** Rejection code for a refused pool submit: 'BUSY' when the io queue is full. */
+    private static String submitErrorCode(RejectedExecutionException e) {
+        return e instanceof WallpaperExecutors.PoolBusyException ? "BUSY" : null;
+    }
 
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    inputStream = connection.getInputStream();
-                    BitmapFactory.decodeStream(inputStream, null, options);
-                }
+    /** Produces the apply-stage runnable for a loaded bitmap and its MemoryGovernor level. */
+    private interface ApplyStep {
+        Runnable create(Bitmap bmp, String level);
+    }
 
-                // Close first connection — bounds are now known
-                try { if (inputStream != null) inputStream.close(); } catch (IOException ignored) {}
-                try { if (connection  != null) connection.disconnect(); } catch (Exception ignored) {}
-                inputStream = null;
-                connection  = null;
+    /** A decoded wallpaper bitmap and the MemoryGovernor level it was decoded at. */
+    private static final class DecodedBitmap {
+        final Bitmap bitmap;
+        final String level;
 
-                // ✅ PATCH 6 — Pass 2: decode at reduced sample size (much less RAM)
-                options.inSampleSize       = calculateInSampleSize(options, reqWidth, reqHeight);
-                options.inJustDecodeBounds = false;
-                options.inPreferredConfig  = Bitmap.Config.ARGB_8888;
-
-                URL imageUrl2 = new URL(this.URL);
-                connection = (HttpURLConnection) imageUrl2.openConnection();
-                connection.setDoInput(true);
-                connection.setConnectTimeout(30000);
-                connection.setReadTimeout(30000);
-                connection.connect();
-
-                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    inputStream = connection.getInputStream();
-                    bmp = BitmapFactory.decodeStream(inputStream, null, options);
-
-                    if (bmp != null) {
-                        Log.d(TAG, "✅ Bitmap loaded (sampled): " + bmp.getWidth() + "x" + bmp.getHeight() +
-                              " (" + (bmp.getByteCount() / 1024 / 1024) + "MB)" +
-                              " inSampleSize=" + options.inSampleSize);
-                    }
+        private DecodedBitmap(Bitmap bitmap, String level) {
+            this.bitmap = bitmap;
+            this.level = level;
+        }
+
+        /** Null for a failed decode. */
+        static DecodedBitmap of(Bitmap bitmap, String level) {
+            return bitmap != null ? new DecodedBitmap(bitmap, level) : null;
+        }
+    }
+
+    /**
+     * applyMode: "stream" hands the downloaded bytes to WallpaperManager as
+     * they are (see streamThenApply). Needs the API 24 setStream overload
+     * with a crop hint; older devices keep the bitmap path.
+     */
+    private boolean useStreamApply(PluginCall call) {
+        return IS_NOUGAT_OR_GREATER && "stream".equals(call.getString("applyMode", "bitmap"));
+    }
+
+    /**
+     * Stream apply: the downloaded (or disk-cached) bytes go straight to
+     * WallpaperManager.setStream, with the cover+centre-crop rectangle as
+     * visibleCropHint. Only a bounds pass runs in our process — no decoded
+     * bitmap, no resize, and no PNG re-encode inside setBitmap. The system
+     * decodes the image itself and the hint tells it which part is visible.
+     */
+    private void streamThenApply(WallpaperJob job, String url, ProgressReporter progress, int which) {
+        try {
+            job.track(executors.io().submit(() -> {
+                ImageSource source;
+                try {
+                    source = newFetcher().fetch(url, progress);
+                } catch (IOException e) {
+                    Log.e(TAG, "❌ Download error: " + e.getMessage());
+                    rejectJob(job, "Failed to download image");
+                    return;
+                }
+
+                Rect cropHint = coverCropHint(source);
+                if (job.isCancelled() || cropHint == null) {
+                    source.close();
+                    rejectJob(job, "Failed to decode image");
+                    return;
+                }
+                try {
+                    executors.apply().execute(new StreamWallpaperRunnable(source, cropHint, which, job, progress));
+                } catch (RejectedExecutionException e) {
+                    source.close();
+                    rejectJob(job, "Apply failed: " + e.getMessage());
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejectJob(job, "Download failed: " + e.getMessage(), submitErrorCode(e));
+        }
+    }
+
+    /** The visible cover-crop of {@code source} on this screen, in source pixels; null if it won't decode. */
+    private Rect coverCropHint(ImageSource source) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = null;
+        try {
+            in = source.openStream();
+            BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                if (in != null) in.close();
+            } catch (IOException ignored) {}
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        CoverCrop crop = CoverCrop.compute(options.outWidth, options.outHeight,
+                metrics.widthPixels, metrics.heightPixels);
+        return new Rect(crop.left, crop.top, crop.left + crop.width, crop.top + crop.height);
+    }
+
+    /**
+     * Loads the bitmap on the I/O pool, then hands it to the apply pool.
+     * The job's call is settled from there; the plugin thread never waits.
+     */
+    private void loadThenApply(WallpaperJob job, String url, float overscan,
+                               ProgressReporter progress, ApplyStep apply) {
+        try {
+            job.track(executors.io().submit(() -> {
+                DecodedBitmap result = new LoadWallpaperBitmapCallable(url, overscan, progress).call();
+                if (result == null) {
+                    if (!job.isCancelled()) rejectJob(job, "Failed to download image");
+                    return;
+                }
+                if (job.isCancelled()) {
+                    bitmapPool.put(result.bitmap);
+                    return;
+                }
+                try {
+                    executors.apply().execute(apply.create(result.bitmap, result.level));
+                } catch (RejectedExecutionException e) {
+                    bitmapPool.put(result.bitmap);
+                    rejectJob(job, "Apply failed: " + e.getMessage());
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejectJob(job, "Download failed: " + e.getMessage(), submitErrorCode(e));
+        }
+    }
+
+    /** Image fetches go through the transport installed right now; see setTransport. */
+    private ImageFetcher newFetcher() {
+        return new ImageFetcher(transport, diskCache, context.getContentResolver(), context.getCacheDir());
+    }
+
+    /**
+     * Cache-aware video fetch. Already-cached (or offline) videos go through
+     * ImageFetcher.fetchToCache's revalidation; new ones are downloaded by RangeDownloader
+     * into a stable partial file inside the cache dir, so an interrupted
+     * download resumes on the next call instead of restarting from byte 0.
+     */
+    private File fetchVideoToCache(String url, int connections, ProgressReporter progress) throws IOException {
+        if (diskCache.isOffline() || diskCache.lookup(url) != null) {
+            return newFetcher().fetchToCache(url, progress);
+        }
+
+        RangeDownloader.Result result =
+                new RangeDownloader(url, diskCache.partialFileFor(url), connections, transport,
+                        executors.range(), progress).download();
+        return diskCache.commit(url, result.file, result.etag, result.lastModified);
+    }
+
+    /** Save path for LiveWallpaperService to use */
+    private void saveLiveWallpaperPath(File videoFile, String type) {
+        getContext().getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE)
+            .edit()
+            .putString("live_wallpaper_path", videoFile.getAbsolutePath())
+            .putString("live_wallpaper_type", type)
+            .putLong("wallpaper_timestamp", System.currentTimeMillis())
+            .apply();
+    }
+
+    private static void copyFile(File from, File to) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(from);
+            out = new FileOutputStream(to);
+            in.getChannel().transferTo(0, from.length(), out.getChannel());
+        } finally {
+            try { if (in != null) in.close(); } catch (IOException ignored) {}
+            try { if (out != null) out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // ================== INNER CLASSES ==================
+
+    /**
+     * Produces a wallpaper-ready bitmap for {@code url}: downloaded, decoded
+     * and cover+centre-cropped to the screen (overscan 1.0) or to the
+     * oversized parallax canvas (overscan > 1.0).
+     *
+     * Checks the decoded-bitmap memory cache first, keyed by URL + target
+     * geometry, so applying the same image to home, then lock, skips the
+     * network, decode and resize entirely. The returned bitmap is always
+     * the caller's own copy and safe to recycle.
+     */
+    private class LoadWallpaperBitmapCallable implements Callable<DecodedBitmap> {
+        private final String url;
+        private final float overscan;
+        private final ProgressReporter progress;
+
+        private LoadWallpaperBitmapCallable(String url, float overscan, ProgressReporter progress) {
+            this.url = url;
+            this.overscan = overscan;
+            this.progress = progress;
+        }
+
+        @Override
+        public DecodedBitmap call() {
+            DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+            String key = BitmapMemoryCache.keyFor(url, metrics.widthPixels, metrics.heightPixels, overscan);
+
+            while (!progress.job().isCancelled()) {
+                Bitmap cached = memoryCache.getCopy(key);
+                if (cached != null) {
+                    // Only full-quality decodes are cached
+                    return new DecodedBitmap(cached, MemoryGovernor.LEVEL_FULL);
                 }
 
+                SharedDecode decode = acquireDecode(key, url, overscan, progress);
+                if (decode != null) {
+                    // The leader's job was cancelled mid-download — ours wasn't, so try again
+                    boolean retry = decode.abandoned && !progress.job().isCancelled();
+                    DecodedBitmap result = decode.release(true);
+                    if (!retry) return result;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Starts the download+decode for {@code key}, or joins the one already
+     * running for it — setImageAsWallpaper + setImageAsLockScreen fired
+     * back to back, or setHomeAndLockWallpapers with homeUrl == lockUrl,
+     * then share a single network fetch and decode.
+     *
+     * Returns the finished (possibly failed) decode, holding one reference
+     * the caller must release(). Returns null if the decode we tried to join
+     * completed in the meantime; its bitmap is then in the memory cache,
+     * so the caller should just look there again.
+     */
+    private SharedDecode acquireDecode(String key, String url, float overscan, ProgressReporter progress) {
+        SharedDecode decode = new SharedDecode(key);
+        SharedDecode running = inFlightDecodes.putIfAbsent(key, decode);
+
+        if (running == null) {
+            try {
+                DecodedBitmap decoded = decodeAndResize(url, overscan, progress);
+                if (decoded != null) {
+                    decode.result = decoded.bitmap;
+                    decode.level = decoded.level;
+                }
+                decode.abandoned = decoded == null && progress.job().isCancelled();
+                // A memory-constrained (degraded) result serves this burst of
+                // callers, but isn't cached — the next call may have room for full quality
+                decode.cacheable = decoded != null && MemoryGovernor.LEVEL_FULL.equals(decoded.level);
+            } finally {
+                inFlightDecodes.remove(key, decode);
+                decode.done.countDown();
+            }
+            return decode;
+        }
+
+        if (!running.join()) {
+            return null;
+        }
+        Log.d(TAG, "🔗 Joined in-flight decode: " + key);
+        if (!running.awaitResult(progress.job())) {
+            // Our own job was cancelled while waiting
+            running.release(false);
+            return null;
+        }
+        return running;
+    }
+
+    /**
+     * One in-flight decode, shared by every caller that asked for the same
+     * key while it ran. The resized bitmap is owned by the decode itself:
+     * each caller takes a private copy on release(), and the last one out
+     * hands the original to the memory cache.
+     */
+    private final class SharedDecode {
+        private final String key;
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Written before done.countDown(), read only after it
+        private Bitmap result;
+        private String level;
+        private boolean abandoned;
+        private boolean cacheable;
+        // Guarded by this
+        private int refs = 1;
+
+        private SharedDecode(String key) {
+            this.key = key;
+        }
+
+        /** Adds a reference, unless the last one was already released. */
+        private synchronized boolean join() {
+            if (refs == 0) return false;
+            refs++;
+            return true;
+        }
+
+        /** Waits for the decode; returns false early if {@code job} gets cancelled. */
+        private boolean awaitResult(WallpaperJob job) {
+            boolean interrupted = false;
+            try {
+                while (!job.isCancelled()) {
+                    try {
+                        if (done.await(100, TimeUnit.MILLISECONDS)) return true;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return false;
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Drops the caller's reference. With {@code wantCopy}, returns the
+         * caller's own copy of the bitmap (null if the decode failed).
+         */
+        private synchronized DecodedBitmap release(boolean wantCopy) {
+            Bitmap copy = null;
+            if (wantCopy && result != null) {
+                try {
+                    copy = result.copy(result.getConfig(), true);
+                } catch (OutOfMemoryError e) {
+                    Log.w(TAG, "⚠️ No room to copy shared bitmap: " + e.getMessage());
+                }
+            }
+
+            if (--refs == 0 && result != null) {
+                Bitmap master = result;
+                result = null;
+                if (wantCopy && copy == null) {
+                    // Couldn't copy — the last caller keeps the original, uncached
+                    return DecodedBitmap.of(master, level);
+                }
+                if (cacheable) {
+                    memoryCache.put(key, master);
+                } else {
+                    bitmapPool.put(master);
+                }
+            }
+            return DecodedBitmap.of(copy, level);
+        }
+    }
+
+    /**
+     * Download + decode + cover-crop, bypassing the memory cache. The fetch
+     * runs on the calling (I/O) thread; decode and resize are handed to the
+     * CPU pool, which caps how many full-size decodes run at once.
+     */
+    private DecodedBitmap decodeAndResize(String url, float overscan, ProgressReporter progress) {
+        ImageSource source;
+        try {
+            // Single fetch: the body is read once (from the disk cache, or
+            // streamed into a spool) and both decode passes run from it.
+            source = newFetcher().fetch(url, progress);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Download error: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+
+        DecodeTask decode = new DecodeTask(source, new DecodeBitmapCallable(source, overscan, progress));
+        try {
+            executors.cpu().execute(decode);
+        } catch (RejectedExecutionException e) {
+            // Never submitted, so the task won't close the source
+            source.close();
+            Log.e(TAG, "❌ Decode failed: " + e.getMessage());
+            return null;
+        }
+
+        try {
+            progress.job().track(decode);
+            return decode.get();
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "❌ Decode failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The cpu-pool stage of decodeAndResize. Cancelling the job cancels this
+     * future without stopping a decode that already started; its bitmap
+     * then has no reader and goes back to the pool here instead of leaking.
+     *
+     * The task owns the source and closes it once run() returns, whether
+     * the decode ran or was cancelled in the queue: get() returns as soon as
+     * the job is cancelled, while a running decode may still be reading the
+     * source's descriptor.
+     */
+    private final class DecodeTask extends FutureTask<DecodedBitmap> {
+        private final ImageSource source;
+
+        private DecodeTask(ImageSource source, Callable<DecodedBitmap> callable) {
+            super(callable);
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                source.close();
+            }
+        }
+
+        @Override
+        protected void set(DecodedBitmap result) {
+            super.set(result);
+            // Exact: once set() stores the result, cancel() can no longer succeed
+            if (isCancelled() && result != null) {
+                bitmapPool.put(result.bitmap);
+            }
+        }
+    }
+
+    /** PrefetchBatch.Listener: resolves the prefetchWallpapers() call with every item's outcome. */
+    private void resolvePrefetch(PluginCall call, PrefetchBatch batch) {
+        prefetchBatches.remove(batch.id, batch);
+
+        JSArray items = new JSArray();
+        for (int i = 0; i < batch.size(); i++) {
+            JSObject item = new JSObject();
+            item.put("url", batch.url(i));
+            item.put("ready", PrefetchBatch.READY.equals(batch.status(i)));
+            item.put("status", batch.status(i));
+            if (batch.error(i) != null) item.put("error", batch.error(i));
+            if (batch.code(i) != null) item.put("code", batch.code(i));
+            items.put(item);
+        }
+        JSObject result = new JSObject();
+        result.put("batchId", batch.id);
+        result.put("cancelled", batch.isCancelled());
+        result.put("readyCount", batch.readyCount());
+        result.put("bytesDownloaded", batch.bytesDownloaded());
+        result.put("items", items);
+        getBridge().executeOnMainThread(() -> call.resolve(result));
+    }
+
+    /**
+     * PrefetchTask.Work: warms the disk cache and/or the memory cache for
+     * one URL. Returns the bytes it added to the disk cache.
+     */
+    private long prefetchOne(PrefetchBatch batch, String url) throws IOException {
+        boolean wasOnDisk = diskCache.lookup(url) != null;
+        ProgressReporter silent = ProgressReporter.silent(url);
+
+        // Download only — warm the disk cache, skip decoding.
+        // Local images have nothing to download.
+        if (batch.targets.isEmpty() && !ImageFetcher.isLocalSource(url)) {
+            if (!diskCache.isEnabled()) {
+                throw new IOException("Disk cache is disabled, nothing to prefetch into");
+            }
+            newFetcher().fetchToCache(url, silent);
+        }
+
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        for (String target : batch.targets) {
+            if (batch.isCancelled()) {
+                throw new CancellationException("Prefetch batch cancelled");
+            }
+            float overscan = "parallax".equals(target) ? batch.overscan : 1.0f;
+            String key = BitmapMemoryCache.keyFor(url, metrics.widthPixels, metrics.heightPixels, overscan);
+            if (memoryCache.contains(key)) continue;
+
+            // Shares the decode with a set* call for the same image, if one is running
+            SharedDecode decode = acquireDecode(key, url, overscan, silent);
+            if (decode == null) continue;
+
+            boolean decoded = decode.result != null;
+            decode.release(false);
+            if (!decoded) {
+                throw new IOException("Failed to download or decode image");
+            }
+        }
+
+        if (!wasOnDisk) {
+            WallpaperDiskCache.Entry entry = diskCache.lookup(url);
+            if (entry != null) return entry.file.length();
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes an already-fetched image with optimized memory usage, then
+     * cover-crops it to the screen (or the parallax canvas). Runs on the
+     * CPU pool.
+     */
+    private class DecodeBitmapCallable implements Callable<DecodedBitmap> {
+        private ImageSource source;
+        private float sizeMultiplier;
+        private ProgressReporter progress;
+
+        /**
+         * @param sizeMultiplier scales the target decode dimensions above the
+         *                       raw screen size (e.g. 1.3 for parallax, which
+         *                       needs a larger-than-screen source image to pan
+         *                       across). The requested overscan; MemoryGovernor
+         *                       may lower it if it doesn't fit in memory.
+         */
+        private DecodeBitmapCallable(ImageSource source, float sizeMultiplier, ProgressReporter progress) {
+            this.source = source;
+            this.sizeMultiplier = sizeMultiplier;
+            this.progress = progress;
+        }
+
+        @Override
+        public DecodedBitmap call() {
+            Bitmap bmp = null;
+
+            long startNanos = System.nanoTime();
+
+            try {
+                DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+                boolean exactDecode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+
+                progress.job().throwIfCancelled();
+                progress.stage(ProgressReporter.STAGE_DECODE);
+
+                // ✅ PATCH 6 — Pass 1: decode bounds only (zero pixels loaded into RAM)
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                source.decode(options);
+
+                // Plan the pipeline against the memory actually available, before
+                // allocating anything — may lower resolution, config or overscan
+                MemoryGovernor.Plan plan = MemoryGovernor.plan(
+                        options.outWidth, options.outHeight, options.outMimeType,
+                        metrics.widthPixels, metrics.heightPixels,
+                        sizeMultiplier, exactDecode,
+                        MemoryGovernor.budgetBytes(context, executors.cpu().getActiveCount()));
+                int reqWidth  = plan.targetWidth;
+                int reqHeight = plan.targetHeight;
+                Bitmap.Config config = plan.config;
+
+                // API 28+: decode, scale and crop in one native pass, exact size
+                if (exactDecode) {
+                    Bitmap exact = decodeExactSize(reqWidth, reqHeight, config);
+                    if (exact != null) {
+                        logDecodePath("imagedecoder", startNanos, exact);
+                        return DecodedBitmap.of(exact, plan.level);
+                    }
+                }
+
+                // Otherwise: decode ONLY the visible cover-crop region, already subsampled
+                Bitmap region = decodeCoverCropRegion(options.outWidth, options.outHeight,
+                        reqWidth, reqHeight, config, plan.sampleBoost);
+                if (region != null) {
+                    logDecodePath("region", startNanos, region);
+                    return DecodedBitmap.of(region, plan.level);
+                }
+
+                // ✅ PATCH 6 — Pass 2: decode at reduced sample size (much less RAM)
+                options.inSampleSize       = calculateInSampleSize(options, reqWidth, reqHeight) * plan.sampleBoost;
+                options.inJustDecodeBounds = false;
+                options.inPreferredConfig  = config;
+                options.inMutable          = true;
+
+                bmp = decodeIntoPooled(options,
+                        SampleSize.sampledSize(options.outWidth, options.inSampleSize),
+                        SampleSize.sampledSize(options.outHeight, options.inSampleSize));
+                if (bmp == null) {
+                    return null;
+                }
+
+                Log.d(TAG, "✅ Bitmap loaded (sampled): " + bmp.getWidth() + "x" + bmp.getHeight() +
+                      " (" + (bmp.getByteCount() / 1024 / 1024) + "MB)" +
+                      " inSampleSize=" + options.inSampleSize);
+
+                if (progress.job().isCancelled()) {
+                    bitmapPool.put(bmp);
+                    return null;
+                }
+
+                progress.stage(ProgressReporter.STAGE_RESIZE);
+                Bitmap resized = resizeBitmapCoverCrop(bmp, reqWidth, reqHeight, config);
+                // The sampled decode goes back to the pool for the next one
+                bitmapPool.put(bmp);
+                logDecodePath("sampled+resize", startNanos, resized);
+                return DecodedBitmap.of(resized, plan.level);
+
             } catch (IOException e) {
-                Log.e(TAG, "❌ Download error: " + e.getMessage());
+                Log.e(TAG, "❌ Decode error: " + e.getMessage());
                 e.printStackTrace();
             } catch (OutOfMemoryError e) {
                 Log.e(TAG, "❌ Out of memory while loading bitmap: " + e.getMessage());
                 e.printStackTrace();
-            } finally {
+                bitmapPool.put(bmp);
+            }
+
+            return null;
+        }
+
+        /**
+         * API 28+ path: ImageDecoder scales the source straight to the cover
+         * size (setTargetSize — any size, not just powers of two) and crops
+         * the visible window (setCrop) while decoding. The only pixel buffer
+         * allocated is the final screen-sized bitmap; there is no sampled
+         * intermediate and no second scale pass.
+         *
+         * The crop is computed from the header's size, not the BitmapFactory
+         * bounds: ImageDecoder applies EXIF orientation first, and target size
+         * and crop are in that rotated space.
+         *
+         * Software allocation, because the result is read back later
+         * (memory cache copies, parallax PNG compress) and hardware bitmaps
+         * can't be. Returns null on decode failure so the caller falls back.
+         */
+        private Bitmap decodeExactSize(int targetW, int targetH, Bitmap.Config config) {
+            try {
+                Bitmap bmp = ImageDecoder.decodeBitmap(source.newDecoderSource(), (decoder, info, src) -> {
+                    Size size = info.getSize();
+                    if (size.getWidth() <= 0 || size.getHeight() <= 0) {
+                        throw new IllegalArgumentException("Bad image size " + size);
+                    }
+                    CoverCrop crop = CoverCrop.compute(size.getWidth(), size.getHeight(), targetW, targetH);
+                    decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                    decoder.setMutableRequired(true);
+                    if (config == Bitmap.Config.RGB_565) {
+                        // Lets the decoder pick RGB_565 for opaque images
+                        decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
+                    }
+                    decoder.setTargetSize(crop.scaledWidth, crop.scaledHeight);
+                    decoder.setCrop(new Rect(crop.scaledLeft, crop.scaledTop,
+                            crop.scaledLeft + crop.outputWidth, crop.scaledTop + crop.outputHeight));
+                });
+                if (bmp != null && progress.job().isCancelled()) {
+                    bitmapPool.put(bmp);
+                    return null;
+                }
+                return bmp;
+            } catch (IOException | IllegalArgumentException e) {
+                Log.w(TAG, "⚠️ ImageDecoder failed (" + e.getMessage() + "), using fallback decode");
+                return null;
+            }
+        }
+
+        /** Per-path timing and output size, to compare the decode paths in logcat. */
+        private void logDecodePath(String path, long startNanos, Bitmap result) {
+            if (result == null) return;
+            Log.d(TAG, "⏱️ Decode path=" + path +
+                  " took " + ((System.nanoTime() - startNanos) / 1000000L) + "ms" +
+                  " output=" + result.getWidth() + "x" + result.getHeight() +
+                  " (" + (result.getAllocationByteCount() / 1024) + "KB)");
+        }
+
+        /**
+         * Cover+centre-crop by region decode: the crop rectangle is worked out
+         * from the bounds pass, and BitmapRegionDecoder decodes just that
+         * window at the largest sample size that stays above target size.
+         * Only one small rescale remains. Peak heap is the sampled region plus
+         * the output, instead of the sampled full image + its scaled copy +
+         * the crop — pixels that end up cropped away are never decoded.
+         *
+         * Returns null — caller falls back to the full decode + resize path —
+         * if the format has no region decoder (GIF, some PNGs) or it fails.
+         */
+        private Bitmap decodeCoverCropRegion(int srcW, int srcH, int targetW, int targetH,
+                                             Bitmap.Config config, int sampleBoost) {
+            if (srcW <= 0 || srcH <= 0) return null;
+
+            CoverCrop crop = CoverCrop.compute(srcW, srcH, targetW, targetH);
+            BitmapRegionDecoder decoder;
+            try {
+                decoder = source.newRegionDecoder();
+            } catch (IOException e) {
+                Log.d(TAG, "📐 No region decoder for this image (" + e.getMessage() + "), using full decode");
+                return null;
+            }
+            if (decoder == null) return null;
+
+            Bitmap region = null;
+            try {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = crop.sampleSize() * sampleBoost;
+                options.inPreferredConfig = config;
+                options.inBitmap = bitmapPool.get(SampleSize.sampledSize(crop.width, options.inSampleSize),
+                        SampleSize.sampledSize(crop.height, options.inSampleSize), config);
+
+                Rect rect = new Rect(crop.left, crop.top, crop.left + crop.width, crop.top + crop.height);
                 try {
-                    if (inputStream != null) inputStream.close();
-                    if (connection  != null) connection.disconnect();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    region = decoder.decodeRegion(rect, options);
+                } catch (IllegalArgumentException e) {
+                    if (options.inBitmap == null) throw e;
+                    // Pooled buffer rejected — decode into a fresh one
+                    bitmapPool.put(options.inBitmap);
+                    options.inBitmap = null;
+                    region = decoder.decodeRegion(rect, options);
+                }
+                if (region == null || progress.job().isCancelled()) {
+                    bitmapPool.put(region);
+                    return null;
+                }
+
+                Log.d(TAG, "📐 Region decode: src=" + srcW + "x" + srcH + " " + crop +
+                      " inSampleSize=" + options.inSampleSize +
+                      " decoded=" + region.getWidth() + "x" + region.getHeight());
+
+                if (region.getWidth() == crop.outputWidth && region.getHeight() == crop.outputHeight) {
+                    return region;
                 }
+
+                progress.stage(ProgressReporter.STAGE_RESIZE);
+                Bitmap scaled = drawCoverCrop(region,
+                        CoverCrop.compute(region.getWidth(), region.getHeight(), crop.outputWidth, crop.outputHeight),
+                        config);
+                bitmapPool.put(region);
+                return scaled;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "⚠️ Region decode failed (" + e.getMessage() + "), using full decode");
+                bitmapPool.put(region);
+                return null;
+            } finally {
+                decoder.recycle();
             }
+        }
 
-            return bmp;
+        /**
+         * Pass-2 decode into a pooled buffer (inBitmap) when one of at least
+         * the decoded size is available. A buffer the decoder rejects goes
+         * back to the pool and the decode is retried without it.
+         */
+        private Bitmap decodeIntoPooled(BitmapFactory.Options options, int width, int height) throws IOException {
+            options.inBitmap = bitmapPool.get(width, height, options.inPreferredConfig);
+            if (options.inBitmap == null) {
+                return source.decode(options);
+            }
+            try {
+                return source.decode(options);
+            } catch (IllegalArgumentException e) {
+                Log.d(TAG, "♻️ Pooled bitmap rejected (" + e.getMessage() + "), decoding without it");
+                bitmapPool.put(options.inBitmap);
+                options.inBitmap = null;
+                return source.decode(options);
+            }
         }
+
     }
 
     /**
@@ -778,80 +1841,63 @@ public class WallpaperPlugin extends Plugin {
     private class DownloadVideoCallable implements Callable<Boolean> {
         private String url;
         private String type;
+        private int connections;
+        private ProgressReporter progress;
 
-        private DownloadVideoCallable(String url, String type) {
+        /**
+         * @param connections 1 = single resumable connection; 2+ = fetch that
+         *                    many byte ranges concurrently (falls back to a
+         *                    single connection if the server can't do ranges)
+         */
+        private DownloadVideoCallable(String url, String type, int connections, ProgressReporter progress) {
             this.url = url;
             this.type = type;
+            this.connections = connections;
+            this.progress = progress;
         }
 
         @Override
         public Boolean call() {
-            HttpURLConnection connection = null;
-            InputStream inputStream = null;
-            FileOutputStream outputStream = null;
-            
             try {
-                Log.d(TAG, "⬇️ Downloading " + type.toUpperCase() + " from: " + url);
-                
-                URL videoUrl = new URL(this.url);
-                connection = (HttpURLConnection) videoUrl.openConnection();
-                connection.setDoInput(true);
-                connection.setConnectTimeout(60000);
-                connection.setReadTimeout(60000);
-                connection.connect();
-                
-                int responseCode = connection.getResponseCode();
-
-                if (responseCode != HttpURLConnection.HTTP_OK &&
-                    responseCode != HttpURLConnection.HTTP_PARTIAL) {
-                    Log.e(TAG, "❌ HTTP error: " + responseCode);
-                    return false;
-                }
-                
                 // Save to app's cache directory
                 File cacheDir = getContext().getCacheDir();
                 String fileName = "live_wallpaper." + type;
                 File videoFile = new File(cacheDir, fileName);
-                
-                inputStream = connection.getInputStream();
-                outputStream = new FileOutputStream(videoFile);
-                
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytes = 0;
-                
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
+
+                Log.d(TAG, "⬇️ Downloading " + type.toUpperCase() + " from: " + url +
+                      " (" + connections + " connection" + (connections > 1 ? "s" : "") + ")");
+
+                if (diskCache.isEnabled() || diskCache.isOffline()) {
+                    // The cache entry can be evicted at any time, so the
+                    // service gets its own copy at the stable path — a local
+                    // file copy is far cheaper than re-downloading 20-60 MB.
+                    File cached = fetchVideoToCache(this.url, connections, progress);
+                    try {
+                        copyFile(cached, videoFile);
+                    } catch (FileNotFoundException e) {
+                        // Evicted or cleared between the fetch and the copy
+                        copyFile(fetchVideoToCache(this.url, connections, progress), videoFile);
+                    }
+                    Log.d(TAG, "💾 Copied cached " + type.toUpperCase() + " to: " + videoFile.getAbsolutePath());
+                } else {
+                    RangeDownloader.Result result =
+                            new RangeDownloader(this.url, videoFile, connections, transport,
+                                    executors.range(), progress).download();
+                    diskCache.recordMiss();
+                    Log.d(TAG, "💾 Saved " + result.length + " bytes to: " + videoFile.getAbsolutePath());
                 }
-                
-                outputStream.flush();
-                
-                Log.d(TAG, "✅ Downloaded " + totalBytes + " bytes");
-                Log.d(TAG, "💾 Saved to: " + videoFile.getAbsolutePath());
 
-                // Save path for LiveWallpaperService to use
-                getContext().getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE)
-                    .edit()
-                    .putString("live_wallpaper_path", videoFile.getAbsolutePath())
-                    .putString("live_wallpaper_type", type)
-                    .putLong("wallpaper_timestamp", System.currentTimeMillis())
-                    .apply();
-                
+                // Past this point the live wallpaper changes, so it can no longer be cancelled
+                if (!progress.job().beginApply()) {
+                    return false;
+                }
+                saveLiveWallpaperPath(videoFile, type);
                 return true;
-                
+
             } catch (Exception e) {
                 Log.e(TAG, "❌ Download error: " + e.getMessage());
                 e.printStackTrace();
                 return false;
-            } finally {
-                try {
-                    if (outputStream != null) outputStream.close();
-                    if (inputStream != null) inputStream.close();
-                    if (connection != null) connection.disconnect();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
             }
         }
     }
@@ -864,17 +1910,26 @@ public class WallpaperPlugin extends Plugin {
      */
     private class SaveParallaxImageRunnable implements Runnable {
         private final Bitmap bmp;
-        private final PluginCall callbackContext;
+        private final String level;
+        private final WallpaperJob job;
+        private final ProgressReporter progress;
+        private final float overscan;
+        private final boolean rawFormat;
         private final float intensity;
         private final float speed;
         private final float depthStrength;
         private final boolean sensorParallax;
         private final boolean scrollParallax;
 
-        private SaveParallaxImageRunnable(Bitmap bmp, PluginCall callbackContext, float intensity,
-                                           float speed, float depthStrength, boolean sensorParallax, boolean scrollParallax) {
+        private SaveParallaxImageRunnable(Bitmap bmp, String level, WallpaperJob job, ProgressReporter progress, float overscan,
+                                           boolean rawFormat, float intensity, float speed, float depthStrength,
+                                           boolean sensorParallax, boolean scrollParallax) {
             this.bmp = bmp;
-            this.callbackContext = callbackContext;
+            this.level = level;
+            this.job = job;
+            this.progress = progress;
+            this.overscan = overscan;
+            this.rawFormat = rawFormat;
             this.intensity = intensity;
             this.speed = speed;
             this.depthStrength = depthStrength;
@@ -884,14 +1939,29 @@ public class WallpaperPlugin extends Plugin {
 
         @Override
         public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                bitmapPool.put(bmp);
+                return;
+            }
+            progress.stage(ProgressReporter.STAGE_APPLY);
             FileOutputStream fos = null;
             try {
                 // Persistent storage (not cache) — the wallpaper service needs
                 // this file to stick around for as long as the wallpaper is active.
-                File outFile = new File(context.getFilesDir(), "parallax_wallpaper.jpg");
-                fos = new FileOutputStream(outFile);
-                bmp.compress(Bitmap.CompressFormat.JPEG, 92, fos);
-                fos.flush();
+                File jpegFile = new File(context.getFilesDir(), "parallax_wallpaper.jpg");
+                File rawFile = new File(context.getFilesDir(), "parallax_wallpaper" + RawPixelFile.EXTENSION);
+                File outFile = rawFormat ? rawFile : jpegFile;
+                long writeStart = System.nanoTime();
+                if (rawFormat) {
+                    // Bigger on disk, but the engine maps it instead of decoding a JPEG
+                    RawPixelFile.write(bmp, outFile);
+                } else {
+                    fos = new FileOutputStream(outFile);
+                    bmp.compress(Bitmap.CompressFormat.JPEG, 92, fos);
+                    fos.flush();
+                }
+                long writeMs = (System.nanoTime() - writeStart) / 1_000_000;
 
                 context.getSharedPreferences("WallpaperPrefs", Context.MODE_PRIVATE)
                     .edit()
@@ -904,25 +1974,95 @@ public class WallpaperPlugin extends Plugin {
                     .putLong("parallax_timestamp", System.currentTimeMillis())
                     .apply();
 
+                // The engine already follows the new path; drop the other format's leftover
+                File stale = rawFormat ? jpegFile : rawFile;
+                if (stale.exists() && !stale.delete()) {
+                    Log.w(TAG, "⚠️ Could not delete stale parallax image: " + stale.getName());
+                }
+
                 Log.d(TAG, "✅ Parallax image saved: " + outFile.getAbsolutePath() +
+                      " (" + (outFile.length() / 1024) + "KB in " + writeMs + "ms)" +
                                             " intensity=" + intensity + " speed=" + speed + " depthStrength=" + depthStrength +
                       " sensor=" + sensorParallax + " scroll=" + scrollParallax);
 
                 // Opening an Activity + resolving the call must happen on the main thread.
+                JSObject quality = describeQuality(bmp, level, overscan);
                 getBridge().executeOnMainThread(() ->
-                        openNativeLiveWallpaperPicker(callbackContext, ParallaxWallpaperService.class));
+                        openNativeLiveWallpaperPicker(job, ParallaxWallpaperService.class, quality));
 
             } catch (IOException e) {
                 Log.e(TAG, "❌ Failed to save parallax image: " + e.getMessage());
-                getBridge().executeOnMainThread(() ->
-                        callbackContext.reject("Failed to save parallax image: " + e.getMessage()));
+                rejectJob(job, "Failed to save parallax image: " + e.getMessage());
             } finally {
                 try {
                     if (fos != null) fos.close();
                 } catch (IOException ignored) {}
-                if (bmp != null && !bmp.isRecycled()) {
-                    bmp.recycle();
-                }
+                bitmapPool.put(bmp);
+            }
+        }
+    }
+
+    /**
+     * Applies an undecoded image with WallpaperManager.setStream (API 24+)
+     * to {@code which} (FLAG_SYSTEM and/or FLAG_LOCK) in one call. Owns,
+     * and always closes, the source.
+     */
+    private class StreamWallpaperRunnable implements Runnable {
+        private final ImageSource source;
+        private final Rect cropHint;
+        private final int which;
+        private final WallpaperJob job;
+        private final ProgressReporter progress;
+
+        private StreamWallpaperRunnable(ImageSource source, Rect cropHint, int which,
+                                        WallpaperJob job, ProgressReporter progress) {
+            this.source = source;
+            this.cropHint = cropHint;
+            this.which = which;
+            this.job = job;
+            this.progress = progress;
+        }
+
+        @Override
+        public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                source.close();
+                return;
+            }
+            progress.stage(ProgressReporter.STAGE_APPLY);
+            WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
+            long applyStart = System.nanoTime();
+            InputStream in = null;
+            try {
+                in = source.openStream();
+                wallpaperManager.setStream(in, cropHint, false, which);
+                long applyMs = (System.nanoTime() - applyStart) / 1000000L;
+
+                JSObject hint = new JSObject();
+                hint.put("left", cropHint.left);
+                hint.put("top", cropHint.top);
+                hint.put("right", cropHint.right);
+                hint.put("bottom", cropHint.bottom);
+
+                JSObject result = new JSObject();
+                result.put("success", true);
+                result.put("applyMode", "stream");
+                result.put("applyMs", applyMs);
+                result.put("cropHint", hint);
+                resolveJob(job, result);
+
+                Log.d(TAG, "✅ Wallpaper streamed (which=" + which + ", " + (source.length() / 1024) + "KB," +
+                      " hint=" + cropHint.left + "," + cropHint.top + "-" + cropHint.right + "," + cropHint.bottom +
+                      ") in " + applyMs + "ms");
+            } catch (IOException e) {
+                rejectJob(job, e.getMessage());
+                e.printStackTrace();
+            } finally {
+                try {
+                    if (in != null) in.close();
+                } catch (IOException ignored) {}
+                source.close();
             }
         }
     }
@@ -933,16 +2073,27 @@ public class WallpaperPlugin extends Plugin {
      */
     private class SetBackgroundImageRunnable implements Runnable {
         private Bitmap bmp;
-        private PluginCall callbackContext;
+        private String level;
+        private WallpaperJob job;
+        private ProgressReporter progress;
 
-        private SetBackgroundImageRunnable(Bitmap bmp, PluginCall callbackContext) {
+        private SetBackgroundImageRunnable(Bitmap bmp, String level, WallpaperJob job, ProgressReporter progress) {
             this.bmp = bmp;
-            this.callbackContext = callbackContext;
+            this.level = level;
+            this.job = job;
+            this.progress = progress;
         }
 
         @Override
         public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                bitmapPool.put(bmp);
+                return;
+            }
+            progress.stage(ProgressReporter.STAGE_APPLY);
             WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
+            long applyStart = System.nanoTime();
             try {
                 if (IS_NOUGAT_OR_GREATER) {
                     wallpaperManager.setBitmap(
@@ -955,24 +2106,27 @@ public class WallpaperPlugin extends Plugin {
                     wallpaperManager.setBitmap(bmp);
                 }
                 
+                JSObject quality = describeQuality(bmp, level, 1.0f);
+                
                 // ✅ Clean up bitmap to prevent memory issues
-                if (bmp != null && !bmp.isRecycled()) {
-                    bmp.recycle();
-                }
+                bitmapPool.put(bmp);
                 
                 JSObject result = new JSObject();
                 result.put("success", true);
+                result.put("quality", quality);
+                result.put("applyMode", "bitmap");
+                result.put("applyMs", (System.nanoTime() - applyStart) / 1000000L);
                 // ✅ PATCH 5: Resolve on main thread to safely update UI (spinner/toast)
-                getBridge().executeOnMainThread(() -> callbackContext.resolve(result));
+                resolveJob(job, result);
                 
                 Log.d(TAG, "✅ Wallpaper set successfully (home screen) - No restart!");
                 
             } catch (IOException e) {
                 // ✅ PATCH 5: Reject on main thread
-                getBridge().executeOnMainThread(() -> callbackContext.reject(e.getMessage()));
+                rejectJob(job, e.getMessage());
                 e.printStackTrace();
             } catch (OutOfMemoryError e) {
-                getBridge().executeOnMainThread(() -> callbackContext.reject("Out of memory: " + e.getMessage()));
+                rejectJob(job, "Out of memory: " + e.getMessage());
                 e.printStackTrace();
             }
         }
@@ -984,16 +2138,27 @@ public class WallpaperPlugin extends Plugin {
      */
     private class SetLockScreenImageRunnable implements Runnable {
         private Bitmap bmp;
-        private PluginCall callbackContext;
+        private String level;
+        private WallpaperJob job;
+        private ProgressReporter progress;
 
-        private SetLockScreenImageRunnable(Bitmap bmp, PluginCall callbackContext) {
+        private SetLockScreenImageRunnable(Bitmap bmp, String level, WallpaperJob job, ProgressReporter progress) {
             this.bmp = bmp;
-            this.callbackContext = callbackContext;
+            this.level = level;
+            this.job = job;
+            this.progress = progress;
         }
 
         @Override
         public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                bitmapPool.put(bmp);
+                return;
+            }
+            progress.stage(ProgressReporter.STAGE_APPLY);
             WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
+            long applyStart = System.nanoTime();
             try {
                 if (IS_NOUGAT_OR_GREATER) {
                     wallpaperManager.setBitmap(
@@ -1006,24 +2171,27 @@ public class WallpaperPlugin extends Plugin {
                     wallpaperManager.setBitmap(bmp);
                 }
                 
+                JSObject quality = describeQuality(bmp, level, 1.0f);
+                
                 // ✅ Clean up bitmap
-                if (bmp != null && !bmp.isRecycled()) {
-                    bmp.recycle();
-                }
+                bitmapPool.put(bmp);
                 
                 JSObject result = new JSObject();
                 result.put("success", true);
+                result.put("quality", quality);
+                result.put("applyMode", "bitmap");
+                result.put("applyMs", (System.nanoTime() - applyStart) / 1000000L);
                 // ✅ PATCH 5: Resolve on main thread to safely update UI (spinner/toast)
-                getBridge().executeOnMainThread(() -> callbackContext.resolve(result));
+                resolveJob(job, result);
                 
                 Log.d(TAG, "✅ Wallpaper set successfully (lock screen) - No restart!");
                 
             } catch (IOException e) {
                 // ✅ PATCH 5: Reject on main thread
-                getBridge().executeOnMainThread(() -> callbackContext.reject(e.getMessage()));
+                rejectJob(job, e.getMessage());
                 e.printStackTrace();
             } catch (OutOfMemoryError e) {
-                getBridge().executeOnMainThread(() -> callbackContext.reject("Out of memory: " + e.getMessage()));
+                rejectJob(job, "Out of memory: " + e.getMessage());
                 e.printStackTrace();
             }
         }
@@ -1032,51 +2200,114 @@ public class WallpaperPlugin extends Plugin {
     /**
      * Sets wallpaper for both home and lock screens
      * FIXED: allowReturn = false to prevent app restart
+     *
+     * Encode-once: setBitmap compresses the bitmap to PNG on every call, so
+     * the old setBitmap(bmp) + setBitmap(bmp, FLAG_LOCK) pair encoded and
+     * wrote the same pixels twice. The bitmap is now encoded a single time
+     * and that payload applied to FLAG_SYSTEM | FLAG_LOCK in one setStream
+     * call. If the system refuses the combined call, the same bytes are
+     * applied per target. Per-step timings are reported as `timings`.
      */
     private class SetLockScreenAndWallpaperImageRunnable implements Runnable {
         private Bitmap bmp;
-        private PluginCall callbackContext;
+        private String level;
+        private WallpaperJob job;
+        private ProgressReporter progress;
 
-        private SetLockScreenAndWallpaperImageRunnable(Bitmap bmp, PluginCall callbackContext) {
+        private SetLockScreenAndWallpaperImageRunnable(Bitmap bmp, String level, WallpaperJob job, ProgressReporter progress) {
             this.bmp = bmp;
-            this.callbackContext = callbackContext;
+            this.level = level;
+            this.job = job;
+            this.progress = progress;
         }
 
         @Override
         public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                bitmapPool.put(bmp);
+                return;
+            }
+            progress.stage(ProgressReporter.STAGE_APPLY);
             WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
+            long applyStart = System.nanoTime();
+            JSObject timings = new JSObject();
+            ImageSource payload = null;
             try {
-                // Set for home screen first
-                wallpaperManager.setBitmap(bmp);
-                
-                // Then set for lock screen (Android 7.0+)
+                // Encode ONCE — lossless, like setBitmap does internally
+                long step = System.nanoTime();
+                payload = ImageSource.encode(bmp, Bitmap.CompressFormat.PNG, 100);
+                timings.put("encodeMs", (System.nanoTime() - step) / 1000000L);
+
+                JSObject quality = describeQuality(bmp, level, 1.0f);
+
+                // ✅ Clean up bitmap — only the encoded bytes are needed from here on
+                bitmapPool.put(bmp);
+                bmp = null;
+
                 if (IS_NOUGAT_OR_GREATER) {
-                    wallpaperManager.setBitmap(bmp, null, false, WallpaperManager.FLAG_LOCK);
+                    step = System.nanoTime();
+                    int id = applyPayload(wallpaperManager, payload,
+                            WallpaperManager.FLAG_SYSTEM | WallpaperManager.FLAG_LOCK);
+                    if (id != 0) {
+                        timings.put("systemAndLockMs", (System.nanoTime() - step) / 1000000L);
+                    } else {
+                        // Combined call refused — same bytes, one target at a time
+                        Log.w(TAG, "⚠️ Combined home+lock apply refused, applying per target");
+                        step = System.nanoTime();
+                        applyPayload(wallpaperManager, payload, WallpaperManager.FLAG_SYSTEM);
+                        timings.put("systemMs", (System.nanoTime() - step) / 1000000L);
+                        step = System.nanoTime();
+                        applyPayload(wallpaperManager, payload, WallpaperManager.FLAG_LOCK);
+                        timings.put("lockMs", (System.nanoTime() - step) / 1000000L);
+                    }
+                } else {
+                    // No separate lock slot pre-7.0: lock follows home
+                    step = System.nanoTime();
+                    InputStream in = payload.openStream();
+                    try {
+                        wallpaperManager.setStream(in);
+                    } finally {
+                        in.close();
+                    }
+                    timings.put("systemMs", (System.nanoTime() - step) / 1000000L);
                 }
 
-                // ✅ Clean up bitmap
-                if (bmp != null && !bmp.isRecycled()) {
-                    bmp.recycle();
-                }
-                
                 JSObject result = new JSObject();
                 result.put("success", true);
+                result.put("quality", quality);
+                result.put("applyMode", "bitmap");
+                result.put("applyMs", (System.nanoTime() - applyStart) / 1000000L);
+                result.put("timings", timings);
                 // ✅ PATCH 5: Resolve on main thread to safely update UI (spinner/toast)
-                getBridge().executeOnMainThread(() -> callbackContext.resolve(result));
+                resolveJob(job, result);
                 
-                Log.d(TAG, "✅ Wallpaper set successfully (both screens) - No restart!");
+                Log.d(TAG, "✅ Wallpaper set successfully (both screens) - No restart! " + timings);
                 
             } catch (IOException e) {
                 // ✅ PATCH 5: Reject on main thread
-                getBridge().executeOnMainThread(() -> callbackContext.reject(e.getMessage()));
+                rejectJob(job, e.getMessage());
                 e.printStackTrace();
             } catch (OutOfMemoryError e) {
-                getBridge().executeOnMainThread(() -> callbackContext.reject("Out of memory: " + e.getMessage()));
+                rejectJob(job, "Out of memory: " + e.getMessage());
                 e.printStackTrace();
+            } finally {
+                bitmapPool.put(bmp);
+                if (payload != null) payload.close();
             }
         }
     }
 
+    /** setStream of an encoded payload to {@code which}; returns the wallpaper id, 0 on failure. */
+    private int applyPayload(WallpaperManager wallpaperManager, ImageSource payload, int which) throws IOException {
+        InputStream in = payload.openStream();
+        try {
+            return wallpaperManager.setStream(in, null, false, which);
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Applies two DIFFERENT already-downloaded, already-resized bitmaps: one
      * to FLAG_SYSTEM (home) and one to FLAG_LOCK (lock screen). Both
@@ -1093,31 +2324,53 @@ public class WallpaperPlugin extends Plugin {
     private class SetHomeAndLockWallpapersRunnable implements Runnable {
         private Bitmap homeBmp;
         private Bitmap lockBmp;
-        private PluginCall callbackContext;
-
-        private SetHomeAndLockWallpapersRunnable(Bitmap homeBmp, Bitmap lockBmp, PluginCall callbackContext) {
-            this.homeBmp = homeBmp;
-            this.lockBmp = lockBmp;
-            this.callbackContext = callbackContext;
+        private String homeLevel;
+        private String lockLevel;
+        private WallpaperJob job;
+        private ProgressReporter homeProgress;
+        private ProgressReporter lockProgress;
+
+        private SetHomeAndLockWallpapersRunnable(DecodedBitmap home, DecodedBitmap lock, WallpaperJob job,
+                                                 ProgressReporter homeProgress, ProgressReporter lockProgress) {
+            this.homeBmp = home.bitmap;
+            this.lockBmp = lock.bitmap;
+            this.homeLevel = home.level;
+            this.lockLevel = lock.level;
+            this.job = job;
+            this.homeProgress = homeProgress;
+            this.lockProgress = lockProgress;
         }
 
         @Override
         public void run() {
+            if (!job.beginApply()) {
+                // Cancelled while queued for apply
+                bitmapPool.put(homeBmp);
+                bitmapPool.put(lockBmp);
+                return;
+            }
             WallpaperManager wallpaperManager = WallpaperManager.getInstance(context);
             boolean homeApplied = false;
             boolean lockApplied = false;
+            JSObject timings = new JSObject();
 
             try {
+                homeProgress.stage(ProgressReporter.STAGE_APPLY);
+                long step = System.nanoTime();
                 if (IS_NOUGAT_OR_GREATER) {
                     wallpaperManager.setBitmap(homeBmp, null, false, WallpaperManager.FLAG_SYSTEM);
                 } else {
                     wallpaperManager.setBitmap(homeBmp);
                 }
                 homeApplied = true;
+                timings.put("systemMs", (System.nanoTime() - step) / 1000000L);
 
+                lockProgress.stage(ProgressReporter.STAGE_APPLY);
                 if (IS_NOUGAT_OR_GREATER) {
+                    step = System.nanoTime();
                     wallpaperManager.setBitmap(lockBmp, null, false, WallpaperManager.FLAG_LOCK);
                     lockApplied = true;
+                    timings.put("lockMs", (System.nanoTime() - step) / 1000000L);
                 } else {
                     // Pre-Nougat devices have no separate lock-screen wallpaper
                     // API; FLAG_LOCK is unavailable, so home was applied but a
@@ -1126,35 +2379,39 @@ public class WallpaperPlugin extends Plugin {
                     Log.d(TAG, "⚠️ Device is pre-Android 7.0: no separate lock screen wallpaper API, lock image not applied");
                 }
 
-                if (homeBmp != null && !homeBmp.isRecycled()) homeBmp.recycle();
-                if (lockBmp != null && !lockBmp.isRecycled()) lockBmp.recycle();
+                JSObject homeQuality = describeQuality(homeBmp, homeLevel, 1.0f);
+                JSObject lockQuality = describeQuality(lockBmp, lockLevel, 1.0f);
+                bitmapPool.put(homeBmp);
+                bitmapPool.put(lockBmp);
 
                 if (homeApplied && lockApplied) {
                     JSObject result = new JSObject();
                     result.put("success", true);
+                    result.put("quality", homeQuality);
+                    result.put("lockQuality", lockQuality);
                     result.put("homeApplied", true);
                     result.put("lockApplied", true);
-                    getBridge().executeOnMainThread(() -> callbackContext.resolve(result));
+                    result.put("timings", timings);
+                    resolveJob(job, result);
                     Log.d(TAG, "✅ Home and lock wallpapers set successfully (different images) - No restart!");
                 } else {
                     // homeApplied but lockApplied is false: pre-Nougat case above.
-                    getBridge().executeOnMainThread(() ->
-                            callbackContext.reject("Home wallpaper was set, but this device does not support a separate lock screen wallpaper (requires Android 7.0+)"));
+                    rejectJob(job, "Home wallpaper was set, but this device does not support a separate lock screen wallpaper (requires Android 7.0+)");
                 }
 
             } catch (IOException e) {
-                if (homeBmp != null && !homeBmp.isRecycled()) homeBmp.recycle();
-                if (lockBmp != null && !lockBmp.isRecycled()) lockBmp.recycle();
+                bitmapPool.put(homeBmp);
+                bitmapPool.put(lockBmp);
                 final boolean homeWasApplied = homeApplied;
-                getBridge().executeOnMainThread(() -> callbackContext.reject(
+                rejectJob(job,
                         (homeWasApplied
                                 ? "Home wallpaper was set, but lock screen failed: "
-                                : "Failed to set home wallpaper: ") + e.getMessage()));
+                                : "Failed to set home wallpaper: ") + e.getMessage());
                 e.printStackTrace();
             } catch (OutOfMemoryError e) {
-                if (homeBmp != null && !homeBmp.isRecycled()) homeBmp.recycle();
-                if (lockBmp != null && !lockBmp.isRecycled()) lockBmp.recycle();
-                getBridge().executeOnMainThread(() -> callbackContext.reject("Out of memory: " + e.getMessage()));
+                bitmapPool.put(homeBmp);
+                bitmapPool.put(lockBmp);
+                rejectJob(job, "Out of memory: " + e.getMessage());
                 e.printStackTrace();
             }
         }
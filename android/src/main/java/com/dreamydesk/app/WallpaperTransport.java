@@ -0,0 +1,56 @@
+package com.dreamydesk.app;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+
+/**
+ * How the plugin talks HTTP. Every image, video and range request goes
+ * through the active transport (see WallpaperPlugin.setTransport), so an
+ * app can swap in its own stack — e.g. OkHttp via okhttp-urlconnection,
+ * sharing the app's existing connection pool — without touching the
+ * download code.
+ *
+ * Contract, per request:
+ *   1. open(url)             configured connection, not yet sent
+ *   2. caller adds headers
+ *   3. execute(connection)   sends it, returns the status code
+ *   4. caller reads the body
+ *   5. release(connection, reusable)
+ *      reusable = true only if the body was read to EOF and closed, so the
+ *      socket can go back to the keep-alive pool; false tears it down.
+ */
+public interface WallpaperTransport {
+
+    /**
+     * open() gave up waiting for one of the host's connections to be
+     * released. Nothing was sent, so callers shouldn't count it as a failed
+     * transfer.
+     */
+    class HostBusyException extends SocketTimeoutException {
+        private static final long serialVersionUID = 1L;
+
+        public HostBusyException(String message) {
+            super(message);
+        }
+    }
+
+    /** May block until the host has a free connection; throws HostBusyException if none frees up. */
+    HttpURLConnection open(String url) throws IOException;
+
+    int execute(HttpURLConnection connection) throws IOException;
+
+    void release(HttpURLConnection connection, boolean reusable);
+
+    /** Applies settings from configureTransport(); values <= 0 are left unchanged. */
+    void configure(int connectTimeoutMs, int readTimeoutMs, int maxConnectionsPerHost);
+
+    /** Most connections open() hands out to one host at once; callers size their parallelism to it. */
+    default int maxConnectionsPerHost() {
+        return Integer.MAX_VALUE;
+    }
+
+    JSObject stats();
+}
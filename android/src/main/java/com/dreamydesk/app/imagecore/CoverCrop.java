@@ -0,0 +1,89 @@
+package com.dreamydesk.app.imagecore;
+
+/**
+ * Cover + centre-crop geometry ("background-size: cover"), expressed in
+ * SOURCE pixels, so the decoder can be asked for just the visible region
+ * instead of decoding everything and cropping afterwards.
+ *
+ * Same math as WallpaperPlugin.resizeBitmapCoverCrop: scale the
+ * source uniformly until it covers the target, then trim the overflow
+ * symmetrically. Here that trimmed window is mapped back through the scale
+ * factor to a rectangle of the original image.
+ */
+public final class CoverCrop {
+
+    /** Visible window of the source image, in source pixels. */
+    public final int left;
+    public final int top;
+    public final int width;
+    public final int height;
+
+    /** Size of the finished bitmap (equals the target, barring rounding on tiny sources). */
+    public final int outputWidth;
+    public final int outputHeight;
+
+    /** Source → output scale factor (the "cover" scale). */
+    public final float scale;
+
+    /** The whole source scaled to cover the target, and the crop's offset inside it. */
+    public final int scaledWidth;
+    public final int scaledHeight;
+    public final int scaledLeft;
+    public final int scaledTop;
+
+    private CoverCrop(int left, int top, int width, int height,
+                      int outputWidth, int outputHeight, float scale,
+                      int scaledWidth, int scaledHeight, int scaledLeft, int scaledTop) {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.scale = scale;
+        this.scaledWidth = scaledWidth;
+        this.scaledHeight = scaledHeight;
+        this.scaledLeft = scaledLeft;
+        this.scaledTop = scaledTop;
+    }
+
+    public static CoverCrop compute(int srcW, int srcH, int targetW, int targetH) {
+        float scale = Math.max((float) targetW / srcW, (float) targetH / srcH);
+
+        int scaledW = Math.round(srcW * scale);
+        int scaledH = Math.round(srcH * scale);
+
+        // Crop window in scaled space — identical to the full-bitmap path
+        int cropX = Math.max(0, (scaledW - targetW) / 2);
+        int cropY = Math.max(0, (scaledH - targetH) / 2);
+        int cropW = Math.min(targetW, scaledW);
+        int cropH = Math.min(targetH, scaledH);
+
+        // ...and back into source pixels
+        int left = Math.min(srcW - 1, Math.round(cropX / scale));
+        int top = Math.min(srcH - 1, Math.round(cropY / scale));
+        int width = Math.max(1, Math.min(srcW - left, Math.round(cropW / scale)));
+        int height = Math.max(1, Math.min(srcH - top, Math.round(cropH / scale)));
+
+        return new CoverCrop(left, top, width, height, cropW, cropH, scale,
+                scaledW, scaledH, cropX, cropY);
+    }
+
+    /**
+     * Largest power-of-two subsample that still leaves the region at least
+     * as big as the output, so the final rescale only ever shrinks.
+     */
+    public int sampleSize() {
+        int sample = 1;
+        while (width / (sample * 2) >= outputWidth && height / (sample * 2) >= outputHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    @Override
+    public String toString() {
+        return "region=(" + left + "," + top + " " + width + "x" + height + ")" +
+               " scale=" + scale + " output=" + outputWidth + "x" + outputHeight;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dreamydesk.app.imagecore;
+
+/** PixelBuffer over an {@code int[]} with row stride equal to the width. */
+public final class IntPixelBuffer implements PixelBuffer {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public IntPixelBuffer(int width, int height) {
+        this(width, height, new int[checkedArea(width, height)]);
+    }
+
+    public IntPixelBuffer(int width, int height, int[] pixels) {
+        if (pixels.length < checkedArea(width, height)) {
+            throw new IllegalArgumentException("Buffer has " + pixels.length + " pixels, need " + width * height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /** The backing array, not a copy. */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+        checkBounds(x, y, w, h);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(pixels, (y + row) * width + x, dst, offset + row * stride, w);
+        }
+    }
+
+    @Override
+    public void setPixels(int[] src, int offset, int stride, int x, int y, int w, int h) {
+        checkBounds(x, y, w, h);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(src, offset + row * stride, pixels, (y + row) * width + x, w);
+        }
+    }
+
+    private void checkBounds(int x, int y, int w, int h) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Rect (" + x + "," + y + " " + w + "x" + h + ")" +
+                    " outside " + width + "x" + height);
+        }
+    }
+
+    private static int checkedArea(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Bad size: " + width + "x" + height);
+        }
+        return width * height;
+    }
+}
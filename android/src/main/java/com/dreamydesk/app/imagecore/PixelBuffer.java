@@ -0,0 +1,25 @@
+package com.dreamydesk.app.imagecore;
+
+/**
+ * A rectangle of packed ARGB pixels (one int per pixel, 0xAARRGGBB), the
+ * only thing the image core needs from a bitmap.
+ *
+ * The signatures follow android.graphics.Bitmap.getPixels / setPixels, so
+ * the app-side adapter (BitmapPixels) is a straight pass-through, while
+ * IntPixelBuffer backs the same interface with a plain array for use on a
+ * desktop JVM.
+ *
+ * Nothing in this package may import android.*.
+ */
+public interface PixelBuffer {
+
+    int width();
+
+    int height();
+
+    /** Copies the {@code w x h} rectangle at ({@code x}, {@code y}) into {@code dst}. */
+    void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h);
+
+    /** Writes {@code src} into the {@code w x h} rectangle at ({@code x}, {@code y}). */
+    void setPixels(int[] src, int offset, int stride, int x, int y, int w, int h);
+}
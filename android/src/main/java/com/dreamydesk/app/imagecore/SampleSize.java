@@ -0,0 +1,36 @@
+package com.dreamydesk.app.imagecore;
+
+/**
+ * Power-of-two subsampling for BitmapFactory.Options.inSampleSize, as a
+ * pure function of the sizes (formerly inlined in
+ * WallpaperPlugin.calculateInSampleSize).
+ */
+public final class SampleSize {
+
+    private SampleSize() {}
+
+    /**
+     * Largest power of two that keeps a {@code srcW x srcH} image at or
+     * above {@code reqW x reqH} in both dimensions once subsampled.
+     */
+    public static int forTarget(int srcW, int srcH, int reqW, int reqH) {
+        int inSampleSize = 1;
+
+        if (srcH > reqH || srcW > reqW) {
+            int halfHeight = srcH / 2;
+            int halfWidth  = srcW / 2;
+
+            // Keep halving until the result would be smaller than the target
+            while ((halfHeight / inSampleSize) >= reqH
+                    && (halfWidth  / inSampleSize) >= reqW) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    /** Decoded size of one dimension at {@code sampleSize} (decoders round up). */
+    public static int sampledSize(int size, int sampleSize) {
+        return (size + sampleSize - 1) / sampleSize;
+    }
+}
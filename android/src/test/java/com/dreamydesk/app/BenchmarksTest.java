@@ -0,0 +1,32 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this source set, skipped unless Gradle is
+ * given -Pbenchmark (all of them) or -Pbenchmark=regex (matching ones):
+ *
+ *   ./gradlew :capacitor-wallpaper-plugin:testDebugUnitTest --tests '*BenchmarksTest' -Pbenchmark=Resampler
+ *
+ * Benchmarks run inside the test JVM rather than in forked ones, since the
+ * unit test classpath isn't a plain java.class.path; results are a little
+ * noisier than a forked run but fine for comparing changes on one machine.
+ */
+public class BenchmarksTest {
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        String filter = System.getProperty("benchmark");
+        assumeTrue("Benchmarks run with -Pbenchmark", filter != null);
+
+        new Runner(new OptionsBuilder()
+                .include(filter.isEmpty() || filter.equals("true") ? "com\\.dreamydesk\\.app\\..*Benchmark\\." : filter)
+                .forks(0)
+                .build()).run();
+    }
+}
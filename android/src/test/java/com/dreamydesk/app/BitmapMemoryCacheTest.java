@@ -0,0 +1,91 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/** BitmapMemoryCache keys: a rewritten file:// image must not hit the old decode. */
+public class BitmapMemoryCacheTest {
+
+    private File dir;
+    private File file;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bitmap-memory-cache").toFile();
+        file = new File(dir, "wallpaper.jpg");
+        Files.write(file.toPath(), new byte[1000]);
+        assertTrue(file.setLastModified(1_600_000_000_000L));
+        url = "file://" + file.getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    private String key() {
+        return BitmapMemoryCache.keyFor(url, 1080, 2400, 1f);
+    }
+
+    @Test
+    public void unchangedFileKeepsItsKey() {
+        assertEquals(key(), key());
+    }
+
+    @Test
+    public void newMtimeChangesTheKey() {
+        String before = key();
+        assertTrue(file.setLastModified(1_600_000_060_000L));
+        assertNotEquals(before, key());
+    }
+
+    @Test
+    public void newSizeChangesTheKey() throws IOException {
+        String before = key();
+        long mtime = file.lastModified();
+        Files.write(file.toPath(), new byte[2000]);
+        // Same mtime, e.g. rewritten within the filesystem's timestamp granularity
+        assertTrue(file.setLastModified(mtime));
+        assertNotEquals(before, key());
+    }
+
+    @Test
+    public void escapedFileUrlIsKeyedByTheFileItNames() throws IOException {
+        File spaced = new File(dir, "my wallpaper.jpg");
+        Files.write(spaced.toPath(), new byte[10]);
+        try {
+            String escaped = "file://" + dir.getAbsolutePath() + "/my%20wallpaper.jpg";
+            String before = BitmapMemoryCache.keyFor(escaped, 1080, 2400, 1f);
+            Files.write(spaced.toPath(), new byte[20]);
+            assertNotEquals(before, BitmapMemoryCache.keyFor(escaped, 1080, 2400, 1f));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            spaced.delete();
+        }
+    }
+
+    @Test
+    public void targetGeometryIsPartOfTheKey() {
+        assertNotEquals(key(), BitmapMemoryCache.keyFor(url, 1080, 2400, 1.2f));
+        assertNotEquals(key(), BitmapMemoryCache.keyFor(url, 1440, 3200, 1f));
+    }
+
+    @Test
+    public void httpKeyDoesNotLookAtTheFilesystem() {
+        assertEquals("https://example.com/a.jpg|1080x2400@1.0",
+                BitmapMemoryCache.keyFor("https://example.com/a.jpg", 1080, 2400, 1f));
+    }
+}
@@ -0,0 +1,139 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/** CanvasPath against a fake surface whose hardware locks are scripted per frame. */
+public class CanvasPathTest {
+
+    /** Queue marker for a null lock (ArrayDeque takes no nulls). */
+    private static final Object NULL = new Object();
+
+    /** Hands out "hw" / "sw" canvases; queued outcomes override the next hardware locks. */
+    private static final class FakeSurface implements CanvasPath.Surface<String> {
+        final Queue<Object> hardwareOutcomes = new ArrayDeque<>();
+        int hardwareLocks;
+        int softwareLocks;
+
+        @Override
+        public String lockHardware() {
+            hardwareLocks++;
+            Object outcome = hardwareOutcomes.isEmpty() ? "hw" : hardwareOutcomes.remove();
+            if (outcome == NULL) return null;
+            if (outcome instanceof RuntimeException) throw (RuntimeException) outcome;
+            return (String) outcome;
+        }
+
+        @Override
+        public String lockSoftware() {
+            softwareLocks++;
+            return "sw";
+        }
+    }
+
+    private final FakeSurface surface = new FakeSurface();
+    private final List<RuntimeException> fallbacks = new ArrayList<>();
+
+    private CanvasPath<String> path(boolean hardware, boolean drawableAfterFallback) {
+        return new CanvasPath<>(surface, hardware, cause -> {
+            fallbacks.add(cause);
+            return drawableAfterFallback;
+        });
+    }
+
+    @Test
+    public void nullHardwareLockSkipsTheFrameAndStaysOnHardware() {
+        CanvasPath<String> path = path(true, true);
+        surface.hardwareOutcomes.add(NULL);
+
+        assertNull(path.lock());
+        assertTrue(path.isHardware());
+        assertEquals(0, surface.softwareLocks);
+
+        // Surface ready again
+        assertEquals("hw", path.lock());
+        assertTrue(fallbacks.isEmpty());
+    }
+
+    @Test
+    public void releasedSurfaceSkipsTheFrameAndStaysOnHardware() {
+        CanvasPath<String> path = path(true, true);
+        surface.hardwareOutcomes.add(new IllegalStateException("Surface has been released"));
+
+        assertNull(path.lock());
+        assertTrue(path.isHardware());
+        assertEquals(0, surface.softwareLocks);
+
+        assertEquals("hw", path.lock());
+        assertTrue(fallbacks.isEmpty());
+    }
+
+    @Test
+    public void unsupportedHardwareFallsBackForGood() {
+        CanvasPath<String> path = path(true, true);
+        UnsupportedOperationException cause = new UnsupportedOperationException();
+        surface.hardwareOutcomes.add(cause);
+
+        // Same frame still gets drawn, in software
+        assertEquals("sw", path.lock());
+        assertFalse(path.isHardware());
+        assertEquals(1, fallbacks.size());
+        assertEquals(cause, fallbacks.get(0));
+
+        assertEquals("sw", path.lock());
+        assertEquals("sw", path.lock());
+        assertEquals(1, surface.hardwareLocks);
+        assertEquals(1, fallbacks.size());
+    }
+
+    @Test
+    public void illegalArgumentFallsBackForGood() {
+        CanvasPath<String> path = path(true, true);
+        surface.hardwareOutcomes.add(new IllegalArgumentException());
+
+        assertEquals("sw", path.lock());
+        assertFalse(path.isHardware());
+        assertEquals("sw", path.lock());
+        assertEquals(1, surface.hardwareLocks);
+    }
+
+    @Test
+    public void fallbackThatLostTheImageSkipsOneFrame() {
+        CanvasPath<String> path = path(true, false);
+        surface.hardwareOutcomes.add(new UnsupportedOperationException());
+
+        // Nothing to draw until the reload lands; don't lock for an empty frame
+        assertNull(path.lock());
+        assertEquals(0, surface.softwareLocks);
+        assertFalse(path.isHardware());
+
+        assertEquals("sw", path.lock());
+        assertEquals(1, fallbacks.size());
+    }
+
+    @Test
+    public void softwarePathNeverTouchesTheHardwareCanvas() {
+        CanvasPath<String> path = path(false, true);
+
+        assertEquals("sw", path.lock());
+        assertEquals("sw", path.lock());
+        assertEquals(0, surface.hardwareLocks);
+        assertTrue(fallbacks.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void otherFailuresAreNotMistakenForUnsupported() {
+        CanvasPath<String> path = path(true, true);
+        surface.hardwareOutcomes.add(new NullPointerException());
+        path.lock();
+    }
+}
@@ -0,0 +1,241 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * ImageFetcher against a local server, counting requests: one GET per set
+ * call however many times the decode passes read the body, with and
+ * without the disk cache. file:// URLs run against a transport that fails
+ * any open(), so touching the network at all is a failure.
+ */
+public class ImageFetcherTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    /** Any attempt to use the network fails the test. */
+    private static final WallpaperTransport NO_NETWORK = new WallpaperTransport() {
+        @Override
+        public HttpURLConnection open(String url) {
+            throw new AssertionError("Network opened for " + url);
+        }
+
+        @Override
+        public int execute(HttpURLConnection connection) {
+            throw new AssertionError("Network used");
+        }
+
+        @Override
+        public void release(HttpURLConnection connection, boolean reusable) {
+            throw new AssertionError("Network used");
+        }
+
+        @Override
+        public void configure(int connectTimeoutMs, int readTimeoutMs, int maxConnectionsPerHost) {
+        }
+
+        @Override
+        public JSObject stats() {
+            return null;
+        }
+    };
+
+    private LocalHttpServer server;
+    private String url;
+    private PooledHttpTransport transport;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalHttpServer(randomBytes(300_000));
+        server.etag = ETAG;
+        url = server.url("/wallpaper.jpg");
+        transport = new PooledHttpTransport();
+        dir = Files.createTempDirectory("image-fetcher").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        delete(dir);
+    }
+
+    private ImageFetcher fetcher(WallpaperDiskCache diskCache) {
+        return new ImageFetcher(transport, diskCache, null, dir);
+    }
+
+    private WallpaperDiskCache cache(long maxBytes, boolean offline) {
+        return new WallpaperDiskCache(dir, maxBytes, offline);
+    }
+
+    @Test
+    public void uncachedFetchIsOneGetForBothDecodePasses() throws IOException {
+        assertOneGetPerFetch(cache(0, false));
+    }
+
+    @Test
+    public void uncachedBodyOverTheSpoolThresholdIsStillOneGet() throws IOException {
+        server.body = randomBytes(ImageSource.MEMORY_THRESHOLD + 100_000);
+
+        try (ImageSource source = fetcher(cache(0, false)).fetch(url, ProgressReporter.silent(url))) {
+            assertTrue(source.isSpilledToDisk());
+            assertArrayEquals(server.body, readAll(source));
+            assertArrayEquals(server.body, readAll(source));
+        }
+        assertEquals(1, server.requests.size());
+    }
+
+    @Test
+    public void cachedFetchIsOneGetForBothDecodePasses() throws IOException {
+        assertOneGetPerFetch(cache(WallpaperDiskCache.DEFAULT_MAX_BYTES, false));
+    }
+
+    @Test
+    public void repeatFetchRevalidatesWithOneConditionalGet() throws IOException {
+        WallpaperDiskCache diskCache = cache(WallpaperDiskCache.DEFAULT_MAX_BYTES, false);
+
+        fetchAndReadTwice(diskCache);
+        fetchAndReadTwice(diskCache);
+
+        assertEquals(2, server.requests.size());
+        assertNull(LocalHttpServer.header(server.requests.get(0), "if-none-match"));
+        assertEquals(ETAG, LocalHttpServer.header(server.requests.get(1), "if-none-match"));
+    }
+
+    @Test
+    public void offlineCacheHitSendsNoRequest() throws IOException {
+        fetchAndReadTwice(cache(WallpaperDiskCache.DEFAULT_MAX_BYTES, false));
+        assertEquals(1, server.requests.size());
+
+        fetchAndReadTwice(cache(WallpaperDiskCache.DEFAULT_MAX_BYTES, true));
+
+        assertEquals(1, server.requests.size());
+    }
+
+    @Test
+    public void fileUrlIsReadInPlaceWithoutTheNetwork() throws IOException {
+        byte[] body = randomBytes(ImageSource.MEMORY_THRESHOLD + 1);
+        File file = new File(dir, "wallpaper.jpg");
+        Files.write(file.toPath(), body);
+        String fileUrl = "file://" + file.getAbsolutePath();
+
+        for (boolean cacheEnabled : new boolean[] {true, false}) {
+            WallpaperDiskCache diskCache = cache(cacheEnabled ? WallpaperDiskCache.DEFAULT_MAX_BYTES : 0, false);
+            ImageFetcher fetcher = new ImageFetcher(NO_NETWORK, diskCache, null, dir);
+            try (ImageSource source = fetcher.fetch(fileUrl, ProgressReporter.silent(fileUrl))) {
+                // Read where it is: not copied into the cache, not spooled
+                assertFalse(source.isSpilledToDisk());
+                assertEquals(body.length, source.length());
+                assertArrayEquals(body, readAll(source));
+                assertArrayEquals(body, readAll(source));
+            }
+            assertEquals(0, diskCache.entryCount());
+        }
+        assertEquals(0, spoolFiles().length);
+        assertArrayEquals(body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void fileUrlIsReadOfflineWithAnEmptyCache() throws IOException {
+        File file = new File(dir, "offline.png");
+        Files.write(file.toPath(), randomBytes(1000));
+        String fileUrl = "file://" + file.getAbsolutePath();
+
+        ImageFetcher fetcher = new ImageFetcher(NO_NETWORK, cache(WallpaperDiskCache.DEFAULT_MAX_BYTES, true), null, dir);
+        try (ImageSource source = fetcher.fetch(fileUrl, ProgressReporter.silent(fileUrl))) {
+            assertEquals(1000, source.length());
+        }
+    }
+
+    @Test
+    public void missingFileFailsWithoutFallingBackToTheNetwork() {
+        String fileUrl = "file://" + new File(dir, "gone.jpg").getAbsolutePath();
+        ImageFetcher fetcher = new ImageFetcher(NO_NETWORK, cache(0, false), null, dir);
+        try {
+            fetcher.fetch(fileUrl, ProgressReporter.silent(fileUrl)).close();
+            fail("Opened a missing file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Local file not readable"));
+        }
+    }
+
+    @Test
+    public void localFileDecodesLikeUriGetPath() {
+        assertEquals(new File("/sdcard/Pictures/a.jpg"), ImageFetcher.localFile("file:///sdcard/Pictures/a.jpg"));
+        assertEquals(new File("/sdcard/my wallpaper.jpg"), ImageFetcher.localFile("file:///sdcard/my%20wallpaper.jpg"));
+        assertEquals(new File("/sdcard/caf\u00e9.jpg"), ImageFetcher.localFile("file:///sdcard/caf%C3%A9.jpg"));
+        assertEquals(new File("/sdcard/100%.jpg"), ImageFetcher.localFile("file:///sdcard/100%.jpg"));
+        assertEquals(new File("/sdcard/a.jpg"), ImageFetcher.localFile("file:///sdcard/a.jpg?v=2#top"));
+        assertEquals(new File("/sdcard/a.jpg"), ImageFetcher.localFile("file://localhost/sdcard/a.jpg"));
+    }
+
+    private void assertOneGetPerFetch(WallpaperDiskCache diskCache) throws IOException {
+        for (int call = 1; call <= 3; call++) {
+            fetchAndReadTwice(diskCache);
+            assertEquals("after " + call + " set calls", call, server.requests.size());
+        }
+        for (String head : server.requests) {
+            assertTrue(head, head.startsWith("GET "));
+        }
+    }
+
+    /** One set call: fetch once, then the bounds pass and the decode pass both read the body. */
+    private void fetchAndReadTwice(WallpaperDiskCache diskCache) throws IOException {
+        try (ImageSource source = fetcher(diskCache).fetch(url, ProgressReporter.silent(url))) {
+            assertArrayEquals(server.body, readAll(source));
+            assertArrayEquals(server.body, readAll(source));
+        }
+    }
+
+    private File[] spoolFiles() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".spool"));
+        return files != null ? files : new File[0];
+    }
+
+    private static byte[] readAll(ImageSource source) throws IOException {
+        try (InputStream in = source.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
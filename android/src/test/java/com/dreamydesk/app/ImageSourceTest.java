@@ -0,0 +1,176 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/** ImageSource's spool: memory versus disk, re-reading, and cleaning up after itself. */
+public class ImageSourceTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("image-source").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    @Test
+    public void smallBodyStaysInMemory() throws IOException {
+        byte[] body = randomBytes(200_000);
+        try (ImageSource source = ImageSource.spool(new ByteArrayInputStream(body), dir)) {
+            assertFalse(source.isSpilledToDisk());
+            assertEquals(body.length, source.length());
+            assertEquals(0, spoolFiles().length);
+            assertArrayEquals(body, readAll(source));
+        }
+    }
+
+    @Test
+    public void bodyOfExactlyTheThresholdStaysInMemory() throws IOException {
+        byte[] body = randomBytes(ImageSource.MEMORY_THRESHOLD);
+        try (ImageSource source = ImageSource.spool(new ByteArrayInputStream(body), dir)) {
+            assertFalse(source.isSpilledToDisk());
+            assertEquals(0, spoolFiles().length);
+        }
+    }
+
+    @Test
+    public void bodyOverTheThresholdSpillsToDisk() throws IOException {
+        byte[] body = randomBytes(ImageSource.MEMORY_THRESHOLD + 1);
+        try (ImageSource source = ImageSource.spool(new ByteArrayInputStream(body), dir)) {
+            assertTrue(source.isSpilledToDisk());
+            assertEquals(body.length, source.length());
+            File[] spooled = spoolFiles();
+            assertEquals(1, spooled.length);
+            assertEquals(body.length, spooled[0].length());
+            assertArrayEquals(body, readAll(source));
+        }
+    }
+
+    @Test
+    public void everyOpenStreamReadsTheSameBytesInMemory() throws IOException {
+        assertRereadable(randomBytes(300_000));
+    }
+
+    @Test
+    public void everyOpenStreamReadsTheSameBytesOnDisk() throws IOException {
+        assertRereadable(randomBytes(ImageSource.MEMORY_THRESHOLD + 300_000));
+    }
+
+    @Test
+    public void streamsOpenedTogetherDontShareAPosition() throws IOException {
+        byte[] body = randomBytes(ImageSource.MEMORY_THRESHOLD + 1024);
+        try (ImageSource source = ImageSource.spool(new ByteArrayInputStream(body), dir);
+             InputStream bounds = source.openStream();
+             InputStream decode = source.openStream()) {
+            // A bounds pass that stops after the header, then a full decode
+            byte[] header = new byte[64];
+            assertEquals(header.length, bounds.read(header));
+            assertArrayEquals(body, readFully(decode));
+            assertEquals(body[64] & 0xff, bounds.read());
+        }
+    }
+
+    @Test
+    public void closeDeletesTheSpillFile() throws IOException {
+        ImageSource source = ImageSource.spool(
+                new ByteArrayInputStream(randomBytes(ImageSource.MEMORY_THRESHOLD + 1)), dir);
+        File spooled = spoolFiles()[0];
+
+        source.close();
+
+        assertFalse(spooled.exists());
+        assertEquals(0, spoolFiles().length);
+    }
+
+    @Test
+    public void fromFileRereadsAndLeavesTheFileOnClose() throws IOException {
+        byte[] body = randomBytes(500_000);
+        File file = new File(dir, "cached.data");
+        Files.write(file.toPath(), body);
+
+        ImageSource source = ImageSource.fromFile(file);
+        assertFalse(source.isSpilledToDisk());
+        assertEquals(body.length, source.length());
+        assertArrayEquals(body, readAll(source));
+        assertArrayEquals(body, readAll(source));
+        source.close();
+
+        assertTrue(file.exists());
+        assertEquals(body.length, file.length());
+    }
+
+    @Test
+    public void fromFileKeepsReadingAfterTheFileIsDeleted() throws IOException {
+        byte[] body = randomBytes(100_000);
+        File file = new File(dir, "evicted.data");
+        Files.write(file.toPath(), body);
+
+        try (ImageSource source = ImageSource.fromFile(file)) {
+            // An eviction between the bounds pass and the decode
+            assertTrue(file.delete());
+            assertArrayEquals(body, readAll(source));
+        }
+    }
+
+    private void assertRereadable(byte[] body) throws IOException {
+        try (ImageSource source = ImageSource.spool(new ByteArrayInputStream(body), dir)) {
+            for (int pass = 0; pass < 3; pass++) {
+                assertArrayEquals("pass " + pass, body, readAll(source));
+            }
+        }
+    }
+
+    private File[] spoolFiles() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".spool"));
+        return files != null ? files : new File[0];
+    }
+
+    private static byte[] readAll(ImageSource source) throws IOException {
+        try (InputStream in = source.openStream()) {
+            return readFully(in);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
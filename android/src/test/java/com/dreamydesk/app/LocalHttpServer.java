@@ -0,0 +1,174 @@
+package com.dreamydesk.app;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal keep-alive HTTP/1.1 server on the loopback interface for
+ * transport and download tests: answers every GET with the current body
+ * and records the client port and head of each request, so a test can
+ * tell a reused socket from a new one and see what was asked for. A
+ * request sent with "Connection: close" gets its socket closed after the
+ * response. (com.sun.net.httpserver isn't on the unit test compile
+ * classpath, which is android.jar.)
+ *
+ * With an etag set, responses carry it and "Range: bytes=a-b" / "bytes=a-"
+ * is answered with 206 unless an If-Range names a different validator,
+ * which gets the full body as a 200. dropNext(n, afterBytes) cuts the next
+ * n bodies longer than afterBytes off mid-way by closing the socket, like
+ * a dropped mobile connection.
+ */
+final class LocalHttpServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final AtomicInteger drops = new AtomicInteger();
+    private volatile int dropAfterBytes;
+    volatile byte[] body;
+    /** Sent as ETag, and enables Range handling; null for a plain 200 server. */
+    volatile String etag;
+
+    /** Client port of each request, in arrival order. */
+    final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    /** Request line and headers of each request, in arrival order. */
+    final List<String> requests = new CopyOnWriteArrayList<>();
+
+    LocalHttpServer(byte[] body) throws IOException {
+        this.body = body;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        threads.execute(this::acceptLoop);
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    /** Cuts the next {@code count} response bodies longer than {@code afterBytes} off after that many bytes. */
+    void dropNext(int count, int afterBytes) {
+        dropAfterBytes = afterBytes;
+        drops.set(count);
+    }
+
+    /** Value of a request header (name in lower case), or null. */
+    static String header(String head, String name) {
+        for (String line : head.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                threads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return; // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            // Head and body go out in one write; Nagle plus delayed ACKs would
+            // otherwise add ~40ms to every small response
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            String head;
+            while ((head = readRequestHead(in)) != null) {
+                clientPorts.add(s.getPort());
+                requests.add(head);
+                boolean close = "close".equalsIgnoreCase(header(head, "connection"));
+                byte[] body = this.body;
+                String etag = this.etag;
+
+                String status = "200 OK";
+                String contentRange = null;
+                int from = 0;
+                int to = body.length - 1;
+                String range = header(head, "range");
+                String ifRange = header(head, "if-range");
+                if (etag != null && range != null && range.startsWith("bytes=")
+                        && (ifRange == null || ifRange.equals(etag))) {
+                    String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                    from = Integer.parseInt(bounds[0]);
+                    if (!bounds[1].isEmpty()) to = Math.min(to, Integer.parseInt(bounds[1]));
+                    if (from > to) {
+                        status = "416 Range Not Satisfiable";
+                        contentRange = "bytes */" + body.length;
+                        from = 0;
+                        to = -1;
+                    } else {
+                        status = "206 Partial Content";
+                        contentRange = "bytes " + from + "-" + to + "/" + body.length;
+                    }
+                }
+                int length = to - from + 1;
+
+                byte[] responseHead = ("HTTP/1.1 " + status + "\r\n" +
+                        "Content-Type: application/octet-stream\r\n" +
+                        "Content-Length: " + length + "\r\n" +
+                        (contentRange != null ? "Content-Range: " + contentRange + "\r\n" : "") +
+                        (etag != null ? "ETag: " + etag + "\r\n" : "") +
+                        (close ? "Connection: close\r\n" : "") +
+                        "\r\n").getBytes(StandardCharsets.US_ASCII);
+                int sent = length;
+                boolean drop = length > dropAfterBytes && drops.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+                if (drop) sent = dropAfterBytes;
+                byte[] response = Arrays.copyOf(responseHead, responseHead.length + sent);
+                System.arraycopy(body, from, response, responseHead.length, sent);
+                out.write(response);
+                out.flush();
+                if (close || drop) return;
+            }
+        } catch (IOException ignored) {
+            // client went away
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    /** Reads a request's line and headers, up to the blank line; null at EOF. */
+    private static String readRequestHead(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            head.append((char) b);
+            int n = head.length();
+            if (n >= 4 && head.charAt(n - 4) == '\r' && head.charAt(n - 3) == '\n'
+                    && head.charAt(n - 2) == '\r' && head.charAt(n - 1) == '\n') {
+                return head.toString();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        threads.shutdownNow();
+    }
+}
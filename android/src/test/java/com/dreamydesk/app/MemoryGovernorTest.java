@@ -0,0 +1,91 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * MemoryGovernor's estimates for the pre-API 28 decoders: the cover region
+ * where a region decoder is certain, the whole sampled frame where the
+ * decode may fall back to it.
+ */
+public class MemoryGovernorTest {
+
+    private static final int SCREEN_W = 1080;
+    private static final int SCREEN_H = 2400;
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    // A landscape photo on a portrait screen: the cover region is a narrow strip
+    private static final int SRC_W = 4000;
+    private static final int SRC_H = 3000;
+
+    private static MemoryGovernor.Plan plan(String mimeType, long budget) {
+        return MemoryGovernor.plan(SRC_W, SRC_H, mimeType, SCREEN_W, SCREEN_H, 1.0f, false, budget);
+    }
+
+    @Test
+    public void jpegPlansForTheCoverRegion() {
+        MemoryGovernor.Plan plan = plan("image/jpeg", UNLIMITED);
+
+        long output = (long) SCREEN_W * SCREEN_H * 4;
+        // Region 1350x3000 at sample 1, plus the output and the caller's copy
+        assertEquals(1350L * 3000 * 4 + 2 * output, plan.estimatedPeakBytes);
+    }
+
+    @Test
+    public void gifPlansForTheWholeFrame() {
+        MemoryGovernor.Plan plan = plan("image/gif", UNLIMITED);
+
+        long output = (long) SCREEN_W * SCREEN_H * 4;
+        assertEquals((long) SRC_W * SRC_H * 4 + 2 * output, plan.estimatedPeakBytes);
+    }
+
+    @Test
+    public void pngAndUnknownFormatsPlanForTheWholeFrame() {
+        long gif = plan("image/gif", UNLIMITED).estimatedPeakBytes;
+        assertEquals(gif, plan("image/png", UNLIMITED).estimatedPeakBytes);
+        assertEquals(gif, plan(null, UNLIMITED).estimatedPeakBytes);
+    }
+
+    @Test
+    public void budgetThatOnlyFitsTheRegionDegradesAGif() {
+        long budget = plan("image/jpeg", UNLIMITED).estimatedPeakBytes;
+
+        assertEquals(MemoryGovernor.LEVEL_FULL, plan("image/jpeg", budget).level);
+        MemoryGovernor.Plan gif = plan("image/gif", budget);
+        assertNotEquals(MemoryGovernor.LEVEL_FULL, gif.level);
+        assertTrue(gif.toString(), gif.estimatedPeakBytes <= budget);
+    }
+
+    @Test
+    public void fullFrameUsesTheDecodersSampleSize() {
+        // Both the 2700x6000 region and the 8000x6000 frame sample by 2
+        MemoryGovernor.Plan plan = MemoryGovernor.plan(8000, 6000, "image/gif",
+                SCREEN_W, SCREEN_H, 1.0f, false, UNLIMITED);
+
+        long output = (long) SCREEN_W * SCREEN_H * 4;
+        assertEquals(4000L * 3000 * 4 + 2 * output, plan.estimatedPeakBytes);
+    }
+
+    @Test
+    public void exactDecodeHasNoIntermediateWhateverTheFormat() {
+        long output = (long) SCREEN_W * SCREEN_H * 4;
+        for (String mimeType : new String[] {"image/jpeg", "image/gif", null}) {
+            MemoryGovernor.Plan plan = MemoryGovernor.plan(SRC_W, SRC_H, mimeType,
+                    SCREEN_W, SCREEN_H, 1.0f, true, UNLIMITED);
+            assertEquals(mimeType, 2 * output, plan.estimatedPeakBytes);
+        }
+    }
+
+    @Test
+    public void onlyJpegAndWebpHaveACertainRegionDecoder() {
+        assertTrue(MemoryGovernor.hasRegionDecoder("image/jpeg"));
+        assertTrue(MemoryGovernor.hasRegionDecoder("image/webp"));
+        assertFalse(MemoryGovernor.hasRegionDecoder("image/png"));
+        assertFalse(MemoryGovernor.hasRegionDecoder("image/gif"));
+        assertFalse(MemoryGovernor.hasRegionDecoder(null));
+    }
+}
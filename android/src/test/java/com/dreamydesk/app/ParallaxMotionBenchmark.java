@@ -0,0 +1,123 @@
+package com.dreamydesk.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame's pan/perspective/breathing update: ParallaxMotion.step versus
+ * the step draw() ran before it was cached (Math.pow for the damping and
+ * the breathing sqrt on every frame). "still" holds zero tilt, "tilting"
+ * sweeps it back and forth. Run with -prof gc to see the allocation rate.
+ *
+ * The Camera/Matrix half of a frame is android.graphics and can't run
+ * here; the perspective cache saves that whenever the tilt angles repeat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallaxMotionBenchmark {
+
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Param({"still", "tilting"})
+    public String input;
+
+    private ParallaxMotion motion;
+    private PowSpringStep baseline;
+    private long now;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        motion = new ParallaxMotion();
+        motion.setSettings(30f, 0.2f, 1f, true, true);
+        motion.setPanRange(1200f, 400f);
+        baseline = new PowSpringStep(1200f, 400f);
+        now = 1_000_000_000L;
+    }
+
+    private float tilt() {
+        return "still".equals(input) ? 0f : ((frame % 240) - 120) / 120f;
+    }
+
+    @Benchmark
+    public float cachedStep() {
+        now += FRAME_NANOS;
+        frame++;
+        float tilt = tilt();
+        motion.step(now, 0.25f, tilt, -tilt);
+        return motion.panX() + motion.panY() + motion.scale() + motion.perspectiveX();
+    }
+
+    @Benchmark
+    public float powStep() {
+        now += FRAME_NANOS;
+        frame++;
+        float tilt = tilt();
+        return baseline.step(now, 0.25f, tilt, -tilt);
+    }
+
+    /** The pre-cache step, as draw() computed it: same physics, pow and sqrt every frame. */
+    static final class PowSpringStep {
+        private final float maxPanX, maxPanY;
+        private final float intensity = 30f;
+        private final float speed = 0.2f;
+        private final float depthStrength = 1f;
+        private float panX = -1f, panY = -1f;
+        private float velocityX, velocityY;
+        private long lastFrameNanos;
+
+        PowSpringStep(float maxPanX, float maxPanY) {
+            this.maxPanX = maxPanX;
+            this.maxPanY = maxPanY;
+        }
+
+        float step(long frameTimeNanos, float scrollX, float tiltX, float tiltY) {
+            if (lastFrameNanos == 0L) lastFrameNanos = frameTimeNanos;
+            float dt = clamp((frameTimeNanos - lastFrameNanos) / 1_000_000_000f, 1f / 240f, 1f / 20f);
+            lastFrameNanos = frameTimeNanos;
+
+            float combinedX = clamp(scrollX * 0.65f + tiltX * 0.75f, -1f, 1f);
+            float combinedY = clamp(tiltY, -1f, 1f);
+            float amplitudeFraction = intensity / 100f;
+            float targetPanX = clamp((maxPanX / 2f) + combinedX * (maxPanX / 2f) * amplitudeFraction, 0, maxPanX);
+            float targetPanY = clamp((maxPanY / 2f) + combinedY * (maxPanY / 2f) * amplitudeFraction, 0, maxPanY);
+            if (panX < 0) panX = targetPanX;
+            if (panY < 0) panY = targetPanY;
+
+            float desiredVelX = (targetPanX - panX) * speed * (dt * 60f);
+            float desiredVelY = (targetPanY - panY) * speed * (dt * 60f);
+            float maxAccel = Math.max(0.01f, speed) * ParallaxMotion.MAX_ACCEL_PER_FRAME
+                    * Math.max(1f, Math.max(maxPanX, maxPanY)) * (dt * 60f);
+            velocityX += clamp(desiredVelX - velocityX, -maxAccel, maxAccel);
+            velocityY += clamp(desiredVelY - velocityY, -maxAccel, maxAccel);
+            float damping = (float) Math.pow(ParallaxMotion.SPRING_DAMPING, dt * 60f);
+            velocityX *= damping;
+            velocityY *= damping;
+            panX = clamp(panX + velocityX, 0, maxPanX);
+            panY = clamp(panY + velocityY, 0, maxPanY);
+
+            float perspectiveDegrees = ParallaxMotion.MAX_PERSPECTIVE_DEGREES * depthStrength;
+            float perspectiveX = tiltX * amplitudeFraction * perspectiveDegrees;
+            float tiltMagnitude = clamp((float) Math.sqrt(tiltX * tiltX + tiltY * tiltY), 0f, 1f);
+            float breatheScale = 1f + tiltMagnitude * amplitudeFraction * 0.02f;
+            return panX + panY + breatheScale + perspectiveX;
+        }
+
+        private static float clamp(float v, float min, float max) {
+            return Math.max(min, Math.min(max, v));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+/** ParallaxMotion's spring, targets and settling, stepped at fixed frame rates. */
+public class ParallaxMotionTest {
+
+    private static final long FRAME_60HZ = 16_666_667L;
+    private static final float MAX_PAN_X = 800f;
+    private static final float MAX_PAN_Y = 300f;
+
+    private ParallaxMotion motion;
+    private long now;
+
+    @Before
+    public void setUp() {
+        motion = new ParallaxMotion();
+        motion.setSettings(100f, 0.2f, 1f, true, true);
+        motion.setPanRange(MAX_PAN_X, MAX_PAN_Y);
+        now = 1_000_000_000L;
+    }
+
+    /** Steps until settled; returns the number of frames it took, or -1. */
+    private int runUntilSettled(long frameNanos, float scroll, float tiltX, float tiltY, int maxFrames) {
+        for (int i = 1; i <= maxFrames; i++) {
+            now += frameNanos;
+            if (motion.step(now, scroll, tiltX, tiltY)) return i;
+        }
+        return -1;
+    }
+
+    @Test
+    public void startsCentredAndSettledWithoutInput() {
+        assertTrue(motion.step(now, 0f, 0f, 0f));
+        assertEquals(MAX_PAN_X / 2f, motion.panX(), 0f);
+        assertEquals(MAX_PAN_Y / 2f, motion.panY(), 0f);
+        assertEquals(1f, motion.scale(), 0f);
+        assertEquals(0f, motion.perspectiveX(), 0f);
+    }
+
+    @Test
+    public void fullTiltSettlesAtTheEdgeOfThePanRange() {
+        motion.step(now, 0f, 0f, 0f);
+
+        // Scroll and tilt together saturate X
+        int frames = runUntilSettled(FRAME_60HZ, 1f, 1f, 1f, 600);
+
+        assertTrue("not settled after 10s", frames > 1);
+        assertEquals(MAX_PAN_X, motion.panX(), ParallaxMotion.SETTLE_EPSILON_PX);
+        assertEquals(MAX_PAN_Y, motion.panY(), ParallaxMotion.SETTLE_EPSILON_PX);
+        assertEquals(1.02f, motion.scale(), 1e-6f);
+        assertEquals(ParallaxMotion.MAX_PERSPECTIVE_DEGREES, motion.perspectiveX(), 1e-6f);
+    }
+
+    @Test
+    public void intensityScalesTheTarget() {
+        motion.setSettings(50f, 0.2f, 1f, true, true);
+        motion.step(now, 0f, 0f, 0f);
+
+        assertTrue(runUntilSettled(FRAME_60HZ, 0f, 0f, -1f, 600) > 0);
+
+        // Half intensity: halfway from the centre to the top edge
+        assertEquals(MAX_PAN_X / 2f, motion.panX(), ParallaxMotion.SETTLE_EPSILON_PX);
+        assertEquals(MAX_PAN_Y / 4f, motion.panY(), ParallaxMotion.SETTLE_EPSILON_PX);
+    }
+
+    @Test
+    public void disabledSourcesDontMoveThePan() {
+        motion.setSettings(100f, 0.2f, 1f, false, false);
+        motion.step(now, 0f, 0f, 0f);
+
+        now += FRAME_60HZ;
+        assertTrue(motion.step(now, 1f, 1f, 1f));
+        assertEquals(MAX_PAN_X / 2f, motion.panX(), 0f);
+        assertEquals(MAX_PAN_Y / 2f, motion.panY(), 0f);
+    }
+
+    @Test
+    public void velocityRampsInsteadOfSnapping() {
+        motion.step(now, 0f, 0f, 0f);
+        float maxStep = Math.max(0.01f, 0.2f) * ParallaxMotion.MAX_ACCEL_PER_FRAME * MAX_PAN_X;
+
+        float previousX = motion.panX();
+        float previousStep = 0f;
+        for (int i = 0; i < 5; i++) {
+            now += FRAME_60HZ;
+            motion.step(now, 1f, 0f, 0f);
+            float step = motion.panX() - previousX;
+            // Each frame's velocity differs from the last by at most the acceleration cap
+            assertTrue("frame " + i + " jumped " + step, Math.abs(step - previousStep) <= maxStep + 1e-3f);
+            previousStep = step;
+            previousX = motion.panX();
+        }
+    }
+
+    @Test
+    public void panNeverLeavesTheImage() {
+        motion.setSettings(100f, 1f, 1f, true, true);
+        motion.step(now, 0f, 0f, 0f);
+        for (int i = 0; i < 300; i++) {
+            // Input flips every few frames at full speed
+            float input = (i / 7) % 2 == 0 ? 1f : -1f;
+            now += FRAME_60HZ;
+            motion.step(now, input, input, -input);
+            assertTrue(motion.panX() >= 0f && motion.panX() <= MAX_PAN_X);
+            assertTrue(motion.panY() >= 0f && motion.panY() <= MAX_PAN_Y);
+        }
+    }
+
+    @Test
+    public void refreshRateDoesNotChangeTheMotion() {
+        ParallaxMotion at60 = motion;
+        ParallaxMotion at120 = new ParallaxMotion();
+        at120.setSettings(100f, 0.2f, 1f, true, true);
+        at120.setPanRange(MAX_PAN_X, MAX_PAN_Y);
+        long t60 = now;
+        long t120 = now;
+        at60.step(t60, 0f, 0f, 0f);
+        at120.step(t120, 0f, 0f, 0f);
+
+        for (int frame = 1; frame <= 60; frame++) {
+            t60 += FRAME_60HZ;
+            at60.step(t60, 0f, 1f, 0f);
+            t120 += FRAME_60HZ / 2;
+            at120.step(t120, 0f, 1f, 0f);
+            t120 += FRAME_60HZ / 2;
+            at120.step(t120, 0f, 1f, 0f);
+
+            // Same wall time, same place give or take the per-frame discretisation
+            assertEquals("after " + frame + " frames", at60.panX(), at120.panX(), MAX_PAN_X * 0.05f);
+        }
+    }
+
+    @Test
+    public void resetRecentresOnTheNextPanRange() {
+        motion.step(now, 0f, 0f, 0f);
+        runUntilSettled(FRAME_60HZ, 0f, 1f, 0f, 600);
+
+        motion.reset();
+        motion.setPanRange(400f, 100f);
+        motion.restartClock();
+        now += 5_000_000_000L;
+
+        assertTrue(motion.step(now, 0f, 0f, 0f));
+        assertEquals(200f, motion.panX(), 0f);
+        assertEquals(50f, motion.panY(), 0f);
+    }
+
+    @Test
+    public void longPauseIsOneFrame() {
+        motion.step(now, 0f, 0f, 0f);
+        now += FRAME_60HZ;
+        motion.step(now, 0f, 1f, 0f);
+        float afterOneFrame = motion.panX();
+
+        ParallaxMotion paused = new ParallaxMotion();
+        paused.setSettings(100f, 0.2f, 1f, true, true);
+        paused.setPanRange(MAX_PAN_X, MAX_PAN_Y);
+        paused.step(now, 0f, 0f, 0f);
+        paused.restartClock();
+        paused.step(now + 60_000_000_000L, 0f, 0f, 0f);
+        paused.step(now + 60_000_000_000L + FRAME_60HZ, 0f, 1f, 0f);
+
+        assertEquals(afterOneFrame, paused.panX(), 1e-3f);
+    }
+
+    @Test
+    public void steadyStateStepAllocatesNothing() throws Exception {
+        // HotSpot's per-thread allocation counter; android.jar has no java.lang.management
+        Object threads;
+        Method allocatedBytes;
+        try {
+            threads = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+        } catch (ReflectiveOperationException e) {
+            threads = null;
+            allocatedBytes = null;
+        }
+        Assume.assumeTrue("no per-thread allocation counter on this JVM",
+                allocatedBytes != null && allocatedBytes.getDeclaringClass().isInstance(threads));
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up past the interpreter, then measure
+        float sink = stepMany(20_000);
+        long before = (Long) allocatedBytes.invoke(threads, threadId);
+        sink += stepMany(100_000);
+        long after = (Long) allocatedBytes.invoke(threads, threadId);
+
+        assertFalse(Float.isNaN(sink));
+        // The counter call itself boxes a Long or two
+        assertTrue("100000 steps allocated " + (after - before) + " bytes", after - before < 1024);
+    }
+
+    private float stepMany(int frames) {
+        float sink = 0f;
+        for (int i = 0; i < frames; i++) {
+            now += FRAME_60HZ;
+            float tilt = (i % 240) / 240f;
+            motion.step(now, 0f, tilt, -tilt);
+            sink += motion.panX() + motion.scale();
+        }
+        return sink;
+    }
+}
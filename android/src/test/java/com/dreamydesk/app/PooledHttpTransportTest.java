@@ -0,0 +1,124 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
+/** PooledHttpTransport against a local keep-alive server. */
+public class PooledHttpTransportTest {
+
+    private static final byte[] BODY = new byte[16 * 1024];
+
+    private LocalHttpServer server;
+    private List<Integer> clientPorts;
+    private String url;
+    private PooledHttpTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalHttpServer(BODY);
+        clientPorts = server.clientPorts;
+        url = server.url("/image");
+        transport = new PooledHttpTransport();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /** One request per the WallpaperTransport contract, body read to EOF. */
+    static void fetch(WallpaperTransport transport, String url, boolean reusable) throws IOException {
+        HttpURLConnection connection = transport.open(url);
+        try {
+            assertEquals(200, transport.execute(connection));
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[8 * 1024];
+                while (in.read(buffer) != -1) {
+                    // drain
+                }
+            }
+        } finally {
+            transport.release(connection, reusable);
+        }
+    }
+
+    @Test
+    public void reusableConnectionIsKeptAliveForTheNextRequest() throws IOException {
+        fetch(transport, url, true);
+        fetch(transport, url, true);
+        fetch(transport, url, true);
+
+        assertEquals(3, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+        assertEquals(clientPorts.get(0), clientPorts.get(2));
+    }
+
+    @Test
+    public void abandonedConnectionIsClosed() throws IOException {
+        // Body not read to EOF (e.g. a cancelled download): the socket can't be reused
+        HttpURLConnection connection = transport.open(url);
+        assertEquals(200, transport.execute(connection));
+        connection.getInputStream().read(new byte[1024]);
+        transport.release(connection, false);
+
+        fetch(transport, url, true);
+
+        assertEquals(2, clientPorts.size());
+        assertNotEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void openWaitsForAPermitOnceTheHostIsFull() throws IOException {
+        transport.configure(200, 0, 2);
+        HttpURLConnection first = transport.open(url);
+        HttpURLConnection second = transport.open(url);
+
+        try {
+            transport.open(url);
+            fail("A third connection to a host limited to two was handed out");
+        } catch (SocketTimeoutException expected) {
+            // waited the connect timeout for a permit
+        }
+
+        transport.release(first, false);
+        HttpURLConnection third = transport.open(url);
+        transport.release(second, false);
+        transport.release(third, false);
+    }
+
+    @Test
+    public void hostsHaveSeparateLimits() throws IOException {
+        transport.configure(200, 0, 1);
+        HttpURLConnection loopback = transport.open(url);
+        HttpURLConnection localhost = transport.open(url.replace("127.0.0.1", "localhost"));
+
+        transport.release(loopback, false);
+        transport.release(localhost, false);
+    }
+
+    @Test
+    public void newLimitAppliesToNewConnections() throws IOException {
+        transport.configure(200, 0, 1);
+        HttpURLConnection first = transport.open(url);
+
+        // Raising the limit frees new connections from the old, full semaphore
+        transport.configure(0, 0, 2);
+        HttpURLConnection second = transport.open(url);
+        HttpURLConnection third = transport.open(url);
+
+        transport.release(first, false);
+        transport.release(second, false);
+        transport.release(third, false);
+    }
+}
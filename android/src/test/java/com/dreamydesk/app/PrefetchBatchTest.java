@@ -0,0 +1,128 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PrefetchBatch completion: every item once, the listener once, for
+ * refused submits and for a plugin destroyed with items still queued.
+ */
+public class PrefetchBatchTest {
+
+    private final AtomicInteger doneCalls = new AtomicInteger();
+
+    private PrefetchBatch batch(String... urls) {
+        return new PrefetchBatch("batch", Arrays.asList(urls), Collections.<String>emptyList(), 1.3f, 0,
+                done -> doneCalls.incrementAndGet());
+    }
+
+    @Test
+    public void listenerRunsWhenTheLastItemCompletes() {
+        PrefetchBatch batch = batch("a", "b");
+
+        assertTrue(batch.complete(1, PrefetchBatch.READY, null));
+        assertEquals(0, doneCalls.get());
+        assertTrue(batch.complete(0, PrefetchBatch.FAILED, "boom"));
+
+        assertEquals(1, doneCalls.get());
+        assertEquals(1, batch.readyCount());
+    }
+
+    @Test
+    public void secondCompletionOfAnItemIsIgnored() {
+        PrefetchBatch batch = batch("a");
+
+        assertTrue(batch.complete(0, PrefetchBatch.READY, null));
+        assertFalse(batch.complete(0, PrefetchBatch.FAILED, "late"));
+
+        assertEquals(PrefetchBatch.READY, batch.status(0));
+        assertNull(batch.error(0));
+        assertEquals(1, doneCalls.get());
+    }
+
+    @Test
+    public void refusedSubmitFailsThatItemAndTheRest() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        pool.shutdown();
+        PrefetchBatch batch = batch("a", "b", "c");
+        batch.complete(0, PrefetchBatch.READY, null);
+
+        // The submit loop in prefetchWallpapers, against a pool that is shutting down
+        for (int i = 1; i < batch.size(); i++) {
+            try {
+                pool.execute(new PrefetchTask(batch, i, PrefetchTask.PRIORITY_NORMAL, i, (b, url) -> 0));
+            } catch (RejectedExecutionException e) {
+                batch.failFrom(i, "Prefetch failed: " + e.getMessage(), "BUSY");
+                break;
+            }
+        }
+
+        assertEquals(1, doneCalls.get());
+        assertEquals(PrefetchBatch.READY, batch.status(0));
+        assertNull(batch.code(0));
+        for (int i = 1; i < 3; i++) {
+            assertEquals(PrefetchBatch.FAILED, batch.status(i));
+            assertEquals("BUSY", batch.code(i));
+            assertTrue(batch.error(i).startsWith("Prefetch failed"));
+        }
+    }
+
+    @Test
+    public void settleCancelsWhatIsPendingAndAnswersOnce() {
+        PrefetchBatch batch = batch("a", "b", "c");
+        batch.complete(0, PrefetchBatch.READY, null);
+
+        batch.settle();
+
+        assertEquals(1, doneCalls.get());
+        assertTrue(batch.isCancelled());
+        assertEquals(PrefetchBatch.READY, batch.status(0));
+        assertEquals(PrefetchBatch.CANCELLED, batch.status(1));
+        assertEquals(PrefetchBatch.CANCELLED, batch.status(2));
+
+        // An item that was running when the plugin was destroyed finishes late
+        assertFalse(batch.complete(1, PrefetchBatch.READY, null));
+        batch.settle();
+        assertEquals(1, doneCalls.get());
+    }
+
+    @Test
+    public void settleRacingTheWorkersCompletesEachItemOnce() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            doneCalls.set(0);
+            String[] urls = new String[64];
+            Arrays.fill(urls, "u");
+            PrefetchBatch batch = batch(urls);
+            AtomicInteger won = new AtomicInteger();
+
+            ExecutorService workers = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < urls.length; i++) {
+                int index = i;
+                workers.execute(() -> {
+                    if (batch.complete(index, PrefetchBatch.READY, null)) won.incrementAndGet();
+                });
+            }
+            batch.settle();
+            workers.shutdown();
+            assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(1, doneCalls.get());
+            assertEquals(won.get(), batch.readyCount());
+        }
+    }
+}
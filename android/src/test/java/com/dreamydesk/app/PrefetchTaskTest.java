@@ -0,0 +1,174 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrefetchTask on a one-worker priority pool like executors.prefetch():
+ * batch priority order, the maxBytes budget, and cancellation.
+ */
+public class PrefetchTaskTest {
+
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>());
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<String>());
+    private final List<PrefetchBatch> done = Collections.synchronizedList(new ArrayList<PrefetchBatch>());
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private long sequence;
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        pool.shutdownNow();
+    }
+
+    /** Records each URL and reports {@code bytes} downloaded for it. */
+    private PrefetchTask.Work downloads(long bytes) {
+        return (batch, url) -> {
+            fetched.add(url);
+            return bytes;
+        };
+    }
+
+    private PrefetchBatch batch(long maxBytes, String... urls) {
+        return new PrefetchBatch("b" + sequence, Arrays.asList(urls), Collections.<String>emptyList(), 1.3f,
+                maxBytes, done::add);
+    }
+
+    private void enqueue(PrefetchBatch batch, int priority, PrefetchTask.Work work) {
+        for (int i = 0; i < batch.size(); i++) {
+            pool.execute(new PrefetchTask(batch, i, priority, sequence++, work));
+        }
+    }
+
+    /** Holds the only worker so everything submitted next waits in the queue. */
+    private void blockWorker() {
+        pool.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void runQueue() throws InterruptedException {
+        gate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void higherPriorityBatchJumpsTheQueue() throws InterruptedException {
+        blockWorker();
+        enqueue(batch(0, "low-1", "low-2", "low-3"), PrefetchTask.PRIORITY_LOW, downloads(0));
+        enqueue(batch(0, "normal-1"), PrefetchTask.PRIORITY_NORMAL, downloads(0));
+        enqueue(batch(0, "high-1", "high-2"), PrefetchTask.PRIORITY_HIGH, downloads(0));
+
+        runQueue();
+
+        assertEquals(Arrays.asList("high-1", "high-2", "normal-1", "low-1", "low-2", "low-3"), fetched);
+        assertEquals(3, done.size());
+    }
+
+    @Test
+    public void budgetSkipsItemsOnceItIsUsedUp() throws InterruptedException {
+        PrefetchBatch batch = batch(100, "a", "b", "c", "d");
+        blockWorker();
+        enqueue(batch, PrefetchTask.PRIORITY_NORMAL, downloads(60));
+
+        runQueue();
+
+        // b crosses the line and still completes; c and d are never fetched
+        assertEquals(Arrays.asList("a", "b"), fetched);
+        assertEquals(PrefetchBatch.READY, batch.status(1));
+        assertEquals(PrefetchBatch.SKIPPED, batch.status(2));
+        assertEquals(PrefetchBatch.SKIPPED, batch.status(3));
+        assertEquals(120, batch.bytesDownloaded());
+        assertEquals(2, batch.readyCount());
+    }
+
+    @Test
+    public void cacheHitsDontUseTheBudget() throws InterruptedException {
+        PrefetchBatch batch = batch(1, "a", "b", "c");
+        blockWorker();
+        enqueue(batch, PrefetchTask.PRIORITY_NORMAL, downloads(0));
+
+        runQueue();
+
+        assertEquals(3, batch.readyCount());
+    }
+
+    @Test
+    public void cancelledBatchDropsItsQueuedItems() throws InterruptedException {
+        PrefetchBatch cancelled = batch(0, "x-1", "x-2");
+        PrefetchBatch other = batch(0, "y-1");
+        blockWorker();
+        enqueue(cancelled, PrefetchTask.PRIORITY_HIGH, downloads(0));
+        enqueue(other, PrefetchTask.PRIORITY_NORMAL, downloads(0));
+
+        cancelled.cancel();
+        runQueue();
+
+        assertEquals(Collections.singletonList("y-1"), fetched);
+        assertEquals(PrefetchBatch.CANCELLED, cancelled.status(0));
+        assertEquals(PrefetchBatch.CANCELLED, cancelled.status(1));
+        assertEquals(PrefetchBatch.READY, other.status(0));
+        assertEquals(2, done.size());
+    }
+
+    @Test
+    public void cancelSeenPartWayCompletesTheItemAsCancelled() throws InterruptedException {
+        PrefetchBatch batch = batch(0, "a", "b");
+        PrefetchTask.Work cancelDuringFirst = (b, url) -> {
+            fetched.add(url);
+            b.cancel();
+            // What prefetchOne does between targets once it sees the flag
+            throw new CancellationException("Prefetch batch cancelled");
+        };
+        blockWorker();
+        enqueue(batch, PrefetchTask.PRIORITY_NORMAL, cancelDuringFirst);
+
+        runQueue();
+
+        assertEquals(Collections.singletonList("a"), fetched);
+        assertEquals(PrefetchBatch.CANCELLED, batch.status(0));
+        assertEquals(PrefetchBatch.CANCELLED, batch.status(1));
+        assertEquals(0, batch.readyCount());
+    }
+
+    @Test
+    public void failureIsRecordedAndTheRestStillRun() throws InterruptedException {
+        PrefetchBatch batch = batch(0, "bad", "good");
+        PrefetchTask.Work work = (b, url) -> {
+            if ("bad".equals(url)) throw new IOException("HTTP error: 404");
+            fetched.add(url);
+            return 10;
+        };
+        blockWorker();
+        enqueue(batch, PrefetchTask.PRIORITY_NORMAL, work);
+
+        runQueue();
+
+        assertEquals(PrefetchBatch.FAILED, batch.status(0));
+        assertEquals("HTTP error: 404", batch.error(0));
+        assertEquals(PrefetchBatch.READY, batch.status(1));
+        assertNull(batch.error(1));
+        assertEquals(1, done.size());
+    }
+}
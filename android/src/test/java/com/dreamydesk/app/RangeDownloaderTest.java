@@ -0,0 +1,185 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RangeDownloader against a local server that honours Range / If-Range and
+ * can drop a connection mid-body: resuming, restarting on a changed file,
+ * and parallel ranges.
+ */
+public class RangeDownloaderTest {
+
+    private static final int LENGTH = 300_000;
+    private static final String ETAG = "\"v1\"";
+
+    private final byte[] body = randomBytes(LENGTH, 1);
+
+    private LocalHttpServer server;
+    private String url;
+    private PooledHttpTransport transport;
+    private ExecutorService rangePool;
+    private File dir;
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalHttpServer(body);
+        server.etag = ETAG;
+        url = server.url("/live.mp4");
+        transport = new PooledHttpTransport();
+        rangePool = Executors.newFixedThreadPool(RangeDownloader.MAX_CONNECTIONS);
+        dir = Files.createTempDirectory("range-downloader").toFile();
+        target = new File(dir, "live.mp4");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        rangePool.shutdownNow();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    private RangeDownloader.Result download(int connections) throws IOException {
+        return new RangeDownloader(url, target, connections, transport, rangePool,
+                ProgressReporter.silent(url)).download();
+    }
+
+    @Test
+    public void droppedConnectionResumesFromWhereItStopped() throws IOException {
+        server.dropNext(1, 100_000);
+
+        RangeDownloader.Result result = download(1);
+
+        assertDownloaded(body, result);
+        assertEquals(2, server.requests.size());
+        String resume = server.requests.get(1);
+        assertEquals("bytes=100000-", LocalHttpServer.header(resume, "range"));
+        assertEquals(ETAG, LocalHttpServer.header(resume, "if-range"));
+    }
+
+    @Test
+    public void partFileFromAnEarlierRunIsResumed() throws IOException {
+        seedPartial(Arrays.copyOf(body, 120_000), ETAG);
+
+        assertDownloaded(body, download(1));
+
+        assertEquals(1, server.requests.size());
+        assertEquals("bytes=120000-", LocalHttpServer.header(server.requests.get(0), "range"));
+    }
+
+    @Test
+    public void changedFileRestartsFromZero() throws IOException {
+        // .part holds the first bytes of a version the server no longer has
+        seedPartial(Arrays.copyOf(randomBytes(LENGTH, 2), 120_000), "\"v0\"");
+
+        assertDownloaded(body, download(1));
+
+        assertEquals(2, server.requests.size());
+        String resume = server.requests.get(0);
+        assertEquals("bytes=120000-", LocalHttpServer.header(resume, "range"));
+        assertEquals("\"v0\"", LocalHttpServer.header(resume, "if-range"));
+        // If-Range didn't match, the 200 wasn't appended, and the retry asked for the whole file
+        assertNull(LocalHttpServer.header(server.requests.get(1), "range"));
+    }
+
+    @Test
+    public void parallelRangesAssembleTheFile() throws IOException {
+        assertDownloaded(body, download(4));
+
+        // One-byte length probe, then one request per range
+        List<String> ranges = rangeHeaders();
+        assertEquals(5, ranges.size());
+        assertEquals("bytes=0-0", ranges.get(0));
+        int chunk = LENGTH / 4;
+        for (int i = 0; i < 4; i++) {
+            int end = i == 3 ? LENGTH - 1 : (i + 1) * chunk - 1;
+            assertTrue(ranges + " has range " + i, ranges.contains("bytes=" + i * chunk + "-" + end));
+        }
+    }
+
+    @Test
+    public void interruptedRangeResumesOnItsOwn() throws IOException {
+        server.dropNext(1, 10_000);
+
+        assertDownloaded(body, download(4));
+
+        // Probe, four ranges, and one retry that picks up 10000 bytes into the cut range
+        List<String> ranges = rangeHeaders();
+        assertEquals(6, ranges.size());
+        int chunk = LENGTH / 4;
+        int resumed = 0;
+        for (String range : ranges.subList(1, ranges.size())) {
+            int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            if (start % chunk != 0) {
+                assertEquals(10_000, start % chunk);
+                resumed++;
+            }
+        }
+        assertEquals(1, resumed);
+    }
+
+    private List<String> rangeHeaders() {
+        List<String> ranges = new ArrayList<>();
+        for (String head : server.requests) {
+            ranges.add(LocalHttpServer.header(head, "range"));
+        }
+        return ranges;
+    }
+
+    /** What an interrupted sequential run leaves behind: the first bytes and the .meta validators. */
+    private void seedPartial(byte[] received, String etag) throws IOException {
+        try (OutputStream out = new FileOutputStream(target.getPath() + ".part")) {
+            out.write(received);
+        }
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        meta.setProperty("length", Integer.toString(LENGTH));
+        meta.setProperty("etag", etag);
+        try (OutputStream out = new FileOutputStream(target.getPath() + ".part.meta")) {
+            meta.store(out, null);
+        }
+    }
+
+    private void assertDownloaded(byte[] expected, RangeDownloader.Result result) throws IOException {
+        assertEquals(target, result.file);
+        assertEquals(expected.length, result.length);
+        assertArrayEquals(expected, Files.readAllBytes(target.toPath()));
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".part.meta").exists());
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
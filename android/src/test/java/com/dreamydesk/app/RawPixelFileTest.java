@@ -0,0 +1,174 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/** RawPixelFile's header and mapped pixel IO, without a Bitmap on either end. */
+public class RawPixelFileTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("raw-pixel-file").toFile();
+        file = new File(dir, "parallax_wallpaper" + RawPixelFile.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    /** Writes a w x h file with a byte pattern where copyPixelsToBuffer would put the pixels. */
+    private byte[] writePattern(int width, int height, int config) throws IOException {
+        RawPixelFile.Header header = new RawPixelFile.Header(width, height, config);
+        byte[] pixels = new byte[(int) header.pixelBytes()];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 31 + 7);
+        }
+        RawPixelFile.writePixels(file, header, out -> out.put(pixels));
+        return pixels;
+    }
+
+    private void assertRoundTrip(int width, int height, int config, int bytesPerPixel) throws IOException {
+        byte[] written = writePattern(width, height, config);
+
+        assertEquals(20 + (long) width * height * bytesPerPixel, file.length());
+        RawPixelFile.Mapped mapped = RawPixelFile.map(file);
+        assertEquals(width, mapped.header.width);
+        assertEquals(height, mapped.header.height);
+        assertEquals(config, mapped.header.config);
+        assertEquals(bytesPerPixel, mapped.header.bytesPerPixel());
+        assertEquals(written.length, mapped.pixels.remaining());
+        byte[] read = new byte[written.length];
+        mapped.pixels.get(read);
+        for (int i = 0; i < read.length; i++) {
+            assertEquals("byte " + i, written[i], read[i]);
+        }
+    }
+
+    @Test
+    public void rgb565RoundTripsAtTwoBytesPerPixel() throws IOException {
+        assertRoundTrip(33, 17, RawPixelFile.CONFIG_RGB_565, 2);
+    }
+
+    @Test
+    public void argb8888RoundTripsAtFourBytesPerPixel() throws IOException {
+        assertRoundTrip(33, 17, RawPixelFile.CONFIG_ARGB_8888, 4);
+    }
+
+    @Test
+    public void headerIsBigEndianDdpxVersion1() throws IOException {
+        writePattern(640, 480, RawPixelFile.CONFIG_RGB_565);
+
+        ByteBuffer head = ByteBuffer.wrap(Files.readAllBytes(file.toPath()), 0, 20);
+        assertEquals(0x44445058, head.getInt()); // "DDPX"
+        assertEquals(1, head.getInt());
+        assertEquals(640, head.getInt());
+        assertEquals(480, head.getInt());
+        assertEquals(RawPixelFile.CONFIG_RGB_565, head.getInt());
+    }
+
+    @Test
+    public void writeReplacesTheFileAndLeavesNoTemp() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_ARGB_8888);
+        writePattern(4, 2, RawPixelFile.CONFIG_RGB_565);
+
+        assertEquals(20 + 4 * 2 * 2, file.length());
+        assertEquals(4, RawPixelFile.map(file).header.width);
+        assertFalse(new File(dir, file.getName() + ".tmp").exists());
+    }
+
+    @Test
+    public void fileShorterThanTheHeaderIsRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_RGB_565);
+        truncate(12);
+        assertRejected("Truncated");
+    }
+
+    @Test
+    public void missingPixelsAreRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_ARGB_8888);
+        // Enough for the same image as RGB_565, not as ARGB_8888
+        truncate(20 + 8 * 8 * 2);
+        assertRejected("Truncated");
+    }
+
+    @Test
+    public void emptyFileIsRejected() throws IOException {
+        truncate(0);
+        assertRejected("Truncated");
+    }
+
+    @Test
+    public void badMagicIsRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_RGB_565);
+        patchInt(0, 0x89504e47); // a PNG, say
+        assertRejected("Not a raw pixel file");
+    }
+
+    @Test
+    public void unknownVersionIsRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_RGB_565);
+        patchInt(4, 2);
+        assertRejected("Not a raw pixel file");
+    }
+
+    @Test
+    public void unknownConfigIsRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_RGB_565);
+        patchInt(16, 3);
+        assertRejected("Unknown pixel config");
+    }
+
+    @Test
+    public void nonPositiveSizeIsRejected() throws IOException {
+        writePattern(8, 8, RawPixelFile.CONFIG_RGB_565);
+        patchInt(8, 0);
+        assertRejected("Bad size");
+    }
+
+    private void assertRejected(String message) {
+        try {
+            RawPixelFile.map(file);
+            fail("Accepted a bad raw pixel file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    /** Cuts the file (creating it if needed) to {@code length} bytes. */
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private void patchInt(long offset, int value) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset);
+            raf.writeInt(value);
+        }
+    }
+}
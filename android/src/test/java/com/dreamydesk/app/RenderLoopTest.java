@@ -0,0 +1,258 @@
+package com.dreamydesk.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RenderLoop driven by a 60 Hz test vsync, with single-thread executors
+ * standing in for the render and main loopers: frame lateness while the
+ * main thread is stalled, and parking / waking.
+ */
+public class RenderLoopTest {
+
+    private static final long VSYNC_NANOS = 16_666_667L;
+    private static final long STALL_MS = 300;
+
+    private final ExecutorService main = Executors.newSingleThreadExecutor();
+    private final ExecutorService render = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService vsyncThread = Executors.newSingleThreadScheduledExecutor();
+
+    /** Ticks every VSYNC_NANOS; a requested frame runs on the loop's thread with the tick's time. */
+    private static final class TestVsync implements RenderLoop.Vsync {
+        final AtomicBoolean requested = new AtomicBoolean();
+        RenderLoop loop;
+        ExecutorService thread;
+
+        void tick() {
+            long frameTimeNanos = System.nanoTime();
+            thread.execute(() -> {
+                if (requested.getAndSet(false)) loop.doFrame(frameTimeNanos);
+            });
+        }
+
+        @Override
+        public void requestFrame() {
+            requested.set(true);
+        }
+
+        @Override
+        public void cancelFrame() {
+            requested.set(false);
+        }
+    }
+
+    /** Counts frames; settles after settleAfter frames (never if negative). */
+    private static class TestRenderer implements RenderLoop.Renderer {
+        final AtomicInteger frames = new AtomicInteger();
+        volatile int settleAfter = -1;
+
+        @Override
+        public boolean drawFrame(long frameTimeNanos) {
+            int n = frames.incrementAndGet();
+            return settleAfter >= 0 && n >= settleAfter;
+        }
+
+        @Override
+        public void onPark() {
+        }
+
+        @Override
+        public boolean inputMissed() {
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+        }
+
+        @Override
+        public void onFrameStats(RenderLoop.FrameStats stats) {
+        }
+    }
+
+    @After
+    public void tearDown() {
+        vsyncThread.shutdownNow();
+        main.shutdownNow();
+        render.shutdownNow();
+    }
+
+    private RenderLoop newLoop(ExecutorService thread, RenderLoop.Renderer renderer) {
+        TestVsync vsync = new TestVsync();
+        RenderLoop loop = new RenderLoop(vsync, thread, renderer);
+        vsync.loop = loop;
+        vsync.thread = thread;
+        vsyncThread.scheduleAtFixedRate(vsync::tick, 0, VSYNC_NANOS, TimeUnit.NANOSECONDS);
+        return loop;
+    }
+
+    private RenderLoop startLoop(ExecutorService thread, RenderLoop.Renderer renderer) {
+        RenderLoop loop = newLoop(thread, renderer);
+        thread.execute(loop::start);
+        return loop;
+    }
+
+    /** Stalls the main thread, like a synchronous decode or slow callback did. */
+    private void stallMainThread() throws Exception {
+        main.submit(() -> sleep(STALL_MS)).get();
+    }
+
+    @Test
+    public void mainThreadStallDoesNotDelayFrames() throws Exception {
+        TestRenderer renderer = new TestRenderer();
+        RenderLoop loop = startLoop(render, renderer);
+        awaitTrue(() -> renderer.frames.get() > 5);
+
+        // Input keeps arriving on the stalled main thread
+        for (int i = 0; i < 10; i++) {
+            main.execute(loop::wake);
+        }
+        int before = renderer.frames.get();
+        stallMainThread();
+        int during = renderer.frames.get() - before;
+
+        long maxLateNanos = onThread(render, loop);
+        // ~18 vsyncs went by; allow for a slow test machine, but nowhere near the stall
+        assertTrue("only " + during + " frames during a " + STALL_MS + "ms stall", during >= 9);
+        assertTrue("frame started " + maxLateNanos / 1_000_000 + "ms late",
+                maxLateNanos < TimeUnit.MILLISECONDS.toNanos(STALL_MS / 3));
+    }
+
+    @Test
+    public void loopOnTheMainThreadIsDelayedByTheStall() throws Exception {
+        // What the engine did before the render thread: same loop, same stall
+        TestRenderer renderer = new TestRenderer();
+        RenderLoop loop = startLoop(main, renderer);
+        awaitTrue(() -> renderer.frames.get() > 5);
+
+        stallMainThread();
+        awaitTrue(() -> renderer.frames.get() > 10);
+
+        long maxLateNanos = onThread(main, loop);
+        assertTrue("frame started only " + maxLateNanos / 1_000_000 + "ms late",
+                maxLateNanos >= TimeUnit.MILLISECONDS.toNanos(STALL_MS * 2 / 3));
+    }
+
+    @Test
+    public void settledLoopParksUntilWoken() throws Exception {
+        TestRenderer renderer = new TestRenderer();
+        renderer.settleAfter = 0;
+        RenderLoop loop = startLoop(render, renderer);
+        awaitTrue(loop::isParked);
+
+        sleep(100);
+        assertEquals(1, renderer.frames.get());
+
+        main.execute(loop::wake);
+        awaitTrue(() -> renderer.frames.get() == 2 && loop.isParked());
+        sleep(100);
+        assertEquals(2, renderer.frames.get());
+    }
+
+    @Test
+    public void wakeDuringTheLastFrameIsNotLost() throws Exception {
+        RenderLoop[] loop = new RenderLoop[1];
+        TestRenderer renderer = new TestRenderer() {
+            @Override
+            public boolean drawFrame(long frameTimeNanos) {
+                if (frames.incrementAndGet() == 1) {
+                    // Arrives mid-frame, while the loop isn't parked yet
+                    try {
+                        main.submit(loop[0]::wake).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                return true;
+            }
+        };
+        loop[0] = newLoop(render, renderer);
+        render.execute(loop[0]::start);
+
+        awaitTrue(() -> renderer.frames.get() == 2 && loop[0].isParked());
+        sleep(100);
+        assertEquals(2, renderer.frames.get());
+    }
+
+    @Test
+    public void inputMissedByTheLastFrameResumesTheLoop() throws Exception {
+        AtomicInteger missed = new AtomicInteger(1);
+        TestRenderer renderer = new TestRenderer() {
+            @Override
+            public boolean inputMissed() {
+                return missed.getAndDecrement() > 0;
+            }
+        };
+        renderer.settleAfter = 0;
+        RenderLoop loop = startLoop(render, renderer);
+
+        awaitTrue(() -> renderer.frames.get() == 2 && loop.isParked());
+        sleep(100);
+        assertEquals(2, renderer.frames.get());
+    }
+
+    @Test
+    public void stopDropsTheRequestedFrame() throws Exception {
+        TestRenderer renderer = new TestRenderer();
+        RenderLoop loop = startLoop(render, renderer);
+        awaitTrue(() -> renderer.frames.get() > 2);
+
+        render.submit(loop::stop).get();
+        int stopped = renderer.frames.get();
+        sleep(100);
+        assertEquals(stopped, renderer.frames.get());
+    }
+
+    @Test
+    public void frameStatsCountSkippedVsyncs() {
+        RenderLoop.FrameStats stats = new RenderLoop.FrameStats();
+        long t = 1_000_000_000L;
+        stats.record(t, t + 1_000, t + 2_000);
+        stats.record(t + VSYNC_NANOS, t + VSYNC_NANOS + 5_000, t + VSYNC_NANOS + 6_000);
+        // Two vsyncs missed
+        stats.record(t + 4 * VSYNC_NANOS, t + 4 * VSYNC_NANOS, t + 4 * VSYNC_NANOS + 1_000);
+
+        assertEquals(3, stats.frames());
+        assertEquals(1, stats.skipped());
+        assertEquals(5_000, stats.maxLateNanos());
+        assertEquals(1_000, stats.maxDrawNanos());
+
+        // A parked gap isn't a skip
+        stats.restart();
+        stats.record(t + 100 * VSYNC_NANOS, t + 100 * VSYNC_NANOS, t + 100 * VSYNC_NANOS + 1_000);
+        assertEquals(1, stats.skipped());
+    }
+
+    /** Max lateness so far, read on the loop's own thread. */
+    private static long onThread(ExecutorService thread, RenderLoop loop) throws Exception {
+        return thread.submit(() -> loop.stats().maxLateNanos()).get();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
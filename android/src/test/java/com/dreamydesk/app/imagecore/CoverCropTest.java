@@ -0,0 +1,106 @@
+package com.dreamydesk.app.imagecore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CoverCropTest {
+
+    private static void assertRegion(CoverCrop crop, int left, int top, int width, int height) {
+        String at = crop.toString();
+        assertEquals(at, left, crop.left);
+        assertEquals(at, top, crop.top);
+        assertEquals(at, width, crop.width);
+        assertEquals(at, height, crop.height);
+    }
+
+    @Test
+    public void sameAspectKeepsTheWholeImage() {
+        CoverCrop crop = CoverCrop.compute(6000, 4000, 1500, 1000);
+
+        assertRegion(crop, 0, 0, 6000, 4000);
+        assertEquals(1500, crop.outputWidth);
+        assertEquals(1000, crop.outputHeight);
+        assertEquals(0.25f, crop.scale, 0f);
+    }
+
+    @Test
+    public void widerSourceIsTrimmedLeftAndRight() {
+        // Landscape photo on a 1440p portrait screen: height decides the scale
+        CoverCrop crop = CoverCrop.compute(6000, 4000, 1440, 2560);
+
+        assertEquals(0.64f, crop.scale, 1e-6f);
+        assertEquals(3840, crop.scaledWidth);
+        assertEquals(2560, crop.scaledHeight);
+        assertEquals(1200, crop.scaledLeft);
+        assertEquals(0, crop.scaledTop);
+        assertRegion(crop, 1875, 0, 2250, 4000);
+        assertEquals(1440, crop.outputWidth);
+        assertEquals(2560, crop.outputHeight);
+    }
+
+    @Test
+    public void tallerSourceIsTrimmedTopAndBottom() {
+        CoverCrop crop = CoverCrop.compute(1000, 3000, 1000, 1000);
+
+        assertEquals(1f, crop.scale, 0f);
+        assertRegion(crop, 0, 1000, 1000, 1000);
+    }
+
+    @Test
+    public void smallSourceIsScaledUp() {
+        CoverCrop crop = CoverCrop.compute(500, 500, 1000, 2000);
+
+        assertEquals(4f, crop.scale, 0f);
+        assertRegion(crop, 125, 0, 250, 500);
+        assertEquals(1000, crop.outputWidth);
+        assertEquals(2000, crop.outputHeight);
+    }
+
+    @Test
+    public void regionStaysInsideTheSourceAndCentred() {
+        int[] sizes = {1, 3, 480, 1080, 1333, 1920, 2560, 4000, 6000};
+        for (int srcW : sizes) {
+            for (int srcH : sizes) {
+                for (int targetW : new int[] {720, 1080, 1440, 2880}) {
+                    for (int targetH : new int[] {1280, 1920, 2560}) {
+                        CoverCrop crop = CoverCrop.compute(srcW, srcH, targetW, targetH);
+                        String at = srcW + "x" + srcH + " -> " + targetW + "x" + targetH + ": " + crop;
+
+                        assertEquals(at, targetW, crop.outputWidth);
+                        assertEquals(at, targetH, crop.outputHeight);
+                        assertTrue(at, crop.left >= 0 && crop.top >= 0);
+                        assertTrue(at, crop.width >= 1 && crop.height >= 1);
+                        assertTrue(at, crop.left + crop.width <= srcW);
+                        assertTrue(at, crop.top + crop.height <= srcH);
+
+                        // One axis is kept whole; the overflow on the other is split
+                        // evenly, give or take rounding in both scaled and source pixels
+                        float slack = 2f / crop.scale + 2f;
+                        assertTrue(at, Math.abs(crop.left - (srcW - crop.left - crop.width)) <= slack);
+                        assertTrue(at, Math.abs(crop.top - (srcH - crop.top - crop.height)) <= slack);
+                        assertTrue(at, crop.width == srcW || crop.height == srcH);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sampleSizeLeavesTheRegionAtLeastAsBigAsTheOutput() {
+        // Whole 6000x4000 image to 1500x1000: exactly /4
+        assertEquals(4, CoverCrop.compute(6000, 4000, 1500, 1000).sampleSize());
+        // 2250x4000 region for 1440x2560: any subsampling would undershoot
+        assertEquals(1, CoverCrop.compute(6000, 4000, 1440, 2560).sampleSize());
+        // Upscaling never subsamples
+        assertEquals(1, CoverCrop.compute(500, 500, 1000, 2000).sampleSize());
+
+        for (int srcW = 1000; srcW <= 9000; srcW += 1000) {
+            CoverCrop crop = CoverCrop.compute(srcW, 4000, 1080, 1920);
+            int sample = crop.sampleSize();
+            assertTrue(crop.toString(), crop.width / sample >= crop.outputWidth || sample == 1);
+            assertTrue(crop.toString(), crop.height / sample >= crop.outputHeight || sample == 1);
+        }
+    }
+}
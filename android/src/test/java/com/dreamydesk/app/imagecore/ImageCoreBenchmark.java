@@ -0,0 +1,68 @@
+package com.dreamydesk.app.imagecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The planning half of the pipeline (sample size and cover-crop) and the
+ * PixelBuffer copy that feeds the resampler. Planning runs once per
+ * wallpaper and should stay far below a microsecond; the window copy is
+ * reported per source size.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageCoreBenchmark {
+
+    /** Source sizes: a 12 MP phone photo and a 24 MP camera shot. */
+    @Param({"4032x3024", "6000x4000"})
+    public String source;
+
+    private int srcW;
+    private int srcH;
+    private IntPixelBuffer buffer;
+    private CoverCrop crop;
+    private int[] window;
+
+    @Setup
+    public void setUp() {
+        String[] size = source.split("x");
+        srcW = Integer.parseInt(size[0]);
+        srcH = Integer.parseInt(size[1]);
+        buffer = new IntPixelBuffer(srcW, srcH);
+        crop = CoverCrop.compute(srcW, srcH, 1440, 2560);
+        window = new int[crop.width * crop.height];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int sampleSize() {
+        return SampleSize.forTarget(srcW, srcH, 1440, 2560);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int coverCrop() {
+        return CoverCrop.compute(srcW, srcH, 1440, 2560).sampleSize();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] copyCropWindow() {
+        buffer.getPixels(window, 0, crop.width, crop.left, crop.top, crop.width, crop.height);
+        return window;
+    }
+}
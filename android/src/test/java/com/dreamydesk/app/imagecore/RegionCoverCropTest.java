@@ -0,0 +1,115 @@
+package com.dreamydesk.app.imagecore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The region-decode path (decode only the crop window at crop.sampleSize(),
+ * then one cover-crop of that down to the output) against the full-image
+ * path it replaced (scale the whole image to scaledWidth x scaledHeight,
+ * then cut the output out at scaledLeft/scaledTop).
+ */
+public class RegionCoverCropTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void regionPathShowsTheSameWindowAsTheFullImagePath() {
+        int[][] sources = {{6000, 4000}, {4000, 6000}, {4032, 3024}, {1920, 1080}, {1333, 777}, {500, 500}};
+        int[][] targets = {{1440, 2560}, {1080, 1920}, {2880, 2560}, {1920, 1080}};
+        for (int[] src : sources) {
+            for (int[] target : targets) {
+                CoverCrop crop = CoverCrop.compute(src[0], src[1], target[0], target[1]);
+                int sample = crop.sampleSize();
+
+                // What BitmapRegionDecoder hands back, then the final rescale
+                int decodedW = SampleSize.sampledSize(crop.width, sample);
+                int decodedH = SampleSize.sampledSize(crop.height, sample);
+                CoverCrop rescale = CoverCrop.compute(decodedW, decodedH, crop.outputWidth, crop.outputHeight);
+                String at = src[0] + "x" + src[1] + " -> " + target[0] + "x" + target[1] +
+                        ": " + crop + " sample=" + sample + " rescale " + rescale;
+
+                assertEquals(at, target[0], rescale.outputWidth);
+                assertEquals(at, target[1], rescale.outputHeight);
+                // Subsampling never goes below the output, so the rescale only shrinks
+                // (or upscales a source that was already too small)
+                assertTrue(at, sample == 1 || (decodedW >= target[0] && decodedH >= target[1]));
+
+                // Window of the source that ends up on screen, both ways
+                double fullLeft = crop.scaledLeft / (double) crop.scale;
+                double fullTop = crop.scaledTop / (double) crop.scale;
+                double fullWidth = target[0] / (double) crop.scale;
+                double fullHeight = target[1] / (double) crop.scale;
+                double regionLeft = crop.left + rescale.left * sample;
+                double regionTop = crop.top + rescale.top * sample;
+                double regionWidth = rescale.width * sample;
+                double regionHeight = rescale.height * sample;
+
+                // Rounding in scaled pixels, source pixels and the sampled grid
+                double slack = 2.0 / crop.scale + 2.0 * sample + 1.0;
+                assertEquals(at, fullLeft, regionLeft, slack);
+                assertEquals(at, fullTop, regionTop, slack);
+                assertEquals(at, fullWidth, regionWidth, slack);
+                assertEquals(at, fullHeight, regionHeight, slack);
+            }
+        }
+    }
+
+    @Test
+    public void regionPathRendersTheSamePixelsAsTheFullImagePath() {
+        int srcW = 1200;
+        int srcH = 800;
+        IntPixelBuffer src = gradient(srcW, srcH);
+        CoverCrop crop = CoverCrop.compute(srcW, srcH, 270, 480);
+
+        // Old path: the whole image scaled, then the centre cut out
+        int[] scaled = Resampler.resample(src.pixels(), srcW, srcH,
+                crop.scaledWidth, crop.scaledHeight, Resampler.Filter.LANCZOS3, pool);
+        IntPixelBuffer full = new IntPixelBuffer(crop.outputWidth, crop.outputHeight);
+        full.setPixels(scaled, crop.scaledTop * crop.scaledWidth + crop.scaledLeft, crop.scaledWidth,
+                0, 0, crop.outputWidth, crop.outputHeight);
+
+        // New path: only the window is read and resampled
+        IntPixelBuffer region = new IntPixelBuffer(crop.outputWidth, crop.outputHeight);
+        Resampler.resample(src, crop, region, Resampler.Filter.LANCZOS3, pool);
+
+        int[] a = full.pixels();
+        int[] b = region.pixels();
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int diff = Math.abs(((a[i] >>> shift) & 0xff) - ((b[i] >>> shift) & 0xff));
+                // Only the window's edge pixels see a different neighbourhood
+                assertTrue("pixel " + (i % crop.outputWidth) + "," + (i / crop.outputWidth) +
+                        " differs by " + diff, diff <= 2);
+            }
+        }
+    }
+
+    /** Red follows x, green follows y: any shift of the window shows up as a colour change. */
+    private static IntPixelBuffer gradient(int w, int h) {
+        IntPixelBuffer buffer = new IntPixelBuffer(w, h);
+        int[] pixels = buffer.pixels();
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                pixels[y * w + x] = 0xff000000 | (x * 255 / (w - 1)) << 16 | (y * 255 / (h - 1)) << 8 | 0x80;
+            }
+        }
+        return buffer;
+    }
+}
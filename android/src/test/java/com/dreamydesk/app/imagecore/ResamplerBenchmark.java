@@ -0,0 +1,64 @@
+package com.dreamydesk.app.imagecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resampler throughput per core count: the cover-crop window of a 24 MP
+ * photo down to a 1440p portrait screen, once per filter, on a pool of
+ * each size. Compare the ops/s across {@code parallelism} to see how well
+ * the strips scale; counts above the machine's cores show oversubscription.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResamplerBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"LANCZOS3", "AREA"})
+    public Resampler.Filter filter;
+
+    private ForkJoinPool pool;
+    private int[] window;
+    private CoverCrop crop;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+        crop = CoverCrop.compute(6000, 4000, 1440, 2560);
+
+        Random random = new Random(42);
+        window = new int[crop.width * crop.height];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] resampleCoverCrop() {
+        return Resampler.resample(window, crop.width, crop.height,
+                crop.outputWidth, crop.outputHeight, filter, pool);
+    }
+}
@@ -0,0 +1,220 @@
+package com.dreamydesk.app.imagecore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ResamplerTest {
+
+    private static final int COLOR = 0xff3c82c8;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    private static int[] filled(int w, int h, int color) {
+        int[] pixels = new int[w * h];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static int[] noise(int w, int h, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[w * h];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    @Test
+    public void constantImageStaysConstant() {
+        int[][] sizes = {
+                {600, 400, 150, 100},   // exact 4x
+                {600, 400, 97, 61},     // odd factors
+                {1000, 10, 13, 7},      // very uneven axes
+                {300, 300, 300, 300},   // 1:1
+                {40, 30, 120, 90},      // upscale
+        };
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            for (int[] s : sizes) {
+                int[] out = Resampler.resample(filled(s[0], s[1], COLOR), s[0], s[1], s[2], s[3], filter, pool);
+                assertArrayEquals(filter + " " + Arrays.toString(s), filled(s[2], s[3], COLOR), out);
+            }
+        }
+    }
+
+    @Test
+    public void sameSizeIsTheIdentity() {
+        int[] src = noise(257, 131, 1);
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            assertArrayEquals(filter.toString(), src, Resampler.resample(src, 257, 131, 257, 131, filter, pool));
+        }
+    }
+
+    @Test
+    public void areaAveragesEachFootprint() {
+        // 4x4 blocks of one grey level each shrink to exactly that level
+        int[] src = new int[16 * 8];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 16; x++) {
+                int grey = ((y / 4) * 4 + x / 4) * 16;
+                src[y * 16 + x] = 0xff000000 | grey << 16 | grey << 8 | grey;
+            }
+        }
+        int[] out = Resampler.resample(src, 16, 8, 4, 2, Resampler.Filter.AREA, pool);
+        for (int i = 0; i < out.length; i++) {
+            int grey = i * 16;
+            assertEquals("pixel " + i, 0xff000000 | grey << 16 | grey << 8 | grey, out[i]);
+        }
+    }
+
+    @Test
+    public void lanczosOvershootIsClamped() {
+        // A hard black/white edge rings under Lanczos; channels must stay in 0..255
+        int[] src = new int[64 * 4];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = (i % 64) < 32 ? 0xff000000 : 0xffffffff;
+        }
+        int[] out = Resampler.resample(src, 64, 4, 24, 4, Resampler.Filter.LANCZOS3, pool);
+        for (int p : out) {
+            assertEquals(0xff, p >>> 24);
+            int r = (p >> 16) & 0xff;
+            assertEquals(r, (p >> 8) & 0xff);
+            assertEquals(r, p & 0xff);
+        }
+        assertEquals(0xff000000, out[0]);
+        assertEquals(0xffffffff, out[23]);
+    }
+
+    @Test
+    public void resultDoesNotDependOnParallelism() {
+        int[] src = noise(1200, 900, 7);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (Resampler.Filter filter : Resampler.Filter.values()) {
+                assertArrayEquals(filter.toString(),
+                        Resampler.resample(src, 1200, 900, 317, 241, filter, single),
+                        Resampler.resample(src, 1200, 900, 317, 241, filter, pool));
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void pixelBufferOverloadResamplesTheCropWindow() {
+        // Left half red, right half blue; a crop inside the right half is all blue
+        IntPixelBuffer src = new IntPixelBuffer(400, 100);
+        for (int y = 0; y < 100; y++) {
+            Arrays.fill(src.pixels(), y * 400, y * 400 + 200, 0xffff0000);
+            Arrays.fill(src.pixels(), y * 400 + 200, y * 400 + 400, 0xff0000ff);
+        }
+        CoverCrop crop = CoverCrop.compute(200, 100, 50, 50);
+        IntPixelBuffer dst = new IntPixelBuffer(crop.outputWidth, crop.outputHeight);
+
+        // compute() is relative to the window; shift it into the right half
+        PixelBuffer rightHalf = new OffsetBuffer(src, 200);
+        Resampler.resample(rightHalf, crop, dst, Resampler.Filter.LANCZOS3, pool);
+
+        assertArrayEquals(filled(50, 50, 0xff0000ff), dst.pixels());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyOutput() {
+        Resampler.resample(new int[4], 2, 2, 0, 1, Resampler.Filter.AREA, pool);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortSource() {
+        Resampler.resample(new int[3], 2, 2, 1, 1, Resampler.Filter.AREA, pool);
+    }
+
+    @Test
+    public void filterChoiceSwitchesToAreaForLargeFactors() {
+        assertSame(Resampler.Filter.LANCZOS3, Resampler.filterFor(1.5));
+        assertSame(Resampler.Filter.LANCZOS3, Resampler.filterFor(3.0));
+        assertSame(Resampler.Filter.AREA, Resampler.filterFor(4.2));
+    }
+
+    @Test
+    public void intPixelBufferCopiesRectangles() {
+        IntPixelBuffer buffer = new IntPixelBuffer(5, 4);
+        int[] block = {1, 2, 3, 4, 5, 6};
+        buffer.setPixels(block, 0, 3, 1, 2, 3, 2);
+
+        assertArrayEquals(new int[] {
+                0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0,
+                0, 1, 2, 3, 0,
+                0, 4, 5, 6, 0,
+        }, buffer.pixels());
+
+        // Read back with a wider destination stride and an offset
+        int[] out = new int[10];
+        buffer.getPixels(out, 1, 4, 1, 2, 3, 2);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 0, 4, 5, 6, 0, 0}, out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intPixelBufferRejectsOutOfBoundsRect() {
+        new IntPixelBuffer(5, 4).getPixels(new int[20], 0, 5, 3, 0, 3, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intPixelBufferRejectsShortArray() {
+        new IntPixelBuffer(5, 4, new int[19]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intPixelBufferRejectsEmptySize() {
+        new IntPixelBuffer(0, 4);
+    }
+
+    /** A view of {@code base} shifted {@code dx} pixels to the right. */
+    private static final class OffsetBuffer implements PixelBuffer {
+        private final PixelBuffer base;
+        private final int dx;
+
+        OffsetBuffer(PixelBuffer base, int dx) {
+            this.base = base;
+            this.dx = dx;
+        }
+
+        @Override
+        public int width() {
+            return base.width() - dx;
+        }
+
+        @Override
+        public int height() {
+            return base.height();
+        }
+
+        @Override
+        public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+            base.getPixels(dst, offset, stride, x + dx, y, w, h);
+        }
+
+        @Override
+        public void setPixels(int[] src, int offset, int stride, int x, int y, int w, int h) {
+            base.setPixels(src, offset, stride, x + dx, y, w, h);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.dreamydesk.app.imagecore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SampleSizeTest {
+
+    @Test
+    public void noSubsamplingWhenSourceFitsTarget() {
+        assertEquals(1, SampleSize.forTarget(1080, 1920, 1080, 1920));
+        assertEquals(1, SampleSize.forTarget(800, 600, 1080, 1920));
+    }
+
+    @Test
+    public void noSubsamplingWhenOnlyOneSideIsLarger() {
+        assertEquals(1, SampleSize.forTarget(6000, 1000, 1440, 2560));
+    }
+
+    @Test
+    public void picksLargestPowerOfTwoThatStaysAboveTarget() {
+        // 6000x4000 -> 3000x2000 still covers 1920x1080; 1500x1000 would not
+        assertEquals(2, SampleSize.forTarget(6000, 4000, 1920, 1080));
+        // Exactly the target after /4 is allowed
+        assertEquals(4, SampleSize.forTarget(4000, 4000, 1000, 1000));
+        assertEquals(2, SampleSize.forTarget(3999, 3999, 1000, 1000));
+    }
+
+    @Test
+    public void resultIsAPowerOfTwoThatKeepsBothSidesAtOrAboveTarget() {
+        int[] sources = {1, 7, 480, 1000, 1081, 2048, 4000, 6000, 12345};
+        int[] targets = {1, 100, 720, 1080, 1440, 2560};
+        for (int srcW : sources) {
+            for (int srcH : sources) {
+                for (int reqW : targets) {
+                    for (int reqH : targets) {
+                        int sample = SampleSize.forTarget(srcW, srcH, reqW, reqH);
+                        String at = srcW + "x" + srcH + " -> " + reqW + "x" + reqH + ": " + sample;
+
+                        assertTrue(at, sample >= 1 && Integer.bitCount(sample) == 1);
+                        if (sample > 1) {
+                            assertTrue(at, srcW / sample >= reqW && srcH / sample >= reqH);
+                        }
+                        // The next power of two would undershoot
+                        assertTrue(at, srcW / (sample * 2) < reqW || srcH / (sample * 2) < reqH);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sampledSizeRoundsUpLikeTheDecoders() {
+        assertEquals(1000, SampleSize.sampledSize(4000, 4));
+        assertEquals(1001, SampleSize.sampledSize(4001, 4));
+        assertEquals(1, SampleSize.sampledSize(1, 8));
+        assertEquals(6000, SampleSize.sampledSize(6000, 1));
+    }
+}
@@ -1,3 +1,66 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
+/** Lets a set* call be cancelled with cancelWallpaperJob before it applies. */
+export interface JobOptions {
+  /** Id for this call; generated if omitted. Also reported in progress events. */
+  jobId?: string;
+}
+
+/**
+ * How setImageAs* hands the image to the system:
+ * - 'bitmap' (default): decoded + cover-cropped here, applied with setBitmap
+ * - 'stream' (Android 7.0+): original bytes via setStream with a crop hint,
+ *   never decoded to a full bitmap in the app process
+ */
+export type ApplyMode = 'bitmap' | 'stream';
+
+export interface ApplyOptions extends JobOptions {
+  /** http(s) URL, or a local file:// / content:// URI (read in place, never downloaded). */
+  url: string;
+  applyMode?: ApplyMode;
+}
+
+/** What every set* call resolves with. */
+export interface JobResult {
+  success: boolean;
+  jobId: string;
+  /** setImageAs*: how the image was applied, and how long the system call took. */
+  applyMode?: ApplyMode;
+  applyMs?: number;
+  /**
+   * Per-step apply timings in ms, for calls that touch more than one screen:
+   * encodeMs (single encode), systemAndLockMs (one combined apply), or
+   * systemMs / lockMs when each screen is applied separately.
+   */
+  timings?: { encodeMs?: number; systemAndLockMs?: number; systemMs?: number; lockMs?: number };
+  /** 'stream' mode: the visible region of the original image, in its pixels. */
+  cropHint?: { left: number; top: number; right: number; bottom: number };
+  /** What was actually applied (home image for setHomeAndLockWallpapers). */
+  quality?: DecodeQuality;
+  /** setHomeAndLockWallpapers only: quality of the lock screen image. */
+  lockQuality?: DecodeQuality;
+}
+
+/**
+ * The resolution/colour depth a wallpaper was decoded at. On low-memory
+ * devices the plugin plans each decode against the memory available and
+ * steps down (coarser decode, less parallax overscan, RGB_565, lower
+ * resolution) instead of failing with out-of-memory.
+ */
+export interface DecodeQuality {
+  level: 'full' | 'reduced';
+  /** The step the decode ran at; anything but 'full' means level 'reduced'. */
+  step: 'full' | 'reduced-detail' | 'reduced-overscan' | 'rgb565' | 'reduced-resolution';
+  width: number;
+  height: number;
+  requestedWidth: number;
+  requestedHeight: number;
+  /** Android Bitmap.Config, e.g. "ARGB_8888" or "RGB_565". */
+  config: string;
+  /** setParallaxWallpaper only: the overscan actually delivered. */
+  overscan?: number;
+}
+
 /**
  * Options for setParallaxWallpaper.
  * The app only needs to supply the image `url` — everything else is optional
@@ -5,8 +68,8 @@
  * downloads the image, builds the parallax wallpaper entirely on the native
  * side, and opens Android's picker so the user can confirm.
  */
-export interface ParallaxWallpaperOptions {
-  /** URL (or local file:// URI) of the image to use. */
+export interface ParallaxWallpaperOptions extends JobOptions {
+  /** URL, or a local file:// / content:// URI, of the image to use. */
   url: string;
 
   /**
@@ -50,6 +113,47 @@ export interface ParallaxWallpaperOptions {
    * Default: 1.3
    */
   overscan?: number;
+
+  /**
+   * How the image is handed to the wallpaper service. 'raw' stores
+   * uncompressed pixels that load without a decode (faster service start
+   * and wallpaper switch, several times larger on disk).
+   * Default: 'jpeg'
+   */
+  imageFormat?: 'jpeg' | 'raw';
+}
+
+/**
+ * Parallax render-loop counters, totalled over every period the wallpaper
+ * was visible since the last reset. The loop parks while nothing moves.
+ */
+export interface ParallaxDiagnostics {
+  /** Visible time with the frame loop running. */
+  renderMs: number;
+  /** Visible time parked because the image had settled. */
+  idleMs: number;
+  /** idleMs / (renderMs + idleMs); 0 before any data. */
+  idleFraction: number;
+  frames: number;
+  /** Times input (scroll, touch, tilt, settings) restarted a parked loop. */
+  wakeups: number;
+  /** wakeups per visible minute. */
+  wakeupsPerMinute: number;
+  /** Epoch ms of the last update; 0 if never. */
+  updatedAt: number;
+  /**
+   * Canvas the engine drew with at the last update: 'hardware' (GPU,
+   * Android 8.0+) or 'software' (older devices, or after a fallback).
+   */
+  renderPath: 'hardware' | 'software' | null;
+  /** Tilt sensor samples received. */
+  sensorEvents: number;
+  /** Tilt sensor deliveries; a batched delivery carries several samples. */
+  sensorWakeups: number;
+  /** sensorWakeups per visible minute. */
+  sensorWakeupsPerMinute: number;
+  /** Visible time the tilt sensor spent at its fast, unbatched rate. */
+  sensorFastMs: number;
 }
 
 /** Options for tweaking an already-active parallax wallpaper in place. */
@@ -61,10 +165,173 @@ export interface ParallaxSettingsUpdate {
   scrollParallax?: boolean;
 }
 
+/** Settings for the persistent download cache. */
+export interface CacheConfig {
+  /**
+   * Byte cap for cached images/videos. Least-recently-used entries are
+   * evicted beyond it. 0 disables the cache entirely.
+   * Default: 209715200 (200 MB)
+   */
+  maxBytes?: number;
+
+  /**
+   * Cache-only mode: set* calls are served from the cache and never touch
+   * the network; URLs that were never downloaded fail.
+   * Default: false
+   */
+  offline?: boolean;
+}
+
+export interface CacheStats {
+  sizeBytes: number;
+  maxBytes: number;
+  entryCount: number;
+  /** Requests served from the cache (fresh, offline, or revalidated with a 304). */
+  hitCount: number;
+  /** Requests that had to download the full body. */
+  missCount: number;
+  evictionCount: number;
+  offline: boolean;
+  /** In-memory LRU of decoded, screen-sized bitmaps (budget derived from the app's heap class). */
+  memory: MemoryCacheStats;
+  /** Recycled bitmaps reused by later decodes/resizes instead of allocating new ones. */
+  bitmapPool: MemoryCacheStats;
+}
+
+export interface MemoryCacheStats {
+  sizeBytes: number;
+  maxBytes: number;
+  hitCount: number;
+  missCount: number;
+  evictionCount: number;
+}
+
+/**
+ * Progress of a download/decode/apply, emitted as "wallpaperProgress".
+ * Stage changes are always emitted; byte updates at most every ~150 ms.
+ */
+export interface WallpaperProgressEvent {
+  /** The URL this event is about (setHomeAndLockWallpapers emits for both). */
+  url: string;
+  /** The set* call this belongs to, for cancelWallpaperJob. */
+  jobId?: string;
+  stage: 'connect' | 'download' | 'decode' | 'resize' | 'apply';
+  bytesReceived: number;
+  /** -1 when the server did not send a length. */
+  totalBytes: number;
+  /** Smoothed current download throughput. */
+  bytesPerSecond: number;
+}
+
+export interface TransportConfig {
+  /** Default: 30000 */
+  connectTimeoutMs?: number;
+  /** Default: 60000 */
+  readTimeoutMs?: number;
+  /**
+   * Connections open to one host at a time. Further requests to that host
+   * wait for one to be released, up to connectTimeoutMs. Default: 5
+   */
+  maxConnectionsPerHost?: number;
+}
+
+export interface TransportHostStats {
+  requests: number;
+  /** Connections to this host open right now. */
+  openConnections: number;
+  /** Time to response headers for the first request (includes connect/TLS). */
+  firstRequestMs: number;
+  /** Same, averaged over later requests — mostly on reused connections. -1 until there is one. */
+  avgSubsequentRequestMs: number;
+}
+
+export interface TransportStats {
+  connectTimeoutMs: number;
+  readTimeoutMs: number;
+  maxConnectionsPerHost: number;
+  requestCount: number;
+  /** Connections closed instead of returned to the pool (errors, cancels). */
+  discardedConnectionCount: number;
+  hosts: { [host: string]: TransportHostStats };
+}
+
+export interface PoolStats {
+  activeCount: number;
+  poolSize: number;
+  maxPoolSize: number;
+  queueDepth: number;
+  /** -1 for unbounded queues. */
+  queueCapacity: number;
+  completedTaskCount: number;
+  /** Times a full queue made the submitting thread run the task itself (cpu only). */
+  callerRunsCount: number;
+  /** Calls rejected with code 'BUSY' because the queue was full (io only). */
+  rejectedCount: number;
+}
+
+export interface ForkJoinPoolStats {
+  parallelism: number;
+  poolSize: number;
+  activeCount: number;
+  /** Strips one worker took from another's queue. */
+  stealCount: number;
+}
+
+export interface WorkerPoolStats {
+  /** Downloads and cache reads. */
+  io: PoolStats;
+  /** Bitmap decode and resize. */
+  cpu: PoolStats;
+  /** Serialized WallpaperManager calls. */
+  apply: PoolStats;
+  prefetch: PoolStats;
+  /** Byte-range workers of parallel live wallpaper downloads. */
+  range: PoolStats;
+  /** Parallel downscaling of large images. */
+  resample: ForkJoinPoolStats;
+}
+
+export interface PrefetchOptions {
+  /** Images to prefetch, fetched in this order. */
+  urls: string[];
+  /** Orders this batch against other queued batches. Default: 'normal' */
+  priority?: 'high' | 'normal' | 'low';
+  /**
+   * Geometries to pre-size for: 'screen' (setImageAs* / setHomeAndLockWallpapers)
+   * and/or 'parallax'. An empty array only downloads into the disk cache.
+   * Default: ['screen']
+   */
+  targets?: ('screen' | 'parallax')[];
+  /** Overscan for the 'parallax' target — must match setParallaxWallpaper's. Default: 1.3 */
+  overscan?: number;
+  /** Download budget for the whole batch in bytes; 0 = unlimited. Default: 0 */
+  maxBytes?: number;
+  /** Caller-chosen id, to pass to cancelPrefetch. Generated if omitted. */
+  batchId?: string;
+}
+
+export interface PrefetchItemResult {
+  url: string;
+  ready: boolean;
+  status: 'ready' | 'failed' | 'skipped' | 'cancelled';
+  error?: string;
+  /** Set when the item could not even be queued, e.g. 'BUSY'. */
+  code?: string;
+}
+
+export interface PrefetchResult {
+  batchId: string;
+  cancelled: boolean;
+  readyCount: number;
+  /** Bytes newly downloaded by this batch (cache hits don't count). */
+  bytesDownloaded: number;
+  items: PrefetchItemResult[];
+}
+
 export interface WallpaperPluginPlugin {
-  setImageAsWallpaper(options: { url: string }): Promise<{ success: boolean }>;
-  setImageAsLockScreen(options: { url: string }): Promise<{ success: boolean }>;
-  setImageAsWallpaperAndLockScreen(options: { url: string }): Promise<{ success: boolean }>;
+  setImageAsWallpaper(options: ApplyOptions): Promise<JobResult>;
+  setImageAsLockScreen(options: ApplyOptions): Promise<JobResult>;
+  setImageAsWallpaperAndLockScreen(options: ApplyOptions): Promise<JobResult>;
 
   /**
    * Sets a DIFFERENT image for the home screen and the lock screen in a
@@ -83,12 +350,31 @@ export interface WallpaperPluginPlugin {
    * applied but the promise rejects, explaining that the lock screen image
    * could not be set separately on that OS version.
    */
-  setHomeAndLockWallpapers(options: {
-    homeUrl: string;
-    lockUrl: string;
-  }): Promise<{ success: boolean; homeApplied: boolean; lockApplied: boolean }>;
+  setHomeAndLockWallpapers(
+    options: {
+      homeUrl: string;
+      lockUrl: string;
+    } & JobOptions,
+  ): Promise<JobResult & { homeApplied: boolean; lockApplied: boolean }>;
 
-  setLiveWallpaper(options: { url: string; type?: 'gif' | 'mp4' }): Promise<{ success: boolean }>;
+  /**
+   * Download a video/GIF and open the live wallpaper picker. Downloads are
+   * resumable: a dropped connection (or an app restart mid-download)
+   * continues from the last received byte instead of starting over.
+   */
+  setLiveWallpaper(
+    options: {
+      url: string;
+      type?: 'gif' | 'mp4';
+      /**
+       * Number of byte ranges to fetch concurrently (1-8), capped at the
+       * transport's `maxConnectionsPerHost`. Servers without range support
+       * fall back to a single connection.
+       * Default: 1
+       */
+      parallelConnections?: number;
+    } & JobOptions,
+  ): Promise<JobResult>;
 
   /**
    * Turn an image into a parallax live wallpaper. The plugin downloads the
@@ -96,7 +382,14 @@ export interface WallpaperPluginPlugin {
    * scroll + sensor-based parallax with the given range/speed, and opens
    * the native live wallpaper picker for the user to confirm.
    */
-  setParallaxWallpaper(options: ParallaxWallpaperOptions): Promise<{ success: boolean }>;
+  setParallaxWallpaper(options: ParallaxWallpaperOptions): Promise<JobResult>;
+
+  /**
+   * Cancel a running set* call by its jobId. Its download is aborted and its
+   * promise rejects with code 'CANCELLED'. Resolves cancelled: false if the
+   * job is unknown, finished, or already applying the wallpaper.
+   */
+  cancelWallpaperJob(options: { jobId: string }): Promise<{ cancelled: boolean }>;
 
   /**
    * Update intensity/speed/sensor/scroll settings of the currently active
@@ -114,5 +407,57 @@ export interface WallpaperPluginPlugin {
   /** Whether this device supports the parallax live wallpaper feature. */
   isParallaxSupported(): Promise<{ supported: boolean; hasSensor: boolean }>;
 
+  /** Render vs idle time of the parallax wallpaper; `reset` clears the totals after reading. */
+  getParallaxDiagnostics(options?: { reset?: boolean }): Promise<ParallaxDiagnostics>;
+
   isAvailable(): Promise<{ available: boolean }>;
+
+  /**
+   * Configure the on-device download cache used by every set* method.
+   * Cached entries are revalidated with ETag / Last-Modified, so an
+   * unchanged wallpaper is never downloaded twice. Settings persist
+   * across app restarts.
+   */
+  configureCache(options: CacheConfig): Promise<CacheStats>;
+
+  /**
+   * Download and pre-size wallpapers ahead of time (e.g. the next few in a
+   * gallery), so a later set* call for the same URL applies near-instantly.
+   * Runs on a small bounded background pool; resolves once every item has
+   * finished.
+   */
+  prefetchWallpapers(options: PrefetchOptions): Promise<PrefetchResult>;
+
+  /** Drop the still-queued items of a prefetch batch. */
+  cancelPrefetch(options: { batchId: string }): Promise<{ cancelled: boolean }>;
+
+  /** Queue depth and activity of the plugin's background worker pools. */
+  getPoolStats(): Promise<WorkerPoolStats>;
+
+  /**
+   * Timeouts and keep-alive pool size for all downloads. Connections are
+   * reused across calls, so consecutive wallpapers from the same CDN skip
+   * the TCP/TLS handshake. Settings persist across app restarts.
+   */
+  configureTransport(options: TransportConfig): Promise<TransportStats>;
+
+  /** Transport settings and per-host latency, first request vs. later ones. */
+  getTransportStats(): Promise<TransportStats>;
+
+  /** Current cache size and hit/miss counters. */
+  getCacheStats(): Promise<CacheStats>;
+
+  /** Delete every cached image and video, and drop all decoded bitmaps held in memory. */
+  clearCache(): Promise<CacheStats>;
+
+  /**
+   * Listen for download/processing progress of setImageAs*, setHomeAndLockWallpapers,
+   * setLiveWallpaper and setParallaxWallpaper calls.
+   */
+  addListener(
+    eventName: 'wallpaperProgress',
+    listenerFunc: (event: WallpaperProgressEvent) => void,
+  ): Promise<PluginListenerHandle>;
+
+  removeAllListeners(): Promise<void>;
 }
@@ -1,29 +1,37 @@
 import { WebPlugin } from '@capacitor/core';
 
-import type { WallpaperPluginPlugin } from './definitions';
+import type {
+  CacheStats,
+  JobResult,
+  ParallaxDiagnostics,
+  PrefetchResult,
+  TransportStats,
+  WallpaperPluginPlugin,
+  WorkerPoolStats,
+} from './definitions';
 
 export class WallpaperPluginWeb extends WebPlugin implements WallpaperPluginPlugin {
-  async setImageAsWallpaper(): Promise<{ success: boolean }> {
+  async setImageAsWallpaper(): Promise<JobResult> {
     throw this.unimplemented('Not implemented on web.');
   }
 
-  async setImageAsLockScreen(): Promise<{ success: boolean }> {
+  async setImageAsLockScreen(): Promise<JobResult> {
     throw this.unimplemented('Not implemented on web.');
   }
 
-  async setImageAsWallpaperAndLockScreen(): Promise<{ success: boolean }> {
+  async setImageAsWallpaperAndLockScreen(): Promise<JobResult> {
     throw this.unimplemented('Not implemented on web.');
   }
 
-  async setHomeAndLockWallpapers(): Promise<{ success: boolean; homeApplied: boolean; lockApplied: boolean }> {
+  async setHomeAndLockWallpapers(): Promise<JobResult & { homeApplied: boolean; lockApplied: boolean }> {
     throw this.unimplemented('Not implemented on web.');
   }
 
-  async setLiveWallpaper(): Promise<{ success: boolean }> {
+  async setLiveWallpaper(): Promise<JobResult> {
     throw this.unimplemented('Not implemented on web.');
   }
 
-  async setParallaxWallpaper(): Promise<{ success: boolean }> {
+  async setParallaxWallpaper(): Promise<JobResult> {
     throw this.unimplemented('Not implemented on web.');
   }
 
@@ -39,7 +47,47 @@ export class WallpaperPluginWeb extends WebPlugin implements WallpaperPluginPlug
     return { supported: false, hasSensor: false };
   }
 
+  async getParallaxDiagnostics(): Promise<ParallaxDiagnostics> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
   async isAvailable(): Promise<{ available: boolean }> {
     return { available: false };
   }
+
+  async configureCache(): Promise<CacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getCacheStats(): Promise<CacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async clearCache(): Promise<CacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async prefetchWallpapers(): Promise<PrefetchResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancelPrefetch(): Promise<{ cancelled: boolean }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getPoolStats(): Promise<WorkerPoolStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancelWallpaperJob(): Promise<{ cancelled: boolean }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async configureTransport(): Promise<TransportStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getTransportStats(): Promise<TransportStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
 }